@@ -5,12 +5,14 @@ import android.content.ContentProviderOperation;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
 import android.content.pm.PackageManager;
 import android.os.Environment;
 import android.os.StrictMode;
 import android.provider.MediaStore;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.os.ConfigurationCompat;
 import android.support.v7.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
@@ -23,6 +25,9 @@ import com.google.firebase.FirebaseApp;
 import com.google.firebase.analytics.FirebaseAnalytics;
 import com.simplecity.amp_library.data.Repository;
 import com.simplecity.amp_library.di.app.DaggerAppComponent;
+import com.simplecity.amp_library.glide.loader.ArtworkModelLoader;
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache;
+import com.simplecity.amp_library.model.ArtworkProvider;
 import com.simplecity.amp_library.model.Genre;
 import com.simplecity.amp_library.model.Query;
 import com.simplecity.amp_library.model.UserSelectedArtwork;
@@ -31,12 +36,12 @@ import com.simplecity.amp_library.sql.databases.CustomArtworkTable;
 import com.simplecity.amp_library.sql.providers.PlayCountTable;
 import com.simplecity.amp_library.sql.sqlbrite.SqlBriteUtils;
 import com.simplecity.amp_library.utils.AnalyticsManager;
+import com.simplecity.amp_library.utils.ComparisonUtils;
 import com.simplecity.amp_library.utils.InputMethodManagerLeaks;
 import com.simplecity.amp_library.utils.LegacyUtils;
 import com.simplecity.amp_library.utils.LogUtils;
 import com.simplecity.amp_library.utils.SettingsManager;
 import com.simplecity.amp_library.utils.StringUtils;
-import com.simplecity.amp_library.utils.extensions.GenreExtKt;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.leakcanary.RefWatcher;
 import com.uber.rxdogtag.RxDogTag;
@@ -48,6 +53,7 @@ import io.reactivex.Observable;
 import io.reactivex.schedulers.Schedulers;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -88,6 +94,9 @@ public class ShuttleApplication extends DaggerApplication {
     @Inject
     SettingsManager settingsManager;
 
+    @Inject
+    ArtworkSourceCache artworkSourceCache;
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -106,6 +115,9 @@ public class ShuttleApplication extends DaggerApplication {
             // WIP
         }
 
+        // Glide creates CustomGlideModule itself, so the artwork loader is registered here, where its cache has been injected
+        Glide.get(this).register(ArtworkProvider.class, InputStream.class, new ArtworkModelLoader.Factory(artworkSourceCache));
+
         refWatcher = LeakCanary.install(this);
         // workaround to fix InputMethodManager leak as suggested by LeakCanary lib
         InputMethodManagerLeaks.fixFocusedViewLeak(this);
@@ -211,6 +223,13 @@ public class ShuttleApplication extends DaggerApplication {
         Glide.get(this).clearMemory();
     }
 
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        ComparisonUtils.onLocaleChanged(ConfigurationCompat.getLocales(newConfig).get(0));
+    }
+
     public String getVersion() {
         try {
             return getPackageManager().getPackageInfo(getPackageName(), 0).versionName;
@@ -305,26 +324,34 @@ public class ShuttleApplication extends DaggerApplication {
             return Completable.complete();
         }
 
-        // This observable emits a genre every 50ms. We then make a query against the genre database to populate the song count.
-        // If the count is zero, then the genre can be deleted.
-        // The reason for the delay is, on some slower devices, if the user has tons of genres, a ton of cursors get created.
-        // If the maximum number of cursors is created (based on memory/processor speed or god knows what else), then the device
-        // will start throwing CursorWindow exceptions, and the queries will slow down massively. This ends up making all queries slow.
-        // This task isn't time critical, so we can afford to let it just casually do its job.
+        // Each genre's song count is a lookup in the genre membership index, which is built from a single query, so there's no need
+        // to query each genre's members in turn (and risk running out of CursorWindows on devices with lots of genres). Empty genres
+        // are then deleted in a single statement.
         return SqlBriteUtils.createSingleList(this, Genre::new, Genre.getQuery())
-                .flatMapObservable(Observable::fromIterable)
-                .concatMap(genre -> Observable.just(genre).delay(50, TimeUnit.MILLISECONDS))
-                .flatMapSingle(genre -> GenreExtKt.getSongsObservable(genre, getApplicationContext())
-                        .doOnSuccess(songs -> {
-                            if (songs.isEmpty()) {
-                                try {
-                                    getContentResolver().delete(MediaStore.Audio.Genres.EXTERNAL_CONTENT_URI, MediaStore.Audio.Genres._ID + " == " + genre.id, null);
-                                } catch (IllegalArgumentException | UnsupportedOperationException ignored) {
-                                    //Don't care if we couldn't delete this uri.
-                                }
+                .flatMap(genres -> songsRepository.getGenreMembership()
+                        .firstOrError()
+                        .map(genreMembership -> {
+                            if (genreMembership.size() == 0) {
+                                // Either every genre is empty, or the members couldn't be queried. Leave them, rather than risk deleting
+                                // all of the user's genres.
+                                return Collections.<String>emptyList();
                             }
-                        })
-                ).flatMapCompletable(songs -> Completable.complete());
+                            return Stream.of(genres)
+                                    .filter(genre -> genreMembership.getCount(genre.id) == 0)
+                                    .map(genre -> String.valueOf(genre.id))
+                                    .toList();
+                        }))
+                .flatMapCompletable(emptyGenreIds -> Completable.fromAction(() -> {
+                    if (emptyGenreIds.isEmpty()) {
+                        return;
+                    }
+                    try {
+                        getContentResolver().delete(MediaStore.Audio.Genres.EXTERNAL_CONTENT_URI,
+                                MediaStore.Audio.Genres._ID + " IN (" + TextUtils.join(",", emptyGenreIds) + ")", null);
+                    } catch (IllegalArgumentException | UnsupportedOperationException ignored) {
+                        //Don't care if we couldn't delete these genres.
+                    }
+                }));
     }
 
     @NonNull
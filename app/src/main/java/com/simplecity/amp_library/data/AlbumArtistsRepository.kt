@@ -5,7 +5,7 @@ import com.simplecity.amp_library.data.Repository.AlbumArtistsRepository
 import com.simplecity.amp_library.data.Repository.AlbumsRepository
 import com.simplecity.amp_library.model.AlbumArtist
 import com.simplecity.amp_library.utils.LogUtils
-import com.simplecity.amp_library.utils.Operators
+import com.simplecity.amp_library.utils.library.AlbumArtistsAggregator
 import io.reactivex.Observable
 import io.reactivex.disposables.Disposable
 import io.reactivex.functions.Consumer
@@ -17,12 +17,14 @@ import javax.inject.Singleton
 class AlbumArtistsRepository @Inject constructor(private val albumsRepository: AlbumsRepository) : AlbumArtistsRepository {
 
     private var albumArtistsSubscription: Disposable? = null
+    private val albumArtistsAggregator = AlbumArtistsAggregator()
+
     private val albumArtistsRelay = BehaviorRelay.create<List<AlbumArtist>>()
 
     override fun getAlbumArtists(): Observable<List<AlbumArtist>> {
         if (albumArtistsSubscription == null || albumArtistsSubscription?.isDisposed == true) {
             albumArtistsSubscription = albumsRepository.getAlbums()
-                .flatMap { albums -> Observable.just(Operators.albumsToAlbumArtists(albums)) }
+                .map { albums -> albumArtistsAggregator.apply(albums) }
                 .subscribe(
                     albumArtistsRelay,
                     Consumer { error -> LogUtils.logException(PlaylistsRepository.TAG, "Failed to get album artists", error) }
@@ -4,7 +4,7 @@ import com.jakewharton.rxrelay2.BehaviorRelay
 import com.simplecity.amp_library.data.Repository.AlbumsRepository
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.utils.LogUtils
-import com.simplecity.amp_library.utils.Operators
+import com.simplecity.amp_library.utils.library.AlbumsAggregator
 import io.reactivex.Observable
 import io.reactivex.disposables.Disposable
 import io.reactivex.functions.Consumer
@@ -16,12 +16,14 @@ import javax.inject.Singleton
 class AlbumsRepository @Inject constructor(private val songsRepository: Repository.SongsRepository) : AlbumsRepository {
 
     private var albumsSubscription: Disposable? = null
+    private val albumsAggregator = AlbumsAggregator()
+
     private val albumsRelay = BehaviorRelay.create<List<Album>>()
 
     override fun getAlbums(): Observable<List<Album>> {
         if (albumsSubscription == null || albumsSubscription?.isDisposed == true) {
             albumsSubscription = songsRepository.getSongs()
-                .flatMap { songs -> Observable.just(Operators.songsToAlbums(songs)) }
+                .map { songs -> albumsAggregator.apply(songs) }
                 .subscribe(
                     albumsRelay,
                     Consumer { error -> LogUtils.logException(PlaylistsRepository.TAG, "Failed to get albums", error) }
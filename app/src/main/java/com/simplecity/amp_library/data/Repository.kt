@@ -6,19 +6,25 @@ import com.simplecity.amp_library.model.Genre
 import com.simplecity.amp_library.model.InclExclItem
 import com.simplecity.amp_library.model.Playlist
 import com.simplecity.amp_library.model.Song
+import com.simplecity.amp_library.utils.library.GenreMembershipIndex
+import com.simplecity.amp_library.utils.library.SongGroupIndex
+import com.simplecity.amp_library.utils.library.SongPathIndex
 import io.reactivex.Observable
+import io.reactivex.Single
 
 interface Repository {
 
     interface SongsRepository {
 
         /**
-         * Returns a continuous List of all [Song]s, no filtering is applied.
+         * Returns a continuous List of all [Song]s, no filtering is applied. The lists are shared and read-only.
          */
         fun getAllSongs(): Observable<List<Song>>
 
         /**
          * Returns a continuous List of [Song]s, excluding those which are blacklisted, podcasts, or not-whitelisted.
+         *
+         * Without a [predicate], the lists are shared and read-only, so copy them before sorting or otherwise modifying them.
          */
         fun getSongs(predicate: ((Song) -> Boolean)? = null): Observable<List<Song>>
 
@@ -29,11 +35,13 @@ interface Repository {
 
         /**
          * Returns a continuous List of [Song]s belonging to the given [Album], excluding those which are blacklisted, podcasts, or not-whitelisted.
+         * Sorted by disc, track and year.
          */
         fun getSongs(album: Album): Observable<List<Song>>
 
         /**
          * Returns a continuous List of [Song]s belonging to the given [AlbumArtist], excluding those which are blacklisted, podcasts, or not-whitelisted.
+         * Sorted by album name, disc, track and year.
          */
         fun getSongs(albumArtist: AlbumArtist): Observable<List<Song>>
 
@@ -41,6 +49,27 @@ interface Repository {
          * Returns a continuous List of [Song]s belonging to the given [Genre], excluding those which are blacklisted, podcasts, or not-whitelisted.
          */
         fun getSongs(genre: Genre): Observable<List<Song>>
+
+        /**
+         * Returns the [Song]s with the given ids, queried directly from MediaStore rather than from the full song list. No filtering is
+         * applied. Ids which don't correspond to a song are skipped, duplicate ids are only returned once, and the order is undefined.
+         */
+        fun getSongs(ids: LongArray): Single<List<Song>>
+
+        /**
+         * Returns a continuous [SongPathIndex] over the [Song]s returned by [getSongs], for looking up the songs in a folder.
+         */
+        fun getSongPathIndex(): Observable<SongPathIndex>
+
+        /**
+         * Returns a continuous [SongGroupIndex] over the [Song]s returned by [getSongs], for looking up the songs in an album or album artist.
+         */
+        fun getSongGroupIndex(): Observable<SongGroupIndex>
+
+        /**
+         * Returns a continuous [GenreMembershipIndex] of the song ids in each genre, unfiltered.
+         */
+        fun getGenreMembership(): Observable<GenreMembershipIndex>
     }
 
     fun interface AlbumsRepository {
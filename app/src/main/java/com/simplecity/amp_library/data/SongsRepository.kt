@@ -2,14 +2,14 @@
 package com.simplecity.amp_library.data
 
 import android.content.Context
+import android.database.Cursor
 import android.provider.MediaStore
-import android.util.Pair
 import com.jakewharton.rxrelay2.BehaviorRelay
+import com.jakewharton.rxrelay2.PublishRelay
 import com.simplecity.amp_library.data.Repository.SongsRepository
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.AlbumArtist
 import com.simplecity.amp_library.model.Genre
-import com.simplecity.amp_library.model.InclExclItem
 import com.simplecity.amp_library.model.Playlist
 import com.simplecity.amp_library.model.Query
 import com.simplecity.amp_library.model.Song
@@ -17,17 +17,29 @@ import com.simplecity.amp_library.sql.providers.PlayCountTable
 import com.simplecity.amp_library.sql.sqlbrite.SqlBriteUtils
 import com.simplecity.amp_library.utils.ComparisonUtils
 import com.simplecity.amp_library.utils.LogUtils
+import com.simplecity.amp_library.utils.LongLongMap
+import com.simplecity.amp_library.utils.PathRuleIndex
 import com.simplecity.amp_library.utils.SettingsManager
-import com.simplecity.amp_library.utils.StringUtils
+import com.simplecity.amp_library.utils.library.GenreMembershipIndex
+import com.simplecity.amp_library.utils.library.IncrementalSongMapper
+import com.simplecity.amp_library.utils.library.SongGroupIndex
+import com.simplecity.amp_library.utils.library.SongPathIndex
+import com.simplecity.amp_library.utils.library.SongTable
+import com.simplecity.amp_library.utils.library.SongsSnapshot
 import com.simplecity.amp_library.utils.playlists.PlaylistManager
+import com.simplecity.amp_library.utils.sorting.SortSpec
 import io.reactivex.Observable
 import io.reactivex.ObservableTransformer
+import io.reactivex.Single
 import io.reactivex.disposables.Disposable
+import io.reactivex.functions.BiFunction
 import io.reactivex.functions.Consumer
 import io.reactivex.functions.Function3
 import io.reactivex.schedulers.Schedulers
+import java.io.File
 import java.util.ArrayList
 import java.util.Arrays
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -45,15 +57,54 @@ open class SongsRepository @Inject constructor(
     private var allSongsSubscription: Disposable? = null
     private val allSongsRelay = BehaviorRelay.create<List<Song>>()
 
+    private var pathIndexSubscription: Disposable? = null
+    private val pathIndexRelay = BehaviorRelay.create<SongPathIndex>()
+
+    private var groupIndexSubscription: Disposable? = null
+    private val groupIndexRelay = BehaviorRelay.create<SongGroupIndex>()
+
+    private var genreMembershipSubscription: Disposable? = null
+    private val genreMembershipRelay = BehaviorRelay.create<GenreMembershipIndex>()
+
+    /**
+     * False once the bulk genre members query has failed, or returned nothing while there are genres, on this device.
+     */
+    @Volatile
+    private var allGenreMembersSupported = true
+
+    private val songsSnapshot = SongsSnapshot(File(context.filesDir, SNAPSHOT_FILE_NAME))
+
+    private var snapshotSubscription: Disposable? = null
+    private val snapshotRelay = PublishRelay.create<List<Song>>()
+
     override fun getAllSongs(): Observable<List<Song>> {
         if (allSongsSubscription == null || allSongsSubscription?.isDisposed == true) {
-            allSongsSubscription = SqlBriteUtils.createObservableList<Song>(context, { Song(it) }, Song.getQuery())
+            val songMapper = IncrementalSongMapper()
+
+            // Emit the last known songs from disk straight away, then reconcile against MediaStore. Songs which haven't changed since
+            // the snapshot was written are reused by the mapper, so the reconciliation doesn't cause a rebuild downstream.
+            allSongsSubscription = songsSnapshot.read()
+                .doOnSuccess { songs -> songMapper.seed(songs) }
+                .toObservable()
+                .concatWith(
+                    SqlBriteUtils.createObservableReduced(context, songMapper, Song.getQuery())
+                        .doOnNext(snapshotRelay)
+                )
                 .subscribe(
                     allSongsRelay,
                     Consumer { error -> LogUtils.logException(PlaylistsRepository.TAG, "Failed to get all songs", error) }
                 )
         }
 
+        if (snapshotSubscription == null || snapshotSubscription?.isDisposed == true) {
+            snapshotSubscription = snapshotRelay
+                .debounce(SNAPSHOT_WRITE_DELAY_SECONDS, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(
+                    Consumer { songs -> songsSnapshot.write(songs) },
+                    Consumer { error -> LogUtils.logException(TAG, "Failed to write songs snapshot", error) }
+                )
+        }
+
         return allSongsRelay
             .subscribeOn(Schedulers.io())
     }
@@ -62,11 +113,7 @@ open class SongsRepository @Inject constructor(
         if (songsSubscription == null || songsSubscription?.isDisposed == true) {
             songsSubscription = getAllSongs()
                 .compose(getInclExclTransformer())
-                .map { songs ->
-                    songs
-                        .filterNot { song -> song.isPodcast }
-                        .toList()
-                }
+                .map { songs -> SongTable.select(songs) { song -> !song.isPodcast } }
                 .subscribe(songsRelay)
         }
 
@@ -76,15 +123,13 @@ open class SongsRepository @Inject constructor(
     }
 
     override fun getSongs(album: Album): Observable<List<Song>> {
-        return getSongs { song -> song.albumId == album.id }
+        return getSongGroupIndex()
+            .map { groupIndex -> groupIndex.getSongs(album) }
     }
 
     override fun getSongs(albumArtist: AlbumArtist): Observable<List<Song>> {
-        return getSongs { song ->
-            albumArtist.albums
-                .map { album -> album.id }
-                .any { albumId -> albumId == song.albumId }
-        }
+        return getSongGroupIndex()
+            .map { groupIndex -> groupIndex.getSongs(albumArtist) }
     }
 
     override fun getSongs(playlist: Playlist): Observable<List<Song>> {
@@ -92,16 +137,7 @@ open class SongsRepository @Inject constructor(
             PlaylistManager.PlaylistIds.RECENTLY_ADDED_PLAYLIST -> {
                 val numWeeks = settingsManager.numWeeks * 3600 * 24 * 7
                 return getSongs { song -> song.dateAdded > System.currentTimeMillis() / 1000 - numWeeks }
-                    .map { songs ->
-                        songs
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName) })
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName) })
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(b.year, a.year) })
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.track, b.track) })
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.discNumber, b.discNumber) })
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compare(a.albumName, b.albumName) })
-                            .sortedWith(Comparator { a, b -> ComparisonUtils.compareLong(b.dateAdded.toLong(), a.dateAdded.toLong()) })
-                    }
+                    .map { songs -> recentlyAddedSortSpec.sorted(songs) }
             }
 
             PlaylistManager.PlaylistIds.PODCASTS_PLAYLIST -> {
@@ -118,19 +154,19 @@ open class SongsRepository @Inject constructor(
                     .sort(PlayCountTable.COLUMN_PLAY_COUNT + " DESC")
                     .build()
 
-                SqlBriteUtils.createObservableList(context, { cursor ->
-                    Pair(
-                        cursor.getLong(cursor.getColumnIndexOrThrow(PlayCountTable.COLUMN_ID)),
-                        cursor.getInt(cursor.getColumnIndexOrThrow(PlayCountTable.COLUMN_PLAY_COUNT))
-                    )
-                }, query)
-                    .flatMap { pairs ->
-                        getSongs { song ->
-                            pairs.firstOrNull { pair ->
-                                song.playCount = pair.second
-                                pair.first == song.id && pair.second >= 2
-                            } != null
-                        }.map { songs -> songs.sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(b.playCount, a.playCount) }) }
+                SqlBriteUtils.createObservableReduced(context, { cursor -> indexPlayCountColumn(cursor, PlayCountTable.COLUMN_PLAY_COUNT) }, query)
+                    .flatMap { playCounts ->
+                        getSongs().map { songs ->
+                            val result = ArrayList<Song>(Math.min(songs.size, playCounts.size()))
+                            for (song in songs) {
+                                val playCount = playCounts.get(song.id, 0).toInt()
+                                if (playCount >= 2) {
+                                    song.playCount = playCount
+                                    result.add(song)
+                                }
+                            }
+                            result.sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(b.playCount, a.playCount) })
+                        }
                     }
             }
 
@@ -141,19 +177,18 @@ open class SongsRepository @Inject constructor(
                     .sort(PlayCountTable.COLUMN_TIME_PLAYED + " DESC")
                     .build()
 
-                SqlBriteUtils.createObservableList(context, { cursor ->
-                    Pair(
-                        cursor.getLong(cursor.getColumnIndexOrThrow(PlayCountTable.COLUMN_ID)),
-                        cursor.getLong(cursor.getColumnIndexOrThrow(PlayCountTable.COLUMN_TIME_PLAYED))
-                    )
-                }, query)
-                    .flatMap { pairs ->
-                        getSongs { song ->
-                            pairs.filter { pair ->
-                                song.lastPlayed = pair.second
-                                pair.first == song.id
-                            }.firstOrNull() != null
-                        }.map { songs -> songs.sortedWith(Comparator { a, b -> ComparisonUtils.compareLong(b.lastPlayed, a.lastPlayed) }) }
+                SqlBriteUtils.createObservableReduced(context, { cursor -> indexPlayCountColumn(cursor, PlayCountTable.COLUMN_TIME_PLAYED) }, query)
+                    .flatMap { timesPlayed ->
+                        getSongs().map { songs ->
+                            val result = ArrayList<Song>(Math.min(songs.size, timesPlayed.size()))
+                            for (song in songs) {
+                                if (timesPlayed.containsKey(song.id)) {
+                                    song.lastPlayed = timesPlayed.get(song.id, 0)
+                                    result.add(song)
+                                }
+                            }
+                            result.sortedWith(Comparator { a, b -> ComparisonUtils.compareLong(b.lastPlayed, a.lastPlayed) })
+                        }
                     }
             }
 
@@ -173,45 +208,188 @@ open class SongsRepository @Inject constructor(
     }
 
     override fun getSongs(genre: Genre): Observable<List<Song>> {
-        return getSongs()
-            .map { songs ->
-                songs.sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(b.year, a.year) })
-                    .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.track, b.track) })
-                    .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.discNumber, b.discNumber) })
-                    .sortedWith(Comparator { a, b -> ComparisonUtils.compare(a.albumName, b.albumName) })
-                    .sortedWith(Comparator { a, b -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName) })
+        return Observable.combineLatest<List<Song>, GenreMembershipIndex, List<Song>>(
+            getSongs(),
+            getGenreMembership(),
+            BiFunction { songs, genreMembership -> genreSortSpec.sorted(genreMembership.getSongs(genre.id, songs)) })
+    }
+
+    override fun getSongs(ids: LongArray): Single<List<Song>> {
+        val songQuery = Song.getQuery()
+        return Observable.fromIterable(ids.distinct().chunked(MAX_IDS_PER_QUERY))
+            .concatMap { batch ->
+                // Ids are longs, so they're safe to inline, and don't count towards SQLite's bound argument limit.
+                val query = Query.Builder()
+                    .uri(songQuery.uri)
+                    .projection(songQuery.projection)
+                    .selection("(${songQuery.selection}) AND ${MediaStore.Audio.Media._ID} IN (${batch.joinToString(",")})")
+                    .args(null)
+                    .sort(null)
+                    .build()
+                SqlBriteUtils.createSingleList<Song>(context, { Song(it) }, query).toObservable()
             }
+            .flatMapIterable { songs -> songs }
+            .toList()
+            .subscribeOn(Schedulers.io())
+    }
+
+    override fun getSongPathIndex(): Observable<SongPathIndex> {
+        if (pathIndexSubscription == null || pathIndexSubscription?.isDisposed == true) {
+            // Rebuilt once per change to the song list, rather than once per folder lookup
+            pathIndexSubscription = getSongs()
+                .map { songs -> SongPathIndex(songs) }
+                .subscribe(pathIndexRelay)
+        }
+
+        return pathIndexRelay
+            .subscribeOn(Schedulers.io())
+    }
+
+    override fun getSongGroupIndex(): Observable<SongGroupIndex> {
+        if (groupIndexSubscription == null || groupIndexSubscription?.isDisposed == true) {
+            // Built once per change to the song list, so album and album artist lookups don't need to scan or sort it
+            groupIndexSubscription = getSongs()
+                .map { songs -> SongGroupIndex(songs) }
+                .subscribe(groupIndexRelay)
+        }
+
+        return groupIndexRelay
+            .subscribeOn(Schedulers.io())
+    }
+
+    override fun getGenreMembership(): Observable<GenreMembershipIndex> {
+        if (genreMembershipSubscription == null || genreMembershipSubscription?.isDisposed == true) {
+            // Re-run whenever the genres change. A single (genre id, song id) query covers every genre, where the device supports it.
+            genreMembershipSubscription = SqlBriteUtils.createObservableReduced(
+                context,
+                { cursor -> queryGenreMembership(cursor) },
+                Genre.getQuery(),
+                GenreMembershipIndex.EMPTY
+            )
+                .subscribe(
+                    genreMembershipRelay,
+                    Consumer { error -> LogUtils.logException(TAG, "Failed to get genre membership", error) }
+                )
+        }
+
+        return genreMembershipRelay
+            .subscribeOn(Schedulers.io())
+    }
+
+    /**
+     * Builds a [GenreMembershipIndex] for the genres in a [Genre] cursor, from a single query over every genre's members if possible.
+     *
+     * Some devices reject the bulk members URI, and others return a null or empty cursor for it. As an empty result can't be told apart
+     * from an unsupported one when there are genres, the members of each genre are queried in turn instead.
+     */
+    private fun queryGenreMembership(genreCursor: Cursor): GenreMembershipIndex {
+        if (genreCursor.count == 0) {
+            return GenreMembershipIndex.EMPTY
+        }
+
+        if (allGenreMembersSupported) {
+            val query = GenreMembershipIndex.getQuery()
+            try {
+                val index = context.contentResolver.query(query.uri, query.projection, query.selection, query.args, query.sort)
+                    ?.use { cursor -> GenreMembershipIndex.fromCursor(cursor) }
+                if (index != null && index.size() != 0) {
+                    return index
+                }
+                LogUtils.logException(TAG, "Query for all genre members returned no results, falling back to a query per genre", null)
+            } catch (e: Exception) {
+                LogUtils.logException(TAG, "Failed to query all genre members, falling back to a query per genre", e)
+            }
+            allGenreMembersSupported = false
+        }
+
+        return queryGenreMembersPerGenre(genreCursor)
+    }
+
+    /**
+     * Builds a [GenreMembershipIndex] by querying the song ids of each genre in a [Genre] cursor in turn, for devices which don't support
+     * querying all genre members at once. Only one members cursor is open at a time.
+     */
+    private fun queryGenreMembersPerGenre(genreCursor: Cursor): GenreMembershipIndex {
+        val builder = GenreMembershipIndex.Builder()
+        val genreIdColumn = genreCursor.getColumnIndexOrThrow(MediaStore.Audio.Genres._ID)
+        while (genreCursor.moveToNext()) {
+            val genreId = genreCursor.getLong(genreIdColumn)
+            context.contentResolver.query(
+                MediaStore.Audio.Genres.Members.getContentUri("external", genreId),
+                arrayOf(MediaStore.Audio.Genres.Members.AUDIO_ID), null, null, null
+            )?.use { cursor ->
+                val songIdColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Genres.Members.AUDIO_ID)
+                while (cursor.moveToNext()) {
+                    builder.add(genreId, cursor.getLong(songIdColumn))
+                }
+            }
+        }
+        return builder.build()
+    }
+
+    /**
+     * Builds a song id -> [column] index from a [PlayCountTable] cursor, so it can be joined against the song list in a single pass.
+     */
+    private fun indexPlayCountColumn(cursor: Cursor, column: String): LongLongMap {
+        val index = LongLongMap(cursor.count)
+        val idColumn = cursor.getColumnIndexOrThrow(PlayCountTable.COLUMN_ID)
+        val valueColumn = cursor.getColumnIndexOrThrow(column)
+        while (cursor.moveToNext()) {
+            index.put(cursor.getLong(idColumn), cursor.getLong(valueColumn))
+        }
+        return index
     }
 
     private fun getInclExclTransformer(): ObservableTransformer<List<Song>, List<Song>> {
         return ObservableTransformer { upstream ->
-            Observable.combineLatest<List<Song>, List<InclExclItem>, List<InclExclItem>, List<Song>>(
+            Observable.combineLatest<List<Song>, PathRuleIndex, PathRuleIndex, List<Song>>(
                 upstream,
-                whitelistRepository.getWhitelistItems(this),
-                blacklistRepository.getBlacklistItems(this),
-                Function3 { songs: List<Song>, inclItems: List<InclExclItem>, exclItems: List<InclExclItem> ->
-                    var result = songs
-
-                    // Filter out excluded paths
-                    if (exclItems.isNotEmpty()) {
-                        result = songs
-                            .filterNot { song -> exclItems.any { exclItem -> StringUtils.containsIgnoreCase(song.path, exclItem.path) } }
-                            .toList()
+                // Rules are only compiled when the whitelist/blacklist changes, not on every song list emission
+                whitelistRepository.getWhitelistItems(this).map { inclItems -> PathRuleIndex(inclItems.map { inclItem -> inclItem.path }) },
+                blacklistRepository.getBlacklistItems(this).map { exclItems -> PathRuleIndex(exclItems.map { exclItem -> exclItem.path }) },
+                Function3 { songs: List<Song>, inclRules: PathRuleIndex, exclRules: PathRuleIndex ->
+                    if (inclRules.isEmpty && exclRules.isEmpty) {
+                        return@Function3 songs
                     }
 
-                    // Filter out non-included paths
-                    if (!inclItems.isEmpty()) {
-                        result = result
-                            .filter { song -> inclItems.any { inclItem -> StringUtils.containsIgnoreCase(song.path, inclItem.path) } }
-                            .toList()
+                    // Filter out excluded paths, and non-included paths. The result is a view over the same song table, rather than a copy.
+                    SongTable.select(songs) { song ->
+                        (exclRules.isEmpty || !exclRules.matches(song.path)) && (inclRules.isEmpty || inclRules.matches(song.path))
                     }
-
-                    result
                 })
         }
     }
 
     companion object {
         const val TAG = "SongsRepository"
+
+        private val recentlyAddedSortSpec = SortSpec.Builder<Song>()
+            .byIntDescending { song -> song.dateAdded }
+            .byString { song -> song.albumName }
+            .byInt { song -> song.discNumber }
+            .byInt { song -> song.track }
+            .byIntDescending { song -> song.year }
+            .byString { song -> song.albumArtistName }
+            .build()
+
+        private val genreSortSpec = SortSpec.Builder<Song>()
+            .byString { song -> song.albumArtistName }
+            .byString { song -> song.albumName }
+            .byInt { song -> song.discNumber }
+            .byInt { song -> song.track }
+            .byIntDescending { song -> song.year }
+            .build()
+
+        /**
+         * Keeps each `_id IN (...)` statement well within SQLite's statement length limit.
+         */
+        private const val MAX_IDS_PER_QUERY = 500
+
+        private const val SNAPSHOT_FILE_NAME = "songs.snapshot"
+
+        /**
+         * MediaStore tends to emit bursts of changes while scanning, so wait for things to settle before writing the snapshot.
+         */
+        private const val SNAPSHOT_WRITE_DELAY_SECONDS = 5L
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import android.content.Context;
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.data.DataFetcher;
 import com.simplecity.amp_library.ShuttleApplication;
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache;
 import com.simplecity.amp_library.model.ArtworkProvider;
 import com.simplecity.amp_library.model.UserSelectedArtwork;
 import com.simplecity.amp_library.utils.SettingsManager;
@@ -23,12 +24,20 @@ public class MultiFetcher implements DataFetcher<InputStream> {
 
     private SettingsManager settingsManager;
 
+    private ArtworkSourceCache artworkSourceCache;
+
     private boolean allowOfflineDownload = false;
 
-    public MultiFetcher(Context context, ArtworkProvider artworkProvider, SettingsManager settingsManager, boolean allowOfflineDownload) {
+    private static final int[] EMBEDDED_FIRST = { ArtworkProvider.Type.TAG, ArtworkProvider.Type.FOLDER };
+
+    private static final int[] FOLDER_FIRST = { ArtworkProvider.Type.FOLDER, ArtworkProvider.Type.TAG };
+
+    public MultiFetcher(Context context, ArtworkProvider artworkProvider, SettingsManager settingsManager, ArtworkSourceCache artworkSourceCache,
+            boolean allowOfflineDownload) {
         applicationContext = context;
         this.artworkProvider = artworkProvider;
         this.settingsManager = settingsManager;
+        this.artworkSourceCache = artworkSourceCache;
         this.allowOfflineDownload = allowOfflineDownload;
     }
 
@@ -48,14 +57,9 @@ public class MultiFetcher implements DataFetcher<InputStream> {
     @Override
     public InputStream loadData(Priority priority) throws Exception {
         InputStream inputStream = loadUserSelectedArtwork(priority);
-        if (inputStream == null && !settingsManager.ignoreMediaStoreArtwork()) {
-            inputStream = tryLoad(new MediaStoreFetcher(applicationContext, artworkProvider), priority);
-        }
 
         if (inputStream == null) {
-            inputStream = settingsManager.preferEmbeddedArtwork()
-                    ? loadEmbeddedFirst(priority)
-                    : loadFolderFirst(priority);
+            inputStream = loadLocalArtwork(priority);
         }
 
         if (inputStream == null && (allowOfflineDownload || (settingsManager.canDownloadArtworkAutomatically()
@@ -66,6 +70,79 @@ public class MultiFetcher implements DataFetcher<InputStream> {
         return inputStream;
     }
 
+    /**
+     * Loads artwork from the MediaStore, tags or folder, in the order determined by the artwork settings.
+     * <p>
+     * The source the artwork is found in (or the fact that none of them have any) is remembered via {@link ArtworkSourceCache}, so
+     * subsequent loads for the same artwork key try that source directly. If it no longer has the artwork, the other sources are tried.
+     */
+    private InputStream loadLocalArtwork(Priority priority) throws Exception {
+        int settings = getArtworkSettings();
+
+        int cachedSource = artworkSourceCache.getSource(artworkProvider, settings);
+        if (cachedSource == ArtworkSourceCache.SOURCE_NONE) {
+            return null;
+        }
+        if (cachedSource != ArtworkSourceCache.SOURCE_UNKNOWN) {
+            InputStream inputStream = tryLoad(newLocalFetcher(cachedSource), priority);
+            if (inputStream != null) {
+                return inputStream;
+            }
+        }
+
+        InputStream inputStream = null;
+        int source = ArtworkSourceCache.SOURCE_NONE;
+        if (!settingsManager.ignoreMediaStoreArtwork() && cachedSource != ArtworkProvider.Type.MEDIA_STORE) {
+            inputStream = tryLoad(newLocalFetcher(ArtworkProvider.Type.MEDIA_STORE), priority);
+            source = ArtworkProvider.Type.MEDIA_STORE;
+        }
+
+        if (inputStream == null) {
+            int[] types = settingsManager.preferEmbeddedArtwork() ? EMBEDDED_FIRST : FOLDER_FIRST;
+            for (int type : types) {
+                if (type != cachedSource && !isIgnored(type)) {
+                    inputStream = tryLoad(newLocalFetcher(type), priority);
+                    if (inputStream != null) {
+                        source = type;
+                        break;
+                    }
+                }
+            }
+        }
+
+        artworkSourceCache.putSource(artworkProvider, settings, inputStream != null ? source : ArtworkSourceCache.SOURCE_NONE);
+        return inputStream;
+    }
+
+    private boolean isIgnored(@ArtworkProvider.Type int type) {
+        return type == ArtworkProvider.Type.TAG ? settingsManager.ignoreEmbeddedArtwork() : settingsManager.ignoreFolderArtwork();
+    }
+
+    private DataFetcher<InputStream> newLocalFetcher(@ArtworkProvider.Type int type) {
+        switch (type) {
+            case ArtworkProvider.Type.MEDIA_STORE:
+                return new MediaStoreFetcher(applicationContext, artworkProvider);
+            case ArtworkProvider.Type.TAG:
+                return new TagFetcher(artworkProvider);
+            case ArtworkProvider.Type.FOLDER:
+                return new FolderFetcher(artworkProvider, null);
+            default:
+                throw new IllegalArgumentException("Not a local artwork type: " + type);
+        }
+    }
+
+    /**
+     * @return the settings which affect where local artwork is loaded from, as a bit mask
+     */
+    private int getArtworkSettings() {
+        int settings = 0;
+        if (settingsManager.ignoreMediaStoreArtwork()) settings |= 1;
+        if (settingsManager.ignoreFolderArtwork()) settings |= 1 << 1;
+        if (settingsManager.ignoreEmbeddedArtwork()) settings |= 1 << 2;
+        if (settingsManager.preferEmbeddedArtwork()) settings |= 1 << 3;
+        return settings;
+    }
+
     private InputStream loadUserSelectedArtwork(Priority priority) throws Exception {
         UserSelectedArtwork artwork = ((ShuttleApplication) applicationContext).userSelectedArtwork.get(artworkProvider.getArtworkKey());
         if (artwork == null) return null;
@@ -89,32 +166,6 @@ public class MultiFetcher implements DataFetcher<InputStream> {
         return loadData(dataFetcher, priority);
     }
 
-    private InputStream loadEmbeddedFirst(Priority priority) throws Exception {
-        if (!settingsManager.ignoreEmbeddedArtwork()) {
-            InputStream input = tryLoad(new TagFetcher(artworkProvider), priority);
-            if (input != null) return input;
-        }
-
-        if (!settingsManager.ignoreFolderArtwork()) {
-            return tryLoad(new FolderFetcher(artworkProvider, null), priority);
-        }
-
-        return null;
-    }
-
-    private InputStream loadFolderFirst(Priority priority) throws Exception {
-        if (!settingsManager.ignoreFolderArtwork()) {
-            InputStream input = tryLoad(new FolderFetcher(artworkProvider, null), priority);
-            if (input != null) return input;
-        }
-
-        if (!settingsManager.ignoreEmbeddedArtwork()) {
-            return tryLoad(new TagFetcher(artworkProvider), priority);
-        }
-
-        return null;
-    }
-
     private InputStream tryLoad(DataFetcher fetcher, Priority priority) {
         dataFetcher = fetcher;
         return loadData(fetcher, priority);
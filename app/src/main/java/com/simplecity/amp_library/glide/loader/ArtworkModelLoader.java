@@ -7,6 +7,7 @@ import com.bumptech.glide.load.model.GenericLoaderFactory;
 import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.simplecity.amp_library.glide.fetcher.MultiFetcher;
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache;
 import com.simplecity.amp_library.model.ArtworkProvider;
 import com.simplecity.amp_library.utils.SettingsManager;
 import java.io.InputStream;
@@ -19,8 +20,11 @@ public class ArtworkModelLoader implements ModelLoader<ArtworkProvider, InputStr
 
     private SettingsManager settingsManager;
 
-    public ArtworkModelLoader(Context context, boolean allowOfflineDownload) {
+    private ArtworkSourceCache artworkSourceCache;
+
+    public ArtworkModelLoader(Context context, ArtworkSourceCache artworkSourceCache, boolean allowOfflineDownload) {
         this.applicationContext = context.getApplicationContext();
+        this.artworkSourceCache = artworkSourceCache;
         this.allowOfflineDownload = allowOfflineDownload;
         this.settingsManager = new SettingsManager(PreferenceManager.getDefaultSharedPreferences(context));
     }
@@ -29,7 +33,7 @@ public class ArtworkModelLoader implements ModelLoader<ArtworkProvider, InputStr
 
     @Override
     public DataFetcher<InputStream> getResourceFetcher(ArtworkProvider model, int width, int height) {
-        return new MultiFetcher(applicationContext, model, settingsManager, allowOfflineDownload);
+        return new MultiFetcher(applicationContext, model, settingsManager, artworkSourceCache, allowOfflineDownload);
     }
 
     /**
@@ -37,9 +41,15 @@ public class ArtworkModelLoader implements ModelLoader<ArtworkProvider, InputStr
      */
     public static class Factory implements ModelLoaderFactory<ArtworkProvider, InputStream> {
 
+        private ArtworkSourceCache artworkSourceCache;
+
+        public Factory(ArtworkSourceCache artworkSourceCache) {
+            this.artworkSourceCache = artworkSourceCache;
+        }
+
         @Override
         public ModelLoader<ArtworkProvider, InputStream> build(Context context, GenericLoaderFactory factories) {
-            return new ArtworkModelLoader(context, false);
+            return new ArtworkModelLoader(context, artworkSourceCache, false);
         }
 
         @Override
@@ -0,0 +1,195 @@
+package com.simplecity.amp_library.glide.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import com.simplecity.amp_library.model.ArtworkProvider;
+import com.simplecity.amp_library.utils.LogUtils;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Remembers which local source (MediaStore, tag or folder) artwork was found in for each artwork key, or that none of them had any, so
+ * later loads can go straight to that source rather than probing each one in turn.
+ * <p>
+ * Entries are persisted in a small SQLite table, so they outlive Glide's caches. Each entry records the modification time of the audio
+ * file and its directory, and the artwork settings it was resolved under, and is ignored if any of those have changed since. The table
+ * is bounded: once it holds more than {@link #MAX_ENTRIES}, the least recently written entries are dropped.
+ * <p>
+ * Thread safe.
+ */
+@Singleton
+public final class ArtworkSourceCache {
+
+    private static final String TAG = "ArtworkSourceCache";
+
+    /**
+     * Returned by {@link #getSource(ArtworkProvider, int)} if there's no valid entry for the artwork.
+     */
+    public static final int SOURCE_UNKNOWN = -2;
+
+    /**
+     * None of the local sources have artwork.
+     */
+    public static final int SOURCE_NONE = -1;
+
+    /**
+     * The maximum number of entries kept.
+     */
+    private static final int MAX_ENTRIES = 10000;
+
+    /**
+     * The table is trimmed back to {@link #MAX_ENTRIES} after this many writes, rather than after each one.
+     */
+    private static final int TRIM_INTERVAL = 256;
+
+    private final OpenHelper openHelper;
+
+    private final AtomicInteger writesSinceTrim = new AtomicInteger();
+
+    @Inject
+    public ArtworkSourceCache(Context context) {
+        openHelper = new OpenHelper(context.getApplicationContext());
+    }
+
+    /**
+     * @param settings the artwork settings in effect, as a bit mask. An entry recorded under different settings is ignored.
+     * @return the {@link ArtworkProvider.Type} the artwork was last found in, {@link #SOURCE_NONE} if it wasn't found in any local
+     * source, or {@link #SOURCE_UNKNOWN}
+     */
+    @WorkerThread
+    public int getSource(@NonNull ArtworkProvider artworkProvider, int settings) {
+        try {
+            Cursor cursor = openHelper.getReadableDatabase().query(
+                    OpenHelper.TABLE_NAME,
+                    new String[] { OpenHelper.COLUMN_SOURCE, OpenHelper.COLUMN_SETTINGS, OpenHelper.COLUMN_FILE_MODIFIED, OpenHelper.COLUMN_DIR_MODIFIED },
+                    OpenHelper.COLUMN_KEY + "=?",
+                    new String[] { artworkProvider.getArtworkKey() },
+                    null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    return SOURCE_UNKNOWN;
+                }
+                long[] stamp = getStamp(artworkProvider.getArtworkPath());
+                if (cursor.getInt(1) != settings || cursor.getLong(2) != stamp[0] || cursor.getLong(3) != stamp[1]) {
+                    return SOURCE_UNKNOWN;
+                }
+                return cursor.getInt(0);
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            LogUtils.logException(TAG, "Failed to read artwork source", e);
+            return SOURCE_UNKNOWN;
+        }
+    }
+
+    /**
+     * Records the source the artwork was found in.
+     *
+     * @param source the {@link ArtworkProvider.Type} the artwork was found in, or {@link #SOURCE_NONE}
+     * @param settings see {@link #getSource(ArtworkProvider, int)}
+     */
+    @WorkerThread
+    public void putSource(@NonNull ArtworkProvider artworkProvider, int settings, int source) {
+        long[] stamp = getStamp(artworkProvider.getArtworkPath());
+        ContentValues values = new ContentValues(5);
+        values.put(OpenHelper.COLUMN_KEY, artworkProvider.getArtworkKey());
+        values.put(OpenHelper.COLUMN_SOURCE, source);
+        values.put(OpenHelper.COLUMN_SETTINGS, settings);
+        values.put(OpenHelper.COLUMN_FILE_MODIFIED, stamp[0]);
+        values.put(OpenHelper.COLUMN_DIR_MODIFIED, stamp[1]);
+        try {
+            SQLiteDatabase database = openHelper.getWritableDatabase();
+            // Replacing a row gives it a new rowid, so rowids are in order of when each entry was last written
+            database.insertWithOnConflict(OpenHelper.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            if (writesSinceTrim.incrementAndGet() >= TRIM_INTERVAL) {
+                writesSinceTrim.set(0);
+                database.execSQL("DELETE FROM " + OpenHelper.TABLE_NAME
+                        + " WHERE rowid <= (SELECT MAX(rowid) FROM " + OpenHelper.TABLE_NAME + ") - " + MAX_ENTRIES);
+            }
+        } catch (SQLiteException e) {
+            LogUtils.logException(TAG, "Failed to write artwork source", e);
+        }
+    }
+
+    /**
+     * Forgets the source for the given artwork key, for example because the user has chosen different artwork.
+     */
+    public void remove(@NonNull String artworkKey) {
+        try {
+            openHelper.getWritableDatabase().delete(OpenHelper.TABLE_NAME, OpenHelper.COLUMN_KEY + "=?", new String[] { artworkKey });
+        } catch (SQLiteException e) {
+            LogUtils.logException(TAG, "Failed to remove artwork source", e);
+        }
+    }
+
+    /**
+     * @return the modification times of the file, and of the directory containing it (which changes when folder artwork is added or
+     * removed), or zeros if there's no file
+     */
+    private static long[] getStamp(@Nullable String path) {
+        if (path == null) {
+            return new long[] { 0, 0 };
+        }
+        File file = new File(path);
+        File parent = file.getParentFile();
+        return new long[] { file.lastModified(), parent == null ? 0 : parent.lastModified() };
+    }
+
+    private static final class OpenHelper extends SQLiteOpenHelper {
+
+        private static final String DATABASE_NAME = "artwork_sources.db";
+        private static final int DATABASE_VERSION = 1;
+
+        static final String TABLE_NAME = "artwork_sources";
+
+        static final String COLUMN_KEY = "_key";
+        static final String COLUMN_SOURCE = "source";
+        static final String COLUMN_SETTINGS = "settings";
+        static final String COLUMN_FILE_MODIFIED = "file_modified";
+        static final String COLUMN_DIR_MODIFIED = "dir_modified";
+
+        private static final String DATABASE_CREATE = "CREATE TABLE IF NOT EXISTS "
+                + TABLE_NAME + "("
+                + COLUMN_KEY + " TEXT PRIMARY KEY NOT NULL, "
+                + COLUMN_SOURCE + " INTEGER NOT NULL, "
+                + COLUMN_SETTINGS + " INTEGER NOT NULL, "
+                + COLUMN_FILE_MODIFIED + " INTEGER NOT NULL, "
+                + COLUMN_DIR_MODIFIED + " INTEGER NOT NULL"
+                + ");";
+
+        /**
+         * Entries used to be stored here, one preference per artwork key.
+         */
+        private static final String LEGACY_PREFS_NAME = "artwork_sources";
+
+        private final Context applicationContext;
+
+        OpenHelper(Context applicationContext) {
+            super(applicationContext, DATABASE_NAME, null, DATABASE_VERSION);
+            this.applicationContext = applicationContext;
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase database) {
+            database.execSQL(DATABASE_CREATE);
+
+            // The legacy entries are just a cache, so they're discarded rather than migrated
+            applicationContext.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+
+        }
+    }
+}
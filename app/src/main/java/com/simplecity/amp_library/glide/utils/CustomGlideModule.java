@@ -4,9 +4,6 @@ import android.content.Context;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.module.GlideModule;
-import com.simplecity.amp_library.glide.loader.ArtworkModelLoader;
-import com.simplecity.amp_library.model.ArtworkProvider;
-import java.io.InputStream;
 
 public class CustomGlideModule implements GlideModule {
 
@@ -21,6 +18,6 @@ public class CustomGlideModule implements GlideModule {
 
     @Override
     public void registerComponents(Context context, Glide glide) {
-        glide.register(ArtworkProvider.class, InputStream.class, new ArtworkModelLoader.Factory());
+        // The ArtworkProvider loader is registered by ShuttleApplication, once the ArtworkSourceCache it needs has been injected
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.simplecity.amp_library.http;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.utils.ComparisonUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An inclusive range of bytes within a file, as requested via an HTTP Range header (RFC 7233).
+ */
+final class ByteRange implements Comparable<ByteRange> {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    final long start;
+
+    final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Parses a Range header value, such as "bytes=0-499", "bytes=500-", "bytes=-500" or "bytes=0-99,200-299".
+     * <p>
+     * Ranges are clamped to the length of the file, and overlapping or adjacent ranges are merged, so the result is sorted and
+     * contains no overlaps.
+     *
+     * @param header the value of the Range header
+     * @param fileLength the length of the file being served
+     * @return the satisfiable ranges (empty if none of them are satisfiable), or null if the header is malformed, in which case it
+     * should be ignored
+     */
+    @Nullable
+    static List<ByteRange> parse(@NonNull String header, long fileLength) {
+        header = header.trim();
+        if (!header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : header.substring(BYTES_UNIT.length()).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            try {
+                long start;
+                long end;
+                if (dash == 0) {
+                    // Suffix range: the last n bytes
+                    long suffixLength = Long.parseLong(spec.substring(1));
+                    if (suffixLength < 0) {
+                        return null;
+                    }
+                    if (suffixLength == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, fileLength - suffixLength);
+                    end = fileLength - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, fileLength - 1);
+                }
+                if (start < fileLength) {
+                    ranges.add(new ByteRange(start, end));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        Collections.sort(ranges);
+        List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                coalesced.add(current);
+                current = next;
+            }
+        }
+        coalesced.add(current);
+        return coalesced;
+    }
+
+    @Override
+    public int compareTo(@NonNull ByteRange other) {
+        return ComparisonUtils.compareLong(start, other.start);
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
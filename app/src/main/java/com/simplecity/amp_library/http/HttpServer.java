@@ -1,30 +1,108 @@
 package com.simplecity.amp_library.http;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
+import android.util.LruCache;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.RangeInputStream;
 import fi.iki.elonen.NanoHTTPD;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-
+import java.util.TimeZone;
+
+/**
+ * Serves audio files and artwork to cast receivers on the local network.
+ * <p>
+ * Tracks are made available via {@link #serveAudio(Song)}, and served at /audio/{song id}. The most recently registered tracks remain
+ * available, since a receiver may still be reading the previous track when the next one is loaded. Each range is streamed by a
+ * {@link RangeInputStream} with its own file channel and positional reads, so concurrent (and overlapping) range requests don't interfere
+ * with each other. Single, suffix and multiple byte ranges are supported, along with ETag / Last-Modified validation.
+ * <p>
+ * Artwork is encoded once, via {@link #serveImage(String, byte[], String)}, and served at /image/{artwork key} from a size-bounded LRU
+ * cache, so tracks sharing an album share an image, and upcoming artwork can be encoded before the receiver asks for it. Keys with no
+ * image fall back to the placeholder set via {@link #servePlaceholderImage(byte[], String)}.
+ */
 public class HttpServer {
 
     private static final String TAG = "HttpServer";
     private static final String MIME_TYPE_HTML = "text/html";
+    private static final String MIME_TYPE_DEFAULT = "application/octet-stream";
+
+    private static final String AUDIO_PATH = "/audio/";
+    private static final String IMAGE_PATH = "/image/";
+
+    /**
+     * The preferred port. If it's in use, the server falls back to any free port, see {@link #getPort()}.
+     */
+    private static final int DEFAULT_PORT = 5000;
+
+    /**
+     * How many of the most recently registered tracks can be served.
+     */
+    private static final int MAX_AUDIO_FILES = 8;
+
+    /**
+     * Range requests with more (non-overlapping) ranges than this are served the whole file instead.
+     */
+    private static final int MAX_RANGES = 16;
 
-    private final NanoServer server;
-    private String audioFileToServe;
-    private byte[] imageBytesToServe;
-    private FileInputStream audioInputStream;
-    private ByteArrayInputStream imageInputStream;
-    private boolean isStarted = false;
+    /**
+     * The maximum total size, in bytes, of the encoded artwork held in memory.
+     */
+    private static final int MAX_IMAGE_CACHE_SIZE = 4 * 1024 * 1024;
+
+    private static final String MULTIPART_BOUNDARY = "SHUTTLE_BYTERANGES";
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Nullable
+    private NanoServer server;
+
+    /**
+     * Artwork key -> encoded image. LruCache is thread safe.
+     */
+    private final LruCache<String, Image> images = new LruCache<String, Image>(MAX_IMAGE_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(String key, Image image) {
+            return image.bytes.length;
+        }
+    };
+
+    /**
+     * Served for artwork keys which have no image, see {@link #servePlaceholderImage(byte[], String)}.
+     */
+    @Nullable
+    private volatile Image placeholderImage;
+
+    /**
+     * Song id -> path, least recently registered first. Guarded by itself.
+     */
+    private final LinkedHashMap<Long, String> audioFiles = new LinkedHashMap<Long, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_AUDIO_FILES;
+        }
+    };
 
     private final Map<String, String> mimeTypes = createMimeTypes();
 
     private HttpServer() {
-        server = new NanoServer();
+
     }
 
     public static HttpServer getInstance() {
@@ -35,159 +113,269 @@ public class HttpServer {
         private static final HttpServer INSTANCE = new HttpServer();
     }
 
-    public static HttpServer getInstance() {
-        if (sHttpServer == null) {
-            sHttpServer = new HttpServer();
+    /**
+     * Makes the song available at /audio/{song id}.
+     */
+    public void serveAudio(@NonNull Song song) {
+        if (song.path == null) {
+            return;
+        }
+        synchronized (audioFiles) {
+            // Re-insert, so it becomes the most recent entry
+            audioFiles.remove(song.id);
+            audioFiles.put(song.id, song.path);
         }
-        return sHttpServer;
     }
 
-    private HttpServer() {
-        server = new NanoServer();
+    /**
+     * Makes the encoded image available at /image/{artwork key}, replacing any image previously served for that key.
+     *
+     * @param artworkKey the {@link com.simplecity.amp_library.model.ArtworkProvider#getArtworkKey()} of the image
+     * @param mimeType the mime type of the encoded image, such as "image/jpeg"
+     */
+    public void serveImage(@NonNull String artworkKey, @Nullable byte[] imageBytes, @NonNull String mimeType) {
+        if (imageBytes != null) {
+            images.put(artworkKey, new Image(imageBytes, mimeType));
+        }
     }
 
-    public void serveAudio(String audioUri) {
-        if (audioUri != null) {
-            audioFileToServe = audioUri;
-        }
+    /**
+     * @return true if an image is currently being served for the given artwork key
+     */
+    public boolean hasImage(@NonNull String artworkKey) {
+        return images.get(artworkKey) != null;
     }
 
-    public void serveImage(byte[] imageBytes) {
+    /**
+     * Makes the encoded image available in place of any artwork key which has no image of its own.
+     * <p>
+     * Use this, rather than {@link #serveImage(String, byte[], String)}, when a song's artwork fails to load: the key stays free, so
+     * {@link #hasImage(String)} remains false and the real artwork is loaded again next time.
+     */
+    public void servePlaceholderImage(@Nullable byte[] imageBytes, @NonNull String mimeType) {
         if (imageBytes != null) {
-            imageBytesToServe = imageBytes;
+            placeholderImage = new Image(imageBytes, mimeType);
         }
     }
 
-    public void clearImage() {
-        imageBytesToServe = null;
+    /**
+     * @return true if a placeholder image is being served, see {@link #servePlaceholderImage(byte[], String)}
+     */
+    public boolean hasPlaceholderImage() {
+        return placeholderImage != null;
     }
 
-    public void start() {
-        if (!isStarted) {
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        try {
+            server = startServer(DEFAULT_PORT);
+        } catch (IOException e) {
+            Log.w(TAG, "Port " + DEFAULT_PORT + " unavailable, falling back to any free port: " + e.getMessage());
             try {
-                server.start();
-                isStarted = true;
-            } catch (IOException e) {
-                Log.e(TAG, "Error starting server: " + e.getMessage());
+                server = startServer(0);
+            } catch (IOException e1) {
+                Log.e(TAG, "Error starting server: " + e1.getMessage());
             }
         }
     }
 
-    public void stop() {
-        if (isStarted) {
+    private NanoServer startServer(int port) throws IOException {
+        NanoServer server = new NanoServer(port);
+        server.start();
+        return server;
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
             server.stop();
-            isStarted = false;
-            cleanupAudioStream();
-            cleanupImageStream();
+            server = null;
+        }
+        synchronized (audioFiles) {
+            audioFiles.clear();
+        }
+        images.evictAll();
+    }
+
+    /**
+     * @return the port the server is listening on, or -1 if it isn't running
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getListeningPort() : -1;
+    }
+
+    @Nullable
+    private String getAudioPath(long songId) {
+        synchronized (audioFiles) {
+            return audioFiles.get(songId);
         }
     }
 
     private class NanoServer extends NanoHTTPD {
 
-        NanoServer() {
-            super(5000);
+        NanoServer(int port) {
+            super(port);
         }
 
         @Override
         public Response serve(IHTTPSession session) {
 
-            if (audioFileToServe == null) {
-                Log.e(TAG, "Audio file to serve null");
-                return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_TYPE_HTML, "File not found");
-            }
-
             String uri = session.getUri();
-            if (uri.contains("audio")) {
+            if (uri.startsWith(AUDIO_PATH)) {
                 try {
-                    File file = new File(audioFileToServe);
-
-                    Map<String, String> headers = session.getHeaders();
-                    String range = null;
-                    for (String key : headers.entrySet()) {
-                        if ("range".equals(key)) {
-                            range = headers.get(key);
-                        }
-                    }
-
-                    if (range == null) {
-                        range = "bytes=0-";
-                        session.getHeaders().put("range", range);
-                    }
-
-                    long start;
-                    long end;
-                    long fileLength = file.length();
-
-                    String rangeValue = range.trim().substring("bytes=".length());
-
-                    if (rangeValue.startsWith("-")) {
-                        end = fileLength - 1;
-                        start = fileLength - 1 - Long.parseLong(rangeValue.substring(1));
-                    } else {
-                        String[] ranges = rangeValue.split("-");
-                        start = Long.parseLong(ranges[0]);
-                        end = (ranges.length > 1) ? Long.parseLong(ranges[1]) : fileLength - 1;
-                    }
-
-                    if (end > fileLength - 1) {
-                        end = fileLength - 1;
-                    }
-
-                    if (start <= end) {
-                        long contentLength = end - start + 1;
-                        cleanupAudioStream();
-                        audioInputStream = new FileInputStream(file);
-                        long skipped = audioInputStream.skip(start);
-                        if (skipped < start) {
-                            Log.w(TAG, "Skipped only " + skipped + " of " + start + " bytes");
-                            return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, MIME_TYPE_HTML, "Unable to skip to requested byte range");
-                        }
-                        Response response = newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, getMimeType(audioFileToServe), audioInputStream, contentLength);
-                        response.addHeader("Content-Length", String.valueOf(contentLength));
-                        response.addHeader("Content-Range", "bytes " + start + "-" + end + "/" + fileLength);
-                        response.addHeader("Content-Type", getMimeType(audioFileToServe));
-                        return response;
-                    } else {
-                        return newFixedLengthResponse(Response.Status.RANGE_NOT_SATISFIABLE, MIME_TYPE_HTML, range);
-                    }
+                    return serveAudio(session, uri.substring(AUDIO_PATH.length()));
                 } catch (IOException e) {
                     Log.e(TAG, "Error serving audio: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            } else if (uri.contains("image")) {
-                if (imageBytesToServe == null) {
-                    return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_TYPE_HTML, "Image bytes null");
+                    return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, MIME_TYPE_HTML, "Error serving audio");
                 }
-                cleanupImageStream();
-                imageInputStream = new ByteArrayInputStream(imageBytesToServe);
-                Log.i(TAG, "Serving image bytes: " + imageBytesToServe.length);
-                return newFixedLengthResponse(Response.Status.OK, "image/png", imageInputStream, imageBytesToServe.length);
+            } else if (uri.startsWith(IMAGE_PATH)) {
+                return serveImage(session, uri.substring(IMAGE_PATH.length()));
             }
 
-            Log.e(TAG, "Returning NOT_FOUND response");
             return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_TYPE_HTML, "File not found");
         }
-    }
 
-    void cleanupAudioStream() {
-        if (audioInputStream != null) {
+        private Response serveAudio(IHTTPSession session, String songId) throws IOException {
+
+            String path;
             try {
-                audioInputStream.close();
-            } catch (IOException ignored) {
+                path = getAudioPath(Long.parseLong(songId));
+            } catch (NumberFormatException e) {
+                path = null;
             }
+            File file = path == null ? null : new File(path);
+            if (file == null || !file.isFile()) {
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_TYPE_HTML, "File not found");
+            }
+
+            long fileLength = file.length();
+            long lastModified = file.lastModified();
+            String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(fileLength) + "\"";
+            String lastModifiedDate = formatDate(lastModified);
+            String mimeType = getMimeType(path);
+
+            // Header names are lower-cased by NanoHTTPD
+            Map<String, String> headers = session.getHeaders();
+
+            if (eTag.equals(headers.get("if-none-match"))) {
+                Response response = newFixedLengthResponse(Response.Status.NOT_MODIFIED, mimeType, "");
+                addValidators(response, eTag, lastModifiedDate);
+                return response;
+            }
+
+            String range = headers.get("range");
+            String ifRange = headers.get("if-range");
+            if (range != null && ifRange != null && !ifRange.equals(eTag) && !ifRange.equals(lastModifiedDate)) {
+                // The file has changed since the client's partial copy; send the whole thing
+                range = null;
+            }
+
+            List<ByteRange> ranges = range == null ? null : ByteRange.parse(range, fileLength);
+
+            Response response;
+            if (ranges == null || ranges.size() > MAX_RANGES) {
+                response = newFixedLengthResponse(Response.Status.OK, mimeType, new RangeInputStream(file, 0, fileLength), fileLength);
+            } else if (ranges.isEmpty()) {
+                response = newFixedLengthResponse(Response.Status.RANGE_NOT_SATISFIABLE, MIME_TYPE_HTML, range);
+                response.addHeader("Content-Range", "bytes */" + fileLength);
+            } else if (ranges.size() == 1) {
+                ByteRange byteRange = ranges.get(0);
+                response = newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, mimeType,
+                        new RangeInputStream(file, byteRange.start, byteRange.length()), byteRange.length());
+                response.addHeader("Content-Range", "bytes " + byteRange + "/" + fileLength);
+            } else {
+                response = newMultipartResponse(file, fileLength, mimeType, ranges);
+            }
+            response.addHeader("Accept-Ranges", "bytes");
+            addValidators(response, eTag, lastModifiedDate);
+            return response;
+        }
+
+        private Response serveImage(IHTTPSession session, String artworkKey) {
+            // The uri has already been decoded by NanoHTTPD
+            Image image = images.get(artworkKey);
+            if (image == null) {
+                image = placeholderImage;
+            }
+            if (image == null) {
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_TYPE_HTML, "Image not found");
+            }
+
+            Response response;
+            if (image.eTag.equals(session.getHeaders().get("if-none-match"))) {
+                response = newFixedLengthResponse(Response.Status.NOT_MODIFIED, image.mimeType, "");
+            } else {
+                response = newFixedLengthResponse(Response.Status.OK, image.mimeType, new ByteArrayInputStream(image.bytes), image.bytes.length);
+            }
+            response.addHeader("ETag", image.eTag);
+            // The bytes for a given ETag never change, but the image for a key may be replaced, so the receiver should revalidate
+            response.addHeader("Cache-Control", "no-cache");
+            return response;
         }
-    }
 
-    void cleanupImageStream() {
-        if (imageInputStream != null) {
+        /**
+         * Builds a multipart/byteranges response, streaming each range straight from the file between the part headers.
+         */
+        private Response newMultipartResponse(File file, long fileLength, String mimeType, List<ByteRange> ranges) throws IOException {
+            List<InputStream> parts = new ArrayList<>(ranges.size() * 2 + 1);
+            long contentLength = 0;
             try {
-                imageInputStream.close();
-            } catch (IOException ignored) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    ByteRange byteRange = ranges.get(i);
+                    byte[] partHeader = ((i == 0 ? "" : "\r\n") + "--" + MULTIPART_BOUNDARY + "\r\n"
+                            + "Content-Type: " + mimeType + "\r\n"
+                            + "Content-Range: bytes " + byteRange + "/" + fileLength + "\r\n\r\n").getBytes(ASCII);
+                    parts.add(new ByteArrayInputStream(partHeader));
+                    parts.add(new RangeInputStream(file, byteRange.start, byteRange.length()));
+                    contentLength += partHeader.length + byteRange.length();
+                }
+            } catch (IOException e) {
+                for (InputStream part : parts) {
+                    part.close();
+                }
+                throw e;
             }
+            byte[] trailer = ("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes(ASCII);
+            parts.add(new ByteArrayInputStream(trailer));
+            contentLength += trailer.length;
+
+            return newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, "multipart/byteranges; boundary=" + MULTIPART_BOUNDARY,
+                    new SequenceInputStream(Collections.enumeration(parts)), contentLength);
+        }
+
+        private void addValidators(Response response, String eTag, String lastModifiedDate) {
+            response.addHeader("ETag", eTag);
+            response.addHeader("Last-Modified", lastModifiedDate);
         }
     }
 
-    private final Map<String, String> mimeTypes = createMimeTypes();
+    /**
+     * An encoded image, and the validator it's served with.
+     */
+    private static final class Image {
+
+        final byte[] bytes;
+
+        final String mimeType;
+
+        final String eTag;
+
+        Image(byte[] bytes, String mimeType) {
+            this.bytes = bytes;
+            this.mimeType = mimeType;
+            this.eTag = "\"" + Integer.toHexString(Arrays.hashCode(bytes)) + "-" + Integer.toHexString(bytes.length) + "\"";
+        }
+    }
+
+    /**
+     * @return the given time, formatted as an HTTP date
+     */
+    private static String formatDate(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(time));
+    }
 
     private static Map<String, String> createMimeTypes() {
         Map<String, String> map = new HashMap<>();
@@ -204,6 +392,11 @@ public class HttpServer {
         map.put("jpeg", "image/jpeg");
         map.put("png", "image/png");
         map.put("mp3", "audio/mpeg");
+        map.put("m4a", "audio/mp4");
+        map.put("aac", "audio/aac");
+        map.put("flac", "audio/flac");
+        map.put("wav", "audio/wav");
+        map.put("opus", "audio/ogg");
         map.put("m3u", "audio/mpeg-url");
         map.put("mp4", "video/mp4");
         map.put("ogv", "video/ogg");
@@ -221,6 +414,7 @@ public class HttpServer {
     }
 
     String getMimeType(String filePath) {
-        return mimeTypes.get(filePath.substring(filePath.lastIndexOf(".") + 1));
+        String mimeType = mimeTypes.get(filePath.substring(filePath.lastIndexOf(".") + 1).toLowerCase(Locale.US));
+        return mimeType != null ? mimeType : MIME_TYPE_DEFAULT;
     }
 }
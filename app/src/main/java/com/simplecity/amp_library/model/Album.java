@@ -3,8 +3,8 @@ package com.simplecity.amp_library.model;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.annotation.WorkerThread;
 import com.simplecity.amp_library.utils.ArtworkUtils;
+import com.simplecity.amp_library.utils.CachedCollationKey;
 import com.simplecity.amp_library.utils.ComparisonUtils;
 import com.simplecity.amp_library.utils.StringUtils;
 import java.io.File;
@@ -43,6 +43,8 @@ public class Album implements
 
     private String sortKey;
 
+    private transient volatile CachedCollationKey collationKey;
+
     public Album(long id, String name, List<Artist> artists, String albumArtistName, int numSongs, int numDiscs, int year, long lastPlayed, long dateAdded, List<String> paths, int songPlayCount) {
         this.id = id;
         this.name = name;
@@ -194,6 +196,21 @@ public class Album implements
     @Override
     public void setSortKey() {
         sortKey = StringUtils.keyFor(name);
+        collationKey = null;
+    }
+
+    /**
+     * @return the collation key for {@link #getSortKey()}. Computed on first use (most instances are never sorted), and only
+     * recomputed if the sort key or the locale changes.
+     */
+    @NonNull
+    public byte[] getCollationKey() {
+        CachedCollationKey key = collationKey;
+        if (key == null || key.isStale()) {
+            key = CachedCollationKey.of(getSortKey());
+            collationKey = key;
+        }
+        return key.getBytes();
     }
 
     @Override
@@ -241,8 +258,8 @@ public class Album implements
     }
 
     @Nullable
-    @WorkerThread
-    private String getArtworkPath() {
+    @Override
+    public String getArtworkPath() {
         if (paths != null && !paths.isEmpty()) {
             return paths.get(0);
         }
@@ -251,6 +268,6 @@ public class Album implements
 
     @Override
     public int compareTo(@NonNull Album album) {
-        return ComparisonUtils.compare(getSortKey(), album.getSortKey());
+        return ComparisonUtils.compareCollationKeys(getCollationKey(), album.getCollationKey());
     }
 }
\ No newline at end of file
@@ -3,8 +3,8 @@ package com.simplecity.amp_library.model;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import com.annimon.stream.Stream;
 import com.simplecity.amp_library.data.Repository;
+import com.simplecity.amp_library.utils.CachedCollationKey;
 import com.simplecity.amp_library.utils.ComparisonUtils;
 import com.simplecity.amp_library.utils.StringUtils;
 import io.reactivex.Single;
@@ -30,15 +30,15 @@ public class AlbumArtist implements
 
     private String sortKey;
 
+    private transient volatile CachedCollationKey collationKey;
+
     public AlbumArtist(String name, List<Album> albums) {
         this.name = name;
         this.albums = albums;
     }
 
     public Single<List<Song>> getSongsSingle(Repository.SongsRepository songsRepository) {
-        return songsRepository.getSongs(song -> Stream.of(albums)
-                .map(album -> album.id)
-                .anyMatch(albumId -> albumId == song.albumId))
+        return songsRepository.getSongs(this)
                 .first(Collections.emptyList());
     }
 
@@ -53,6 +53,21 @@ public class AlbumArtist implements
     @Override
     public void setSortKey() {
         sortKey = StringUtils.keyFor(name);
+        collationKey = null;
+    }
+
+    /**
+     * @return the collation key for {@link #getSortKey()}. Computed on first use (most instances are never sorted), and only
+     * recomputed if the sort key or the locale changes.
+     */
+    @NonNull
+    public byte[] getCollationKey() {
+        CachedCollationKey key = collationKey;
+        if (key == null || key.isStale()) {
+            key = CachedCollationKey.of(getSortKey());
+            collationKey = key;
+        }
+        return key.getBytes();
     }
 
     @Override
@@ -157,8 +172,14 @@ public class AlbumArtist implements
         return Collections.emptyList();
     }
 
+    @Nullable
+    @Override
+    public String getArtworkPath() {
+        return null;
+    }
+
     @Override
     public int compareTo(@NonNull AlbumArtist albumArtist) {
-        return ComparisonUtils.compare(getSortKey(), albumArtist.getSortKey());
+        return ComparisonUtils.compareCollationKeys(getCollationKey(), albumArtist.getCollationKey());
     }
 }
\ No newline at end of file
@@ -33,4 +33,10 @@ public interface ArtworkProvider {
 
     @Nullable
     List<File> getFolderArtworkFiles();
+
+    /**
+     * @return the path of the audio file the local (MediaStore, tag and folder) artwork is found via, or null if there isn't one
+     */
+    @Nullable
+    String getArtworkPath();
 }
\ No newline at end of file
@@ -23,6 +23,13 @@ public class BaseFileObject implements Serializable {
         return FileHelper.canReadWrite(new File(path));
     }
 
+    /**
+     * @return true if the details loaded after listing (tags, or folder counts) are the same as the other object's
+     */
+    public boolean detailsEqual(BaseFileObject other) {
+        return true;
+    }
+
     @Override
     public String toString() {
         return "BaseFileObject{" +
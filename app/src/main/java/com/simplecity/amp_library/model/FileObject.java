@@ -1,15 +1,20 @@
 package com.simplecity.amp_library.model;
 
 import android.content.Context;
+import android.support.annotation.Nullable;
 import com.simplecity.amp_library.interfaces.FileType;
 import com.simplecity.amp_library.utils.FileHelper;
 import com.simplecity.amp_library.utils.StringUtils;
 
 public class FileObject extends BaseFileObject {
 
-    public static final String EXTENSION;
+    public String extension;
 
-    public static final TagInfo TAG_INFO;
+    /**
+     * Null until the file's tags have been read, see {@link com.simplecity.amp_library.utils.FileBrowser#loadDir(java.io.File)}
+     */
+    @Nullable
+    public TagInfo tagInfo;
 
     private long duration = 0;
 
@@ -24,6 +29,11 @@ public class FileObject extends BaseFileObject {
         return StringUtils.makeTimeString(context, duration / 1000);
     }
 
+    @Override
+    public boolean detailsEqual(BaseFileObject other) {
+        return other instanceof FileObject && tagInfo == ((FileObject) other).tagInfo;
+    }
+
     @Override
     public String toString() {
         return "FileObject{" +
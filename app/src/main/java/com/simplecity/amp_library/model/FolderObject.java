@@ -7,10 +7,24 @@ public class FolderObject extends BaseFileObject {
     public int fileCount;
     public int folderCount;
 
+    /**
+     * False until the folder's contents have been counted, see {@link com.simplecity.amp_library.utils.FileBrowser#loadDir(java.io.File)}
+     */
+    public boolean hasCounts;
+
     public FolderObject() {
         this.fileType = FileType.FOLDER;
     }
 
+    @Override
+    public boolean detailsEqual(BaseFileObject other) {
+        if (!(other instanceof FolderObject)) {
+            return false;
+        }
+        FolderObject that = (FolderObject) other;
+        return hasCounts == that.hasCounts && fileCount == that.fileCount && folderCount == that.folderCount;
+    }
+
     @Override
     public String toString() {
         return "FolderObject{" +
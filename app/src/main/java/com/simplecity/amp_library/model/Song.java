@@ -13,6 +13,7 @@ import com.simplecity.amp_library.sql.SqlUtils;
 import com.simplecity.amp_library.sql.providers.PlayCountTable;
 import com.simplecity.amp_library.sql.sqlbrite.SqlBriteUtils;
 import com.simplecity.amp_library.utils.ArtworkUtils;
+import com.simplecity.amp_library.utils.CachedCollationKey;
 import com.simplecity.amp_library.utils.ComparisonUtils;
 import com.simplecity.amp_library.utils.FileHelper;
 import com.simplecity.amp_library.utils.StringUtils;
@@ -42,6 +43,7 @@ public class Song implements
     public long duration;
     public int year;
     public int dateAdded;
+    public long dateModified;
     public long playlistSongId;
     public long playlistSongPlayOrder;
     public int playCount;
@@ -69,6 +71,7 @@ public class Song implements
 
     private String artworkKey;
     private String sortKey;
+    private transient volatile CachedCollationKey collationKey;
 
     public static String[] getProjection() {
         return new String[] {
@@ -83,6 +86,7 @@ public class Song implements
                 MediaStore.Audio.Media.YEAR,
                 MediaStore.Audio.Media.TRACK,
                 MediaStore.Audio.Media.DATE_ADDED,
+                MediaStore.Audio.Media.DATE_MODIFIED,
                 MediaStore.Audio.Media.IS_PODCAST,
                 MediaStore.Audio.Media.BOOKMARK,
                 "album_artist"
@@ -126,6 +130,11 @@ public class Song implements
 
         dateAdded = cursor.getInt(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_ADDED));
 
+        int dateModifiedColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DATE_MODIFIED);
+        if (dateModifiedColumn != -1) {
+            dateModified = cursor.getLong(dateModifiedColumn);
+        }
+
         path = cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATA));
 
         albumArtistName = artistName;
@@ -342,6 +351,21 @@ public class Song implements
     @Override
     public void setSortKey() {
         sortKey = StringUtils.keyFor(name);
+        collationKey = null;
+    }
+
+    /**
+     * @return the collation key for {@link #getSortKey()}. Computed on first use, and only recomputed if the sort key or the
+     * locale changes.
+     */
+    @NonNull
+    public byte[] getCollationKey() {
+        CachedCollationKey key = collationKey;
+        if (key == null || key.isStale()) {
+            key = CachedCollationKey.of(getSortKey());
+            collationKey = key;
+        }
+        return key.getBytes();
     }
 
     @Override
@@ -355,6 +379,17 @@ public class Song implements
         artworkKey = String.format("%s_%s", albumArtistName, albumName);
     }
 
+    /**
+     * Restores previously computed sort & artwork keys (e.g. from a snapshot), to avoid recomputing them.
+     */
+    public void setKeys(@Nullable String sortKey, @Nullable String artworkKey) {
+        if (!TextUtils.equals(this.sortKey, sortKey)) {
+            this.collationKey = null;
+        }
+        this.sortKey = sortKey;
+        this.artworkKey = artworkKey;
+    }
+
     @Nullable
     @Override
     public String getRemoteArtworkUrl() {
@@ -387,6 +422,11 @@ public class Song implements
         return ArtworkUtils.getAllFolderArtwork(path);
     }
 
+    @Override
+    public String getArtworkPath() {
+        return path;
+    }
+
     @Override
     public String toString() {
         return "\nSong{" +
@@ -399,6 +439,6 @@ public class Song implements
     @Nullable
     @Override
     public int compareTo(@NonNull Song song) {
-        return ComparisonUtils.compare(getSortKey(), song.getSortKey());
+        return ComparisonUtils.compareCollationKeys(getCollationKey(), song.getCollationKey());
     }
 }
\ No newline at end of file
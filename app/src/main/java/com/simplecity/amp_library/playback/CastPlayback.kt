@@ -83,16 +83,16 @@ class CastPlayback(context: Context, castSession: CastSession) : Playback {
     override fun load(song: Song, playWhenReady: Boolean, seekPosition: Long, completion: ((Boolean) -> Unit)?) {
 
         HttpServer.getInstance().start()
-        HttpServer.getInstance().serveAudio(song.path)
-        HttpServer.getInstance().clearImage()
+        HttpServer.getInstance().serveAudio(song)
 
         val metadata = MediaMetadata(MediaMetadata.MEDIA_TYPE_MUSIC_TRACK)
         metadata.putString(MediaMetadata.KEY_ALBUM_ARTIST, song.albumArtistName)
         metadata.putString(MediaMetadata.KEY_ALBUM_TITLE, song.albumName)
         metadata.putString(MediaMetadata.KEY_TITLE, song.name)
-        metadata.addImage(WebImage(Uri.parse("http://" + ShuttleUtils.getIpAddr(applicationContext) + ":5000" + "/image/" + song.id)))
+        val serverUrl = "http://" + ShuttleUtils.getIpAddr(applicationContext) + ":" + HttpServer.getInstance().port
+        metadata.addImage(WebImage(Uri.parse(serverUrl + "/image/" + Uri.encode(song.artworkKey))))
 
-        val mediaInfo = MediaInfo.Builder("http://" + ShuttleUtils.getIpAddr(applicationContext) + ":5000" + "/audio/" + song.id)
+        val mediaInfo = MediaInfo.Builder(serverUrl + "/audio/" + song.id)
             .setStreamType(MediaInfo.STREAM_TYPE_BUFFERED)
             .setContentType("audio/*")
             .setMetadata(metadata)
@@ -120,32 +120,54 @@ class CastPlayback(context: Context, castSession: CastSession) : Playback {
             completion?.invoke(true)
         }
 
+        loadArtwork(song) { performLoad() }
+    }
+
+    /**
+     * Encodes the song's artwork and hands it to the [HttpServer], unless it's already being served, then invokes the completion.
+     *
+     * Must be called on the main thread.
+     */
+    private fun loadArtwork(song: Song, completion: (() -> Unit)?) {
+
+        val artworkKey = song.artworkKey
+        if (HttpServer.getInstance().hasImage(artworkKey)) {
+            completion?.invoke()
+            return
+        }
+
         Glide.with(applicationContext).load(song)
             .asBitmap()
-            .transcode(BitmapBytesTranscoder(), ByteArray::class.java)
+            .transcode(BitmapBytesTranscoder(Bitmap.CompressFormat.JPEG, ARTWORK_QUALITY), ByteArray::class.java)
             .placeholder(R.drawable.ic_placeholder_dark_large)
-            .into(object : SimpleTarget<ByteArray>() {
+            .into(object : SimpleTarget<ByteArray>(ARTWORK_SIZE, ARTWORK_SIZE) {
                 override fun onResourceReady(resource: ByteArray, glideAnimation: GlideAnimation<in ByteArray>?) {
-                    HttpServer.getInstance().serveImage(resource)
-                    performLoad()
+                    HttpServer.getInstance().serveImage(artworkKey, resource, MIME_TYPE_JPEG)
+                    completion?.invoke()
                 }
 
                 @SuppressLint("CheckResult")
                 override fun onLoadFailed(e: Exception?, errorDrawable: Drawable?) {
                     super.onLoadFailed(e, errorDrawable)
 
+                    // Served as the placeholder, not under the artwork key, so the artwork is retried next time the song is loaded
+                    if (HttpServer.getInstance().hasPlaceholderImage()) {
+                        completion?.invoke()
+                        return
+                    }
+
                     Single.fromCallable {
                         errorDrawable?.let {
                             val outputStream = ByteArrayOutputStream()
                             val bitmap = GlideUtils.drawableToBitmap(errorDrawable)
-                            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, outputStream)
-                            HttpServer.getInstance().serveImage(outputStream.toByteArray())
+                            bitmap.compress(Bitmap.CompressFormat.JPEG, ARTWORK_QUALITY, outputStream)
+                            HttpServer.getInstance().servePlaceholderImage(outputStream.toByteArray(), MIME_TYPE_JPEG)
                         }
                     }
                         .subscribeOn(Schedulers.io())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe({
-                            performLoad()
+                            completion?.invoke()
                         }, { error -> LogUtils.logException(TAG, "Failed to load error drawable", error) })
                 }
             })
@@ -159,6 +181,13 @@ class CastPlayback(context: Context, castSession: CastSession) : Playback {
         // Nothing to do
     }
 
+    override fun prepareNextSong(song: Song?) {
+        // Encode the next song's artwork now, so it's ready to serve as soon as the receiver moves on to it
+        song?.let {
+            AndroidSchedulers.mainThread().scheduleDirect { loadArtwork(song, null) }
+        }
+    }
+
     override fun release() {
         HttpServer.getInstance().stop()
     }
@@ -258,6 +287,15 @@ class CastPlayback(context: Context, castSession: CastSession) : Playback {
 
     companion object {
         const val TAG = "CastPlayback"
+
+        /**
+         * The dimensions artwork is scaled to before it's encoded. Large enough for a TV, without encoding full resolution album art.
+         */
+        private const val ARTWORK_SIZE = 600
+
+        private const val ARTWORK_QUALITY = 85
+
+        private const val MIME_TYPE_JPEG = "image/jpeg"
     }
 
     private inner class CastMediaClientCallback : RemoteMediaClient.Callback() {
@@ -9,12 +9,12 @@ import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.media.RemoteControlClient;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.text.TextUtils;
 import android.util.Log;
-import com.annimon.stream.Stream;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.target.SimpleTarget;
@@ -59,6 +59,28 @@ class MediaSessionManager {
 
     private static String SHUFFLE_ACTION = "ACTION_SHUFFLE";
 
+    /**
+     * The maximum number of queue items published to the media session, see {@link #publishQueue(boolean)}.
+     */
+    private static final int QUEUE_WINDOW_SIZE = 200;
+
+    /**
+     * How close the current position can get to either end of the published window before the window is moved.
+     */
+    private static final int QUEUE_WINDOW_MARGIN = QUEUE_WINDOW_SIZE / 4;
+
+    /**
+     * The playlist, and its size, when the queue was last published, and the range of it that was published.
+     */
+    @Nullable
+    private List<QueueItem> publishedQueueItems;
+
+    private int publishedQueueSize;
+
+    private int queueWindowStart;
+
+    private int queueWindowEnd;
+
     MediaSessionManager(
             Context context,
             QueueManager queueManager,
@@ -109,15 +131,10 @@ class MediaSessionManager {
 
             @Override
             public void onSkipToQueueItem(long id) {
-                List<QueueItem> queueItems = queueManager.getCurrentPlaylist();
-
-                QueueItem queueItem = Stream.of(queueItems)
-                        .filter(aQueueItem -> (long) aQueueItem.hashCode() == id)
-                        .findFirst()
-                        .orElse(null);
-
-                if (queueItem != null) {
-                    playbackManager.setQueuePosition(queueItems.indexOf(queueItem));
+                // Session queue item ids are queue item ids
+                int position = queueManager.indexOf(id);
+                if (position != -1) {
+                    playbackManager.setQueuePosition(position);
                 }
             }
 
@@ -225,7 +242,7 @@ class MediaSessionManager {
         builder.setState(playState, playbackManager.getSeekPosition(), 1.0f);
 
         if (currentQueueItem != null) {
-            builder.setActiveQueueItemId((long) currentQueueItem.hashCode());
+            builder.setActiveQueueItemId(currentQueueItem.getId());
         }
 
         PlaybackStateCompat playbackState = builder.build();
@@ -255,7 +272,7 @@ class MediaSessionManager {
 
                 mediaSession.setPlaybackState(playbackState);
 
-                mediaSession.setQueue(QueueItemKt.toMediaSessionQueueItems(queueManager.getCurrentPlaylist()));
+                publishQueue(action.equals(InternalIntents.QUEUE_CHANGED));
                 mediaSession.setQueueTitle(context.getString(R.string.menu_queue));
 
                 if (settingsManager.showLockscreenArtwork() || CarHelper.isCarUiMode(context)) {
@@ -267,6 +284,46 @@ class MediaSessionManager {
         }
     }
 
+    /**
+     * Publishes the current playlist to the media session.
+     * <p>
+     * Queues larger than {@link #QUEUE_WINDOW_SIZE} are published as a window around the current position, rather than in full: every
+     * published item is built into a {@link android.support.v4.media.MediaDescriptionCompat} and sent across Binder, which is slow for
+     * large queues, and can exceed the transaction size limit. The window is only re-published when the queue changes, or when the
+     * current position comes within {@link #QUEUE_WINDOW_MARGIN} of either end of it.
+     *
+     * @param queueChanged whether the contents of the queue may have changed since it was last published
+     */
+    private void publishQueue(boolean queueChanged) {
+        List<QueueItem> queueItems = queueManager.getCurrentPlaylist();
+        int size = queueItems.size();
+        int position = queueManager.queuePosition;
+
+        if (!queueChanged && queueItems == publishedQueueItems && size == publishedQueueSize && isWithinQueueWindow(position, size)) {
+            return;
+        }
+
+        // Show a few of the previous items, but mostly what's coming up
+        int start = Math.max(0, Math.min(position - QUEUE_WINDOW_MARGIN, size - QUEUE_WINDOW_SIZE));
+        int end = Math.min(size, start + QUEUE_WINDOW_SIZE);
+        mediaSession.setQueue(QueueItemKt.toMediaSessionQueueItems(queueItems.subList(start, end)));
+
+        publishedQueueItems = queueItems;
+        publishedQueueSize = size;
+        queueWindowStart = start;
+        queueWindowEnd = end;
+    }
+
+    /**
+     * @return true if the position is inside the published window, and not within {@link #QUEUE_WINDOW_MARGIN} of an end of the window
+     * (unless that's also the end of the queue)
+     */
+    private boolean isWithinQueueWindow(int position, int size) {
+        int lowerBound = queueWindowStart == 0 ? 0 : queueWindowStart + QUEUE_WINDOW_MARGIN;
+        int upperBound = queueWindowEnd == size ? size : queueWindowEnd - QUEUE_WINDOW_MARGIN;
+        return position >= lowerBound && position < upperBound;
+    }
+
     private void updateMediaSessionArtwork(MediaMetadataCompat.Builder metaData) {
         QueueItem currentQueueItem = queueManager.getCurrentQueueItem();
         if (currentQueueItem != null) {
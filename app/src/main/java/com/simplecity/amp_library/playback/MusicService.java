@@ -130,6 +130,9 @@ public class MusicService extends MediaBrowserServiceCompat {
     @Inject
     FavoritesPlaylistManager favoritesPlaylistManager;
 
+    @Inject
+    QueueStore queueStore;
+
     @SuppressLint("InlinedApi")
     @Override
     public void onCreate() {
@@ -140,7 +143,8 @@ public class MusicService extends MediaBrowserServiceCompat {
                 musicServiceCallbacks,
                 songsRepository,
                 playbackSettingsManager,
-                settingsManager
+                settingsManager,
+                queueStore
         );
 
         playbackManager = new PlaybackManager(
@@ -638,11 +642,10 @@ public class MusicService extends MediaBrowserServiceCompat {
     }
 
     public void moveToNext(QueueItem queueItem) {
-        List<QueueItem> playlist = queueManager.getCurrentPlaylist();
-        int fromIndex = playlist.indexOf(queueItem);
+        int fromIndex = queueManager.indexOf(queueItem);
 
         QueueItem currentQueueItem = queueManager.getCurrentQueueItem();
-        int toIndex = playlist.indexOf(currentQueueItem) + 1;
+        int toIndex = queueManager.indexOf(currentQueueItem) + 1;
 
         if (fromIndex != toIndex) {
             playbackManager.moveQueueItem(fromIndex, toIndex);
@@ -825,10 +828,7 @@ public class MusicService extends MediaBrowserServiceCompat {
                 setShuffleMode(QueueManager.ShuffleMode.OFF);
                 notifyChange(InternalIntents.SHUFFLE_CHANGED);
                 if (this.queueManager.queuePosition >= 0 && this.queueManager.queuePosition < queueManager.shuffleList.size()) {
-                    int playPos = queueManager.playlist.indexOf(queueManager.shuffleList.get(this.queueManager.queuePosition));
-                    if (playPos != -1) {
-                        this.queueManager.queuePosition = playPos;
-                    }
+                    this.queueManager.queuePosition = queueManager.shuffleList.getPlaylistPosition(this.queueManager.queuePosition);
                 }
                 notifyChange(InternalIntents.QUEUE_CHANGED);
                 showToast(R.string.shuffle_off_notif);
@@ -24,6 +24,14 @@ interface Playback {
 
     fun setNextDataSource(path: String?)
 
+    /**
+     * Called with the song queued to play after the current one (or null if there isn't one), so that anything it needs can be
+     * prepared ahead of time.
+     */
+    fun prepareNextSong(song: Song?) {
+        // Nothing to do by default
+    }
+
     fun release()
 
     fun seekTo(position: Long)
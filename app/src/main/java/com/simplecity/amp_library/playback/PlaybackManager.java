@@ -361,8 +361,10 @@ public class PlaybackManager implements Playback.Callbacks {
                 && queueManager.nextPlayPos < queueManager.getCurrentPlaylist().size()) {
             final Song nextSong = queueManager.getCurrentPlaylist().get(queueManager.nextPlayPos).getSong();
             playback.setNextDataSource(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI + "/" + nextSong.id);
+            playback.prepareNextSong(nextSong);
         } else {
             playback.setNextDataSource(null);
+            playback.prepareNextSong(null);
         }
     }
 
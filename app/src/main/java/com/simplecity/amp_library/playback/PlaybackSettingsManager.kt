@@ -30,6 +30,8 @@ class PlaybackSettingsManager @Inject constructor(sharedPreferences: SharedPrefe
         get() = getInt(KEY_SHUFFLE_MODE, QueueManager.ShuffleMode.OFF)
         set(shuffleMode) = setInt(KEY_SHUFFLE_MODE, shuffleMode)
 
+    // The queue used to be stored in these keys. It's now stored by QueueStore; these are only read to migrate an existing queue.
+
     private val KEY_QUEUE_LIST = "queue_list"
     var queueList: String?
         get() = getString(KEY_QUEUE_LIST, null)
@@ -2,7 +2,7 @@ package com.simplecity.amp_library.playback;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import com.annimon.stream.Stream;
+import android.support.v4.util.Pair;
 import com.simplecity.amp_library.data.Repository;
 import com.simplecity.amp_library.model.Song;
 import com.simplecity.amp_library.playback.constants.InternalIntents;
@@ -11,15 +11,20 @@ import com.simplecity.amp_library.rx.UnsafeConsumer;
 import com.simplecity.amp_library.ui.screens.queue.QueueItem;
 import com.simplecity.amp_library.ui.screens.queue.QueueItemKt;
 import com.simplecity.amp_library.utils.LogUtils;
+import com.simplecity.amp_library.utils.LongLongMap;
 import com.simplecity.amp_library.utils.SettingsManager;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Random;
+import java.util.Set;
 import kotlin.Unit;
 import kotlin.jvm.functions.Function0;
 
@@ -43,13 +48,14 @@ public class QueueManager {
         int LAST = 1;
     }
 
-    private final char hexDigits[] = new char[] { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
-
     @NonNull
     List<QueueItem> playlist = new ArrayList<>();
 
+    /**
+     * The shuffled order of the playlist. Only maintained while shuffle is on; edits to the playlist while it's off discard it.
+     */
     @NonNull
-    List<QueueItem> shuffleList = new ArrayList<>();
+    final ShuffleList shuffleList = new ShuffleList(this);
 
     @ShuffleMode
     int shuffleMode = ShuffleMode.OFF;
@@ -72,16 +78,27 @@ public class QueueManager {
 
     private SettingsManager settingsManager;
 
+    private QueueStore queueStore;
+
+    private final Random random = new Random();
+
+    /**
+     * Queue item id -> position in the current playlist. May be out of date, see {@link #indexOf(QueueItem)}.
+     */
+    private final LongLongMap positionIndex = new LongLongMap();
+
     public QueueManager(
             MusicService.Callbacks musicServiceCallbacks,
             Repository.SongsRepository songsRepository,
             PlaybackSettingsManager playbackSettingsManager,
-            SettingsManager settingsManager
+            SettingsManager settingsManager,
+            QueueStore queueStore
     ) {
         this.musicServiceCallbacks = musicServiceCallbacks;
         this.songsRepository = songsRepository;
         this.playbackSettingsManager = playbackSettingsManager;
         this.settingsManager = settingsManager;
+        this.queueStore = queueStore;
     }
 
     private void notifyQueueChanged() {
@@ -118,14 +135,12 @@ public class QueueManager {
 
     public void load(@NonNull List<Song> songs, final int position, @NonNull UnsafeAction openCurrentAndNext) {
 
-        List<QueueItem> queueItems = QueueItemKt.toQueueItems(songs);
-
-        if (!playlist.equals(queueItems)) {
+        // Reloading the same songs keeps the existing queue items (and their ids)
+        if (!QueueItemKt.toSongs(playlist).equals(songs)) {
             playlist.clear();
             shuffleList.clear();
 
-            playlist.addAll(queueItems);
-            QueueItemKt.updateOccurrence(playlist);
+            playlist.addAll(QueueItemKt.toQueueItems(songs));
         }
 
         queuePosition = position;
@@ -157,7 +172,12 @@ public class QueueManager {
             to = getCurrentPlaylist().size() - 1;
         }
 
-        getCurrentPlaylist().add(to, getCurrentPlaylist().remove(from));
+        if (shuffleMode == ShuffleMode.ON) {
+            shuffleList.move(from, to);
+        } else {
+            playlist.add(to, playlist.remove(from));
+            shuffleList.clear();
+        }
 
         if (from < to) {
             if (queuePosition == from) {
@@ -173,8 +193,6 @@ public class QueueManager {
             }
         }
 
-        QueueItemKt.updateOccurrence(getCurrentPlaylist());
-
         notifyQueueChanged();
     }
 
@@ -243,74 +261,132 @@ public class QueueManager {
     }
 
     /**
-     * Removes the first instance of the Song the playlist & shuffleList.
+     * Removes the item from the playlist & shuffleList.
      */
     void removeQueueItem(QueueItem queueItem, UnsafeAction stop, UnsafeAction moveToNextTrack) {
+        removeQueueItems(Collections.singletonList(queueItem), stop, moveToNextTrack);
+    }
+
+    /**
+     * Removes the QueueItems specified from the playlist & shuffleList. If the current
+     * QueueItem is removed, playback will move to the first remaining item that followed it.
+     *
+     * @param queueItems the QueueItems to remove
+     */
+    void removeQueueItems(@NonNull List<QueueItem> queueItems, UnsafeAction stop, UnsafeAction moveToNextTrack) {
+
+        LongLongMap removedIds = new LongLongMap(queueItems.size());
+        for (QueueItem queueItem : queueItems) {
+            removedIds.put(queueItem.getId(), 0);
+        }
 
         QueueItem currentQueueItem = getCurrentQueueItem();
+        boolean currentRemoved = currentQueueItem != null && removedIds.containsKey(currentQueueItem.getId());
+
+        /*
+         * The new queue position is the number of remaining items which preceded the current item. If the current item
+         * is still there, that's its new position. If it was removed, it's the position of the first remaining item that
+         * came after it.
+         *
+         * In this example, let's say Song 7 is currently playing
+         *
+         * Playlist:                    [Song 3,    Song 4,     Song 5,     Song 6,     Song 7,     Song 8]
+         * Indices:                     [0,         1,          2,          3,          4,          5]
+         *
+         * Remove;                                              [Song 5,     Song 6,     Song 7]
+         *
+         * Remaining items before Song 7:   Song 3, Song 4
+         *
+         * Playlist after removal:      [Song 3,    Song 4,     Song 8]
+         * Indices:                     [0,         1,          2]
+         *
+         *
+         * So after the removal, we'll play index 2, which is Song 8.
+         */
+        if (queuePosition >= 0) {
+            List<QueueItem> currentPlaylist = getCurrentPlaylist();
+            int remainingBefore = 0;
+            for (int i = 0, end = Math.min(queuePosition, currentPlaylist.size()); i < end; i++) {
+                if (!removedIds.containsKey(currentPlaylist.get(i).getId())) {
+                    remainingBefore++;
+                }
+            }
+            queuePosition = remainingBefore;
+        }
 
-        playlist.remove(queueItem);
-        shuffleList.remove(queueItem);
+        removeFromPlaylist(removedIds);
 
-        if (queueItem == currentQueueItem) {
+        if (currentRemoved) {
             onCurrentSongRemoved(stop, moveToNextTrack);
-        } else {
-            queuePosition = getCurrentPlaylist().indexOf(currentQueueItem);
         }
 
-        QueueItemKt.updateOccurrence(getCurrentPlaylist());
-
         notifyQueueChanged();
     }
 
+    void removeSongs(@NonNull List<Song> songs, UnsafeAction stop, UnsafeAction moveToNextTrack) {
+        Set<Song> songSet = new HashSet<>(songs);
+        List<QueueItem> queueItems = new ArrayList<>();
+        for (QueueItem queueItem : playlist) {
+            if (songSet.contains(queueItem.getSong())) {
+                queueItems.add(queueItem);
+            }
+        }
+        removeQueueItems(queueItems, stop, moveToNextTrack);
+    }
+
     /**
-     * Removes the range of Songs specified from the playlist & shuffleList. If a Song
-     * within the range is the file currently being played, playback will move
-     * to the next Song after the range.
-     *
-     * @param queueItems the QueueItems to remove
+     * Removes the items with the given ids from the playlist in a single pass, and from the shuffled order.
      */
-    void removeQueueItems(@NonNull List<QueueItem> queueItems, UnsafeAction stop, UnsafeAction moveToNextTrack) {
+    private void removeFromPlaylist(@NonNull LongLongMap removedIds) {
+        boolean[] removed = new boolean[playlist.size()];
+        int size = 0;
+        for (int i = 0; i < removed.length; i++) {
+            QueueItem queueItem = playlist.get(i);
+            if (removedIds.containsKey(queueItem.getId())) {
+                removed[i] = true;
+            } else {
+                playlist.set(size++, queueItem);
+            }
+        }
+        if (size == removed.length) {
+            return;
+        }
+        playlist.subList(size, removed.length).clear();
 
-        playlist.removeAll(queueItems);
-        shuffleList.removeAll(queueItems);
-
-        QueueItemKt.updateOccurrence(getCurrentPlaylist());
-
-        if (queueItems.contains(getCurrentQueueItem())) {
-            /*
-             * If we remove a list of songs from the current queue, and that list contains our currently
-             * playing song, we need to figure out which song should play next. We'll play the first song
-             * that comes after the list of songs to be removed.
-             *
-             * In this example, let's say Song 7 is currently playing
-             *
-             * Playlist:                    [Song 3,    Song 4,     Song 5,     Song 6,     Song 7,     Song 8]
-             * Indices:                     [0,         1,          2,          3,          4,          5]
-             *
-             * Remove;                                              [Song 5,     Song 6,     Song 7]
-             *
-             * First removed song:                                  Song 5
-             * Index of first removed song:                         2
-             *
-             * Playlist after removal:      [Song 3,    Song 4,     Song 8]
-             * Indices:                     [0,         1,          2]
-             *
-             *
-             * So after the removal, we'll play index 2, which is Song 8.
-             */
-            queuePosition = Collections.indexOfSubList(getCurrentPlaylist(), queueItems);
-            onCurrentSongRemoved(stop, moveToNextTrack);
+        if (shuffleMode == ShuffleMode.ON) {
+            shuffleList.onPlaylistRemoved(removed);
         } else {
-            queuePosition = getCurrentPlaylist().indexOf(getCurrentQueueItem());
+            shuffleList.clear();
         }
+    }
 
-        notifyQueueChanged();
+    /**
+     * @return the position of the item in the current playlist, or -1 if it isn't in the queue
+     */
+    int indexOf(@Nullable QueueItem queueItem) {
+        if (queueItem == null) {
+            return -1;
+        }
+        return indexOf(queueItem.getId());
     }
 
-    void removeSongs(@NonNull List<Song> songs, UnsafeAction stop, UnsafeAction moveToNextTrack) {
-        List<QueueItem> queueItems = Stream.of(playlist).filter(value -> songs.contains(value.getSong())).toList();
-        removeQueueItems(queueItems, stop, moveToNextTrack);
+    /**
+     * @param queueItemId the {@link QueueItem#getId()} of an item
+     * @return the position of the item in the current playlist, or -1 if it isn't in the queue
+     */
+    int indexOf(long queueItemId) {
+        List<QueueItem> currentPlaylist = getCurrentPlaylist();
+
+        // The index is rebuilt whenever it's found to be out of date, rather than being maintained through every edit.
+        int position = (int) positionIndex.get(queueItemId, -1);
+        if (position == -1 || position >= currentPlaylist.size() || currentPlaylist.get(position).getId() != queueItemId) {
+            positionIndex.clear();
+            for (int i = 0, size = currentPlaylist.size(); i < size; i++) {
+                positionIndex.put(currentPlaylist.get(i).getId(), i);
+            }
+            position = (int) positionIndex.get(queueItemId, -1);
+        }
+        return position;
     }
 
     private void onCurrentSongRemoved(UnsafeAction stop, UnsafeAction moveToNextTrack) {
@@ -338,20 +414,34 @@ public class QueueManager {
 
         switch (action) {
             case EnqueueAction.NEXT:
-                List<QueueItem> otherList = getCurrentPlaylist() == playlist ? shuffleList : playlist;
-                getCurrentPlaylist().addAll(queuePosition + 1, queueItems);
-                otherList.addAll(queueItems);
-
-                QueueItemKt.updateOccurrence(getCurrentPlaylist());
+                if (shuffleMode == ShuffleMode.ON) {
+                    // Append to the playlist, and play next in the shuffled order
+                    int playlistPosition = playlist.size();
+                    playlist.addAll(queueItems);
+                    int start = Math.min(queuePosition + 1, shuffleList.size());
+                    for (int i = 0; i < queueItems.size(); i++) {
+                        shuffleList.insert(start + i, playlistPosition + i);
+                    }
+                } else {
+                    playlist.addAll(queuePosition + 1, queueItems);
+                    shuffleList.clear();
+                }
 
                 setNextTrack.run();
                 notifyQueueChanged();
                 break;
             case EnqueueAction.LAST:
+                int playlistPosition = playlist.size();
                 playlist.addAll(queueItems);
-                shuffleList.addAll(queueItems);
-
-                QueueItemKt.updateOccurrence(getCurrentPlaylist());
+                if (shuffleMode == ShuffleMode.ON) {
+                    // Shuffle the new items in amongst those which haven't been played yet
+                    int start = Math.min(queuePosition + 1, shuffleList.size());
+                    for (int i = 0; i < queueItems.size(); i++) {
+                        shuffleList.insert(start + random.nextInt(shuffleList.size() - start + 1), playlistPosition + i);
+                    }
+                } else {
+                    shuffleList.clear();
+                }
 
                 notifyQueueChanged();
                 break;
@@ -366,8 +456,8 @@ public class QueueManager {
     /**
      * Saves our state to preferences, including the queue position, repeat mode & shuffle mode.
      *
-     * @param saveQueue boolean whether to serialize the playlist/shuffleList and store those in preferences
-     * as well.
+     * @param saveQueue boolean whether to save the playlist/shuffleList to the {@link QueueStore} as well. Only the changes since the
+     * last save are written.
      */
     void saveQueue(boolean saveQueue) {
 
@@ -380,9 +470,11 @@ public class QueueManager {
         }
 
         if (saveQueue) {
-            playbackSettingsManager.setQueueList(serializePlaylist(playlist));
-            if (shuffleMode == ShuffleMode.ON) {
-                playbackSettingsManager.setShuffleList(serializePlaylist(shuffleList));
+            queueStore.save(playlist, shuffleList);
+            if (playbackSettingsManager.getQueueList() != null) {
+                // The queue has been migrated from preferences to the queue store
+                playbackSettingsManager.setQueueList(null);
+                playbackSettingsManager.setShuffleList(null);
             }
         }
 
@@ -397,53 +489,59 @@ public class QueueManager {
         shuffleMode = playbackSettingsManager.getShuffleMode();
         repeatMode = playbackSettingsManager.getRepeatMode();
 
-        return songsRepository.getAllSongs()
-                .first(Collections.emptyList())
-                .map(QueueItemKt::toQueueItems)
+        Single<QueueStore.Queue> savedQueue = queueStore.read()
+                .switchIfEmpty(Maybe.fromCallable(this::readLegacyQueue))
+                .toSingle(QueueStore.Queue.EMPTY);
+
+        // Only the queued songs are queried, rather than waiting on the whole library
+        return savedQueue
+                .flatMap(queue -> songsRepository.getSongs(queue.playlist)
+                        .map(songs -> new Pair<>(queue, indexSongs(songs))))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe((UnsafeConsumer<List<QueueItem>>) queueItems -> {
-                    String queueList = playbackSettingsManager.getQueueList();
-                    if (queueList != null) {
-                        playlist = deserializePlaylist(queueList, queueItems);
+                .subscribe((UnsafeConsumer<Pair<QueueStore.Queue, SongIndex>>) pair -> {
+                    QueueStore.Queue queue = pair.first;
+                    SongIndex songIndex = pair.second;
+
+                    // Saved playlist position -> restored playlist position, or -1 if the song no longer exists
+                    int[] playlistPositions = new int[queue.playlist.length];
+                    playlist = deserializePlaylist(queue.playlist, songIndex, playlistPositions);
+
+                    final int queuePosition = playbackSettingsManager.getQueuePosition();
+
+                    if (queuePosition < 0 || queuePosition >= playlist.size()) {
+                        // The saved playlist is bogus, discard it
+                        playlist.clear();
+                        queueReloading = false;
+                        onComplete.invoke();
+                        return;
+                    }
+
+                    QueueManager.this.queuePosition = queuePosition;
 
-                        final int queuePosition = playbackSettingsManager.getQueuePosition();
+                    if (repeatMode != RepeatMode.ALL && repeatMode != RepeatMode.ONE) {
+                        repeatMode = RepeatMode.OFF;
+                    }
+                    if (shuffleMode != ShuffleMode.ON) {
+                        shuffleMode = ShuffleMode.OFF;
+                    }
+                    if (shuffleMode == ShuffleMode.ON) {
+                        int[] shuffleOrder = deserializeShuffleOrder(queue.shuffleOrder, playlistPositions);
 
-                        if (queuePosition < 0 || queuePosition >= playlist.size()) {
+                        if (!ShuffleList.isPermutation(shuffleOrder, playlist.size()) || queuePosition >= shuffleOrder.length) {
                             // The saved playlist is bogus, discard it
-                            playlist.clear();
+                            shuffleList.clear();
                             queueReloading = false;
                             onComplete.invoke();
                             return;
                         }
+                        shuffleList.setOrder(shuffleOrder);
+                    }
 
-                        QueueManager.this.queuePosition = queuePosition;
-
-                        if (repeatMode != RepeatMode.ALL && repeatMode != RepeatMode.ONE) {
-                            repeatMode = RepeatMode.OFF;
-                        }
-                        if (shuffleMode != ShuffleMode.ON) {
-                            shuffleMode = ShuffleMode.OFF;
-                        }
-                        if (shuffleMode == ShuffleMode.ON) {
-                            queueList = playbackSettingsManager.getShuffleList();
-                            if (queueList != null) {
-                                shuffleList = deserializePlaylist(queueList, queueItems);
-
-                                if (queuePosition >= shuffleList.size()) {
-                                    // The saved playlist is bogus, discard it
-                                    shuffleList.clear();
-                                    queueReloading = false;
-                                    onComplete.invoke();
-                                    return;
-                                }
-                            }
-                        }
-
-                        if (QueueManager.this.queuePosition < 0 || QueueManager.this.queuePosition >= getCurrentPlaylist().size()) {
-                            QueueManager.this.queuePosition = 0;
-                        }
+                    if (QueueManager.this.queuePosition < 0 || QueueManager.this.queuePosition >= getCurrentPlaylist().size()) {
+                        QueueManager.this.queuePosition = 0;
                     }
+
                     queueReloading = false;
                     onComplete.invoke();
                 }, error -> {
@@ -454,95 +552,127 @@ public class QueueManager {
     }
 
     /**
-     * Converts a playlist to a String which can be saved to SharedPrefs
+     * Reads a queue saved to SharedPrefs by older versions, before the {@link QueueStore} existed.
+     *
+     * @return the saved queue, or null if there isn't one
      */
-    private String serializePlaylist(List<QueueItem> queueItems) {
-
-        // The current playlist is saved as a list of "reverse hexadecimal"
-        // numbers, which we can generate faster than normal decimal or
-        // hexadecimal numbers, which in turn allows us to save the playlist
-        // more often without worrying too much about performance.
-
-        StringBuilder q = new StringBuilder();
-
-        List<Song> songs = Stream.of(queueItems).map(QueueItem::getSong).toList();
-        int len = songs.size();
-        for (int i = 0; i < len; i++) {
-            long n = songs.get(i).id;
-            if (n >= 0) {
-                if (n == 0) {
-                    q.append("0;");
-                } else {
-                    while (n != 0) {
-                        final int digit = (int) (n & 0xf);
-                        n >>>= 4;
-                        q.append(hexDigits[digit]);
-                    }
-                    q.append(";");
-                }
-            }
+    @Nullable
+    private QueueStore.Queue readLegacyQueue() {
+        String queueList = playbackSettingsManager.getQueueList();
+        if (queueList == null) {
+            return null;
         }
-
-        return q.toString();
+        long[] playlist = parseLegacyPlaylist(queueList);
+        String shuffleList = playbackSettingsManager.getShuffleList();
+        return new QueueStore.Queue(playlist, shuffleList == null ? new int[0] : QueueStore.toShuffleOrder(playlist, parseLegacyPlaylist(shuffleList)));
     }
 
     /**
-     * Converts a string representation of a playlist from SharedPrefs into a list of songs.
+     * Converts the "reverse hexadecimal" string representation of a playlist from SharedPrefs into a list of song ids.
      */
-    private List<QueueItem> deserializePlaylist(String listString, List<QueueItem> queueItems) {
-        List<Long> ids = new ArrayList<>();
-        int n = 0;
+    private long[] parseLegacyPlaylist(String listString) {
+        long[] ids = new long[16];
+        int size = 0;
+        long n = 0;
         int shift = 0;
         for (int i = 0; i < listString.length(); i++) {
             char c = listString.charAt(i);
             if (c == ';') {
-                ids.add((long) n);
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = n;
                 n = 0;
                 shift = 0;
             } else {
                 if (c >= '0' && c <= '9') {
-                    n += ((c - '0') << shift);
+                    n += ((long) (c - '0') << shift);
                 } else if (c >= 'a' && c <= 'f') {
-                    n += ((10 + c - 'a') << shift);
+                    n += ((long) (10 + c - 'a') << shift);
                 } else {
                     // bogus playlist data
-                    playlist.clear();
                     break;
                 }
                 shift += 4;
             }
         }
+        return Arrays.copyOf(ids, size);
+    }
 
-        Map<Integer, Song> map = new TreeMap<>();
+    /**
+     * The songs of a saved queue, indexed by id.
+     */
+    private static final class SongIndex {
 
-        Stream.of(queueItems).map(QueueItem::getSong).forEach(song -> {
-            int index = ids.indexOf(song.id);
-            if (index != -1) {
-                map.put(index, song);
-            }
-        });
+        final List<Song> songs;
 
-        return QueueItemKt.toQueueItems(new ArrayList<>(map.values()));
+        /**
+         * Song id -> index into {@link #songs}
+         */
+        final LongLongMap positions;
+
+        SongIndex(List<Song> songs, LongLongMap positions) {
+            this.songs = songs;
+            this.positions = positions;
+        }
     }
 
-    void makeShuffleList() {
-        if (playlist.isEmpty()) {
-            return;
+    private static SongIndex indexSongs(List<Song> songs) {
+        LongLongMap positions = new LongLongMap(songs.size());
+        for (int i = 0, size = songs.size(); i < size; i++) {
+            positions.put(songs.get(i).id, i);
         }
+        return new SongIndex(songs, positions);
+    }
 
-        shuffleList = new ArrayList<>(playlist);
-        QueueItem currentSong = null;
-        if (queuePosition >= 0 && queuePosition < shuffleList.size()) {
-            currentSong = shuffleList.remove(queuePosition);
+    /**
+     * Converts a list of saved song ids into a list of queue items, in the saved order. Repeated ids each get their own item, and ids
+     * whose song no longer exists are dropped.
+     *
+     * @param playlistPositions populated with the position of each saved id in the returned list, or -1 if it was dropped
+     */
+    private List<QueueItem> deserializePlaylist(long[] savedIds, SongIndex songIndex, int[] playlistPositions) {
+        List<Song> songs = new ArrayList<>(savedIds.length);
+        for (int i = 0; i < savedIds.length; i++) {
+            int position = (int) songIndex.positions.get(savedIds[i], -1);
+            if (position != -1) {
+                playlistPositions[i] = songs.size();
+                songs.add(songIndex.songs.get(position));
+            } else {
+                playlistPositions[i] = -1;
+            }
         }
+        return QueueItemKt.toQueueItems(songs);
+    }
 
-        Collections.shuffle(shuffleList);
+    /**
+     * Maps a saved shuffle order onto the restored playlist, dropping the positions of songs which no longer exist.
+     *
+     * @return the restored order, which may not be a valid permutation if the saved order was bogus
+     */
+    private static int[] deserializeShuffleOrder(int[] savedOrder, int[] playlistPositions) {
+        int[] order = new int[savedOrder.length];
+        int size = 0;
+        for (int savedPosition : savedOrder) {
+            if (savedPosition < 0 || savedPosition >= playlistPositions.length) {
+                return new int[0];
+            }
+            int position = playlistPositions[savedPosition];
+            if (position != -1) {
+                order[size++] = position;
+            }
+        }
+        return Arrays.copyOf(order, size);
+    }
 
-        if (currentSong != null) {
-            shuffleList.add(0, currentSong);
+    void makeShuffleList() {
+        if (playlist.isEmpty()) {
+            return;
         }
-        queuePosition = 0;
 
-        QueueItemKt.updateOccurrence(shuffleList);
+        long seed = random.nextLong();
+        shuffleList.shuffle(queuePosition, seed);
+        queueStore.onShuffle(seed, queuePosition);
+        queuePosition = 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,699 @@
+package com.simplecity.amp_library.playback;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+import com.simplecity.amp_library.BuildConfig;
+import com.simplecity.amp_library.ui.screens.queue.QueueItem;
+import com.simplecity.amp_library.utils.LogUtils;
+import com.simplecity.amp_library.utils.LongLongMap;
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Persists the playback queue (the song ids of the playlist, and the shuffled order as positions in the playlist) to a compact binary
+ * file, so that editing a large queue doesn't rewrite the whole queue each time.
+ * <p>
+ * The store consists of a snapshot, holding both lists as delta & varint encoded values, and an append-only journal of edits made since
+ * the snapshot was written (a replaced range, a moved item, or a shuffle, stored as its seed). Each {@link #save(List, ShuffleList)} diffs the
+ * queue against what was last saved, and appends only the difference to the journal. Once the journal grows larger than the snapshot,
+ * it's compacted into a new snapshot.
+ * <p>
+ * All file access happens on a dedicated background thread, in the order the edits were made.
+ */
+@Singleton
+public class QueueStore {
+
+    private static final String TAG = "QueueStore";
+
+    private static final boolean ENABLE_LOGGING = false;
+
+    private static final String SNAPSHOT_FILE_NAME = "queue.snapshot";
+
+    private static final String JOURNAL_FILE_NAME = "queue.journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x51534e50; // "QSNP"
+
+    private static final int JOURNAL_MAGIC = 0x514a4e4c; // "QJNL"
+
+    /**
+     * Must be incremented whenever the layout changes. Stores with a different version are ignored.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Size of the snapshot & journal headers: magic, version & generation
+     */
+    private static final int HEADER_LENGTH = 16;
+
+    /**
+     * The journal isn't compacted until it's at least this large, regardless of the size of the snapshot.
+     */
+    private static final int MIN_COMPACTION_LENGTH = 16 * 1024;
+
+    private static final int LIST_PLAYLIST = 0;
+    private static final int LIST_SHUFFLE = 1;
+
+    private static final int OP_REPLACE = 1;
+    private static final int OP_MOVE = 2;
+    private static final int OP_SHUFFLE = 3;
+
+    /**
+     * A stored queue: the song ids of the playlist, and the shuffled order.
+     */
+    public static final class Queue {
+
+        public static final Queue EMPTY = new Queue(new long[0], new int[0]);
+
+        @NonNull
+        public final long[] playlist;
+
+        /**
+         * Shuffled position -> playlist position, see {@link ShuffleList}. Empty if there's no shuffled order.
+         */
+        @NonNull
+        public final int[] shuffleOrder;
+
+        public Queue(@NonNull long[] playlist, @NonNull int[] shuffleOrder) {
+            this.playlist = playlist;
+            this.shuffleOrder = shuffleOrder;
+        }
+    }
+
+    private final File snapshotFile;
+
+    private final File journalFile;
+
+    private final Scheduler scheduler = Schedulers.from(Executors.newSingleThreadExecutor());
+
+    /**
+     * The lists as of the last save, indexed by LIST_PLAYLIST (song ids) & LIST_SHUFFLE (playlist positions), or null if unknown.
+     * Accessed on the caller's thread.
+     */
+    @Nullable
+    private long[][] saved;
+
+    private long pendingShuffleSeed;
+
+    private int pendingShufflePosition = -1;
+
+    /**
+     * The lists as stored on disk. Accessed on the background thread only.
+     */
+    @Nullable
+    private long[][] stored;
+
+    private long generation;
+
+    private long snapshotLength;
+
+    private long journalLength;
+
+    @Inject
+    public QueueStore(Context context) {
+        this(context.getFilesDir());
+    }
+
+    /**
+     * @param directory the directory to keep the snapshot & journal in
+     */
+    QueueStore(@NonNull File directory) {
+        snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        journalFile = new File(directory, JOURNAL_FILE_NAME);
+    }
+
+    /**
+     * @return a {@link Maybe} which emits the stored queue, or completes empty if no queue has been stored (or it couldn't be read)
+     */
+    public Maybe<Queue> read() {
+        return Maybe.fromCallable(() -> {
+            long time = System.currentTimeMillis();
+            long[][] lists = readStore();
+            synchronized (this) {
+                saved = lists == null ? null : copy(lists);
+            }
+            if (lists == null) {
+                return null;
+            }
+            if (ENABLE_LOGGING && BuildConfig.DEBUG) {
+                Log.d(TAG, String.format("Read queue of %s songs in %sms", lists[LIST_PLAYLIST].length, System.currentTimeMillis() - time));
+            }
+            return new Queue(lists[LIST_PLAYLIST], toInts(lists[LIST_SHUFFLE]));
+        })
+                .doOnError(error -> LogUtils.logException(TAG, "Failed to read queue", error))
+                .onErrorComplete()
+                .subscribeOn(scheduler);
+    }
+
+    /**
+     * Notes that the shuffled order has just been generated via {@link ShuffleList#shuffle(int, int, long)}, so the next save can store
+     * the seed rather than the order.
+     */
+    public synchronized void onShuffle(long seed, int position) {
+        pendingShuffleSeed = seed;
+        pendingShufflePosition = position;
+    }
+
+    /**
+     * Saves the queue. Only the changes since the previous save are written.
+     */
+    public synchronized void save(@NonNull List<QueueItem> playlist, @NonNull ShuffleList shuffleList) {
+
+        Values playlistValues = index -> playlist.get(index).getSong().id;
+        Values shuffleValues = shuffleList::getPlaylistPosition;
+
+        long[][] saved = this.saved;
+        if (saved == null) {
+            long[][] lists = new long[][] { toArray(playlistValues, playlist.size()), toArray(shuffleValues, shuffleList.size()) };
+            this.saved = lists;
+            pendingShufflePosition = -1;
+            long[][] snapshot = copy(lists);
+            scheduler.scheduleDirect(() -> writeSnapshot(snapshot));
+            return;
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+        diff(LIST_PLAYLIST, playlistValues, playlist.size(), records);
+
+        if (pendingShufflePosition != -1) {
+            long[] shuffled = toLongs(ShuffleList.shuffle(saved[LIST_PLAYLIST].length, pendingShufflePosition, pendingShuffleSeed));
+            if (equals(shuffled, shuffleValues, shuffleList.size())) {
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                record.write(OP_SHUFFLE);
+                writeVarint(record, pendingShufflePosition);
+                writeFixedLong(record, pendingShuffleSeed);
+                writeRecord(records, record);
+                saved[LIST_SHUFFLE] = shuffled;
+            }
+            pendingShufflePosition = -1;
+        }
+
+        diff(LIST_SHUFFLE, shuffleValues, shuffleList.size(), records);
+
+        if (records.size() != 0) {
+            byte[] bytes = records.toByteArray();
+            scheduler.scheduleDirect(() -> append(bytes));
+        }
+    }
+
+    /**
+     * Appends a record describing the difference between the saved list and the given list, and updates the saved list.
+     */
+    private void diff(int list, Values values, int newSize, ByteArrayOutputStream records) {
+
+        long[] old = saved[list];
+        int oldSize = old.length;
+        int minSize = Math.min(oldSize, newSize);
+
+        int prefix = 0;
+        while (prefix < minSize && old[prefix] == values.get(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < minSize - prefix && old[oldSize - 1 - suffix] == values.get(newSize - 1 - suffix)) {
+            suffix++;
+        }
+        if (oldSize == newSize && prefix + suffix == oldSize) {
+            return;
+        }
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+        int length = newSize - prefix - suffix;
+        if (oldSize == newSize && length >= 2) {
+            // A single item moved from one end of the changed range to the other
+            int last = prefix + length - 1;
+            if (isMove(old, values, prefix, last)) {
+                record.write(OP_MOVE);
+                writeVarint(record, list);
+                writeVarint(record, prefix);
+                writeVarint(record, last);
+                writeRecord(records, record);
+                saved[list] = move(old, prefix, last);
+                return;
+            } else if (isMove(old, values, last, prefix)) {
+                record.write(OP_MOVE);
+                writeVarint(record, list);
+                writeVarint(record, last);
+                writeVarint(record, prefix);
+                writeRecord(records, record);
+                saved[list] = move(old, last, prefix);
+                return;
+            }
+        }
+
+        long[] inserted = new long[length];
+        for (int i = 0; i < length; i++) {
+            inserted[i] = values.get(prefix + i);
+        }
+        int removed = oldSize - prefix - suffix;
+
+        record.write(OP_REPLACE);
+        writeVarint(record, list);
+        writeVarint(record, prefix);
+        writeVarint(record, removed);
+        writeIds(record, inserted);
+        writeRecord(records, record);
+        saved[list] = replace(old, prefix, removed, inserted);
+    }
+
+    /**
+     * @return true if moving the item at 'from' to 'to' transforms 'old' into 'values'
+     */
+    private static boolean isMove(long[] old, Values values, int from, int to) {
+        if (old[from] != values.get(to)) {
+            return false;
+        }
+        int step = from < to ? 1 : -1;
+        for (int i = from; i != to; i += step) {
+            if (old[i + step] != values.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @WorkerThread
+    private void append(byte[] records) {
+        if (stored == null) {
+            // An earlier write failed, so these records may assume one that isn't on disk. The next save writes a full snapshot.
+            return;
+        }
+        try {
+            // Applied to a copy, so the stored lists only change once the records are on disk
+            long[][] lists = new long[][] { stored[LIST_PLAYLIST], stored[LIST_SHUFFLE] };
+            apply(lists, records, 0, records.length);
+
+            FileOutputStream out = new FileOutputStream(journalFile, true);
+            try {
+                out.write(records);
+            } finally {
+                out.close();
+            }
+            stored = lists;
+            journalLength += records.length;
+
+            if (journalLength > Math.max(MIN_COMPACTION_LENGTH, snapshotLength)) {
+                writeSnapshot(stored);
+            }
+        } catch (IOException e) {
+            LogUtils.logException(TAG, "Failed to append to queue journal", e);
+            onWriteFailed();
+        }
+    }
+
+    /**
+     * Writes a new snapshot of the given lists, and resets the journal.
+     */
+    @WorkerThread
+    private void writeSnapshot(long[][] lists) {
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try {
+            long time = System.currentTimeMillis();
+
+            long newGeneration = generation + 1;
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeIds(body, lists[LIST_PLAYLIST]);
+            writeIds(body, lists[LIST_SHUFFLE]);
+
+            writeFile(tempFile, SNAPSHOT_MAGIC, newGeneration, body);
+            if (!tempFile.renameTo(snapshotFile)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + snapshotFile);
+            }
+            // If we're killed before the journal is reset, its stale generation means it will be ignored
+            writeFile(journalFile, JOURNAL_MAGIC, newGeneration, new ByteArrayOutputStream());
+
+            stored = lists;
+            generation = newGeneration;
+            snapshotLength = HEADER_LENGTH + body.size();
+            journalLength = HEADER_LENGTH;
+
+            if (ENABLE_LOGGING && BuildConfig.DEBUG) {
+                Log.d(TAG, String.format("Wrote queue snapshot of %s songs in %sms", lists[LIST_PLAYLIST].length, System.currentTimeMillis() - time));
+            }
+        } catch (IOException e) {
+            LogUtils.logException(TAG, "Failed to write queue snapshot", e);
+            tempFile.delete();
+            onWriteFailed();
+        }
+    }
+
+    /**
+     * Called when the journal or snapshot may no longer match the queue. Appends already queued behind the failed write would assume
+     * it succeeded, so they're dropped until the next save writes a full snapshot.
+     */
+    @WorkerThread
+    private void onWriteFailed() {
+        stored = null;
+        synchronized (this) {
+            saved = null;
+        }
+    }
+
+    @WorkerThread
+    @Nullable
+    private long[][] readStore() throws IOException {
+
+        stored = null;
+
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+
+        byte[] snapshot = readFile(snapshotFile);
+        Reader snapshotReader = new Reader(snapshot, 0, snapshot.length);
+        if (snapshotReader.readFixedInt() != SNAPSHOT_MAGIC) {
+            return null;
+        }
+        if (snapshotReader.readFixedInt() != VERSION) {
+            return null;
+        }
+        long snapshotGeneration = snapshotReader.readFixedLong();
+        long[][] lists = new long[][] { snapshotReader.readIds(), snapshotReader.readIds() };
+
+        generation = snapshotGeneration;
+        snapshotLength = snapshot.length;
+        journalLength = 0;
+
+        boolean compact = true;
+        if (journalFile.exists()) {
+            byte[] journal = readFile(journalFile);
+            Reader journalReader = new Reader(journal, 0, journal.length);
+            if (journal.length >= HEADER_LENGTH
+                    && journalReader.readFixedInt() == JOURNAL_MAGIC
+                    && journalReader.readFixedInt() == VERSION
+                    && journalReader.readFixedLong() == snapshotGeneration) {
+                int valid = apply(lists, journal, HEADER_LENGTH, journal.length);
+                journalLength = valid;
+                // A torn record at the end would corrupt anything appended after it, so compact instead
+                compact = valid != journal.length;
+            }
+        }
+
+        if (compact) {
+            writeSnapshot(copy(lists));
+        } else {
+            stored = copy(lists);
+        }
+
+        return lists;
+    }
+
+    /**
+     * Applies the journal records in data[offset, limit) to the given lists.
+     *
+     * @return the offset following the last complete record
+     */
+    private static int apply(long[][] lists, byte[] data, int offset, int limit) {
+        Reader reader = new Reader(data, offset, limit);
+        int valid = offset;
+        try {
+            while (reader.position < limit) {
+                int length = (int) reader.readVarint();
+                Reader record = new Reader(data, reader.position, reader.position + length);
+                if (record.limit > limit) {
+                    break;
+                }
+                int op = record.readByte();
+                switch (op) {
+                    case OP_REPLACE: {
+                        int list = (int) record.readVarint();
+                        int start = (int) record.readVarint();
+                        int removed = (int) record.readVarint();
+                        long[] inserted = record.readIds();
+                        if (start + removed > lists[list].length) {
+                            return valid;
+                        }
+                        lists[list] = replace(lists[list], start, removed, inserted);
+                        break;
+                    }
+                    case OP_MOVE: {
+                        int list = (int) record.readVarint();
+                        int from = (int) record.readVarint();
+                        int to = (int) record.readVarint();
+                        if (from >= lists[list].length || to >= lists[list].length) {
+                            return valid;
+                        }
+                        lists[list] = move(lists[list], from, to);
+                        break;
+                    }
+                    case OP_SHUFFLE: {
+                        int position = (int) record.readVarint();
+                        long seed = record.readFixedLong();
+                        lists[LIST_SHUFFLE] = toLongs(ShuffleList.shuffle(lists[LIST_PLAYLIST].length, position, seed));
+                        break;
+                    }
+                    default:
+                        return valid;
+                }
+                reader.position = record.limit;
+                valid = record.limit;
+            }
+        } catch (IOException | IndexOutOfBoundsException e) {
+            // Truncated or corrupt record; everything before it is still valid
+        }
+        return valid;
+    }
+
+    private static long[] replace(long[] ids, int start, int removed, long[] inserted) {
+        long[] result = new long[ids.length - removed + inserted.length];
+        System.arraycopy(ids, 0, result, 0, start);
+        System.arraycopy(inserted, 0, result, start, inserted.length);
+        System.arraycopy(ids, start + removed, result, start + inserted.length, ids.length - start - removed);
+        return result;
+    }
+
+    /**
+     * Equivalent to list.add(to, list.remove(from))
+     */
+    private static long[] move(long[] ids, int from, int to) {
+        long[] result = Arrays.copyOf(ids, ids.length);
+        long id = result[from];
+        if (from < to) {
+            System.arraycopy(result, from + 1, result, from, to - from);
+        } else {
+            System.arraycopy(result, to, result, to + 1, from - to);
+        }
+        result[to] = id;
+        return result;
+    }
+
+    /**
+     * Converts a shuffle list of song ids (as stored in the legacy SharedPreferences queue) into a shuffled order over the playlist.
+     * Where a song appears more than once, its occurrences are matched up in playlist order.
+     *
+     * @return shuffled position -> playlist position, or an empty order if the shuffle list isn't a permutation of the playlist
+     */
+    @NonNull
+    static int[] toShuffleOrder(@NonNull long[] playlist, @NonNull long[] shuffledIds) {
+        if (shuffledIds.length != playlist.length) {
+            return new int[0];
+        }
+
+        // Song id -> its first unmatched playlist position, with each position linked to the next position of the same song
+        LongLongMap firstPositions = new LongLongMap(playlist.length);
+        int[] nextPositions = new int[playlist.length];
+        for (int i = playlist.length - 1; i >= 0; i--) {
+            nextPositions[i] = (int) firstPositions.get(playlist[i], -1);
+            firstPositions.put(playlist[i], i);
+        }
+
+        int[] order = new int[shuffledIds.length];
+        for (int i = 0; i < shuffledIds.length; i++) {
+            int position = (int) firstPositions.get(shuffledIds[i], -1);
+            if (position == -1) {
+                return new int[0];
+            }
+            order[i] = position;
+            firstPositions.put(shuffledIds[i], nextPositions[position]);
+        }
+        return order;
+    }
+
+    private static long[] toArray(Values values, int size) {
+        long[] array = new long[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static boolean equals(long[] array, Values values, int size) {
+        if (array.length != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (array[i] != values.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] toLongs(int[] ints) {
+        long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            longs[i] = ints[i];
+        }
+        return longs;
+    }
+
+    private static int[] toInts(long[] longs) {
+        int[] ints = new int[longs.length];
+        for (int i = 0; i < longs.length; i++) {
+            ints[i] = (int) longs[i];
+        }
+        return ints;
+    }
+
+    private static long[][] copy(long[][] lists) {
+        return new long[][] { lists[LIST_PLAYLIST].clone(), lists[LIST_SHUFFLE].clone() };
+    }
+
+    private static void writeFile(File file, int magic, long generation, ByteArrayOutputStream body) throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(magic);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            body.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(bytes);
+            return bytes;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream records, ByteArrayOutputStream record) {
+        writeVarint(records, record.size());
+        byte[] bytes = record.toByteArray();
+        records.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the count, followed by each id as the zig-zag encoded difference from the previous id. Song ids are usually allocated
+     * sequentially, so neighbouring ids in a queue are often close together. Playlist positions are stored the same way.
+     */
+    private static void writeIds(ByteArrayOutputStream out, long[] ids) {
+        writeVarint(out, ids.length);
+        long previous = 0;
+        for (long id : ids) {
+            long delta = id - previous;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            previous = id;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeFixedLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift) & 0xFF);
+        }
+    }
+
+    /**
+     * The values of a list being saved, read in place from the queue rather than copied out.
+     */
+    private interface Values {
+
+        long get(int index);
+    }
+
+    private static final class Reader {
+
+        final byte[] data;
+
+        int position;
+
+        final int limit;
+
+        Reader(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        int readByte() throws EOFException {
+            if (position >= limit) {
+                throw new EOFException();
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readFixedInt() throws EOFException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        long readFixedLong() throws EOFException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        long[] readIds() throws IOException {
+            long count = readVarint();
+            if (count > limit - position) {
+                throw new IOException("Invalid id count: " + count);
+            }
+            long[] ids = new long[(int) count];
+            long previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                long zigZag = readVarint();
+                previous += (zigZag >>> 1) ^ -(zigZag & 1);
+                ids[i] = previous;
+            }
+            return ids;
+        }
+    }
+}
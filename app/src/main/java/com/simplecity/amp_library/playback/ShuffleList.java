@@ -0,0 +1,187 @@
+package com.simplecity.amp_library.playback;
+
+import android.support.annotation.NonNull;
+import com.simplecity.amp_library.ui.screens.queue.QueueItem;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * The shuffled queue, as a read-only view over {@link QueueManager#playlist}.
+ * <p>
+ * Rather than a second list of {@link QueueItem}s, only the shuffled order is held: an array of positions in the playlist. Shuffling a
+ * large queue allocates a single int array, and it's the order (or the seed it was generated from) that the {@link QueueStore} persists.
+ * <p>
+ * The {@link List} methods can't modify the view (other than {@link #clear()}). Edits go through the methods below, which keep the
+ * order in step with the playlist.
+ */
+final class ShuffleList extends AbstractList<QueueItem> implements RandomAccess {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final QueueManager queueManager;
+
+    /**
+     * Shuffled position -> playlist position. Only the first 'size' entries are valid.
+     */
+    @NonNull
+    private int[] order = EMPTY;
+
+    private int size;
+
+    ShuffleList(QueueManager queueManager) {
+        this.queueManager = queueManager;
+    }
+
+    @Override
+    public QueueItem get(int position) {
+        return queueManager.playlist.get(getPlaylistPosition(position));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        order = EMPTY;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * @return the position in the playlist of the item at the given shuffled position
+     */
+    int getPlaylistPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        }
+        return order[position];
+    }
+
+    /**
+     * Replaces the order with a new shuffle of the whole playlist, see {@link #shuffle(int, int, long)}.
+     */
+    void shuffle(int currentPosition, long seed) {
+        setOrder(shuffle(queueManager.playlist.size(), currentPosition, seed));
+    }
+
+    /**
+     * @param order shuffled position -> playlist position. Must be a permutation of the playlist positions.
+     */
+    void setOrder(@NonNull int[] order) {
+        this.order = order;
+        size = order.length;
+        modCount++;
+    }
+
+    /**
+     * Moves the item at shuffled position 'from' to 'to'. The playlist is unaffected.
+     */
+    void move(int from, int to) {
+        int playlistPosition = getPlaylistPosition(from);
+        getPlaylistPosition(to);
+        if (from < to) {
+            System.arraycopy(order, from + 1, order, from, to - from);
+        } else {
+            System.arraycopy(order, to, order, to + 1, from - to);
+        }
+        order[to] = playlistPosition;
+        modCount++;
+    }
+
+    /**
+     * Inserts the given playlist position (typically one just appended to the playlist) at the given shuffled position.
+     */
+    void insert(int position, int playlistPosition) {
+        if (position < 0 || position > size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        }
+        if (size == order.length) {
+            order = Arrays.copyOf(order, Math.max(16, size + (size >> 1)));
+        }
+        System.arraycopy(order, position, order, position + 1, size - position);
+        order[position] = playlistPosition;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Removes the items which have been removed from the playlist, and renumbers the remaining playlist positions to match.
+     *
+     * @param removed a flag for each position in the playlist (as it was before the removal) indicating whether it was removed
+     */
+    void onPlaylistRemoved(@NonNull boolean[] removed) {
+        // Old playlist position -> new playlist position
+        int[] positions = new int[removed.length];
+        int next = 0;
+        for (int i = 0; i < removed.length; i++) {
+            positions[i] = removed[i] ? -1 : next++;
+        }
+
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            int position = positions[order[i]];
+            if (position != -1) {
+                order[newSize++] = position;
+            }
+        }
+        size = newSize;
+        modCount++;
+    }
+
+    /**
+     * Shuffles the positions [0, size), using the same algorithm as {@link java.util.Collections#shuffle(List, Random)}, so that a
+     * given seed always produces the same order.
+     *
+     * @param currentPosition if valid, this position is moved to the front rather than shuffled
+     * @return shuffled position -> playlist position
+     */
+    @NonNull
+    static int[] shuffle(int size, int currentPosition, long seed) {
+        boolean hasCurrent = currentPosition >= 0 && currentPosition < size;
+
+        int[] shuffled = new int[hasCurrent ? size - 1 : size];
+        for (int i = 0, position = 0; position < size; position++) {
+            if (position != currentPosition) {
+                shuffled[i++] = position;
+            }
+        }
+
+        Random random = new Random(seed);
+        for (int i = shuffled.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            int tmp = shuffled[i - 1];
+            shuffled[i - 1] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+
+        if (!hasCurrent) {
+            return shuffled;
+        }
+        int[] order = new int[size];
+        order[0] = currentPosition;
+        System.arraycopy(shuffled, 0, order, 1, shuffled.length);
+        return order;
+    }
+
+    /**
+     * @return true if the order contains each of the positions [0, size) exactly once
+     */
+    static boolean isPermutation(@NonNull int[] order, int size) {
+        if (order.length != size) {
+            return false;
+        }
+        boolean[] seen = new boolean[size];
+        for (int position : order) {
+            if (position < 0 || position >= size || seen[position]) {
+                return false;
+            }
+            seen[position] = true;
+        }
+        return true;
+    }
+}
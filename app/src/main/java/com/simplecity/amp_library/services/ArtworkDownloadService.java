@@ -15,6 +15,7 @@ import com.bumptech.glide.request.target.SimpleTarget;
 import com.simplecity.amp_library.R;
 import com.simplecity.amp_library.data.Repository;
 import com.simplecity.amp_library.glide.loader.ArtworkModelLoader;
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache;
 import com.simplecity.amp_library.model.ArtworkProvider;
 import com.simplecity.amp_library.notifications.NotificationHelper;
 import com.simplecity.amp_library.utils.LogUtils;
@@ -63,6 +64,9 @@ public class ArtworkDownloadService extends Service {
     @Inject
     SettingsManager settingsManager;
 
+    @Inject
+    ArtworkSourceCache artworkSourceCache;
+
     private NotificationCompat.Builder getNotificationBuilder() {
 
         final ComponentName serviceName = new ComponentName(this, ArtworkDownloadService.class);
@@ -113,7 +117,7 @@ public class ArtworkDownloadService extends Service {
                 .flatMap(artworkProvider -> Observable.just(artworkProvider)
                         .map(artwork -> {
                             FutureTarget<File> futureTarget = Glide.with(ArtworkDownloadService.this)
-                                    .using(new ArtworkModelLoader(this, true), InputStream.class)
+                                    .using(new ArtworkModelLoader(this, artworkSourceCache, true), InputStream.class)
                                     .load(artwork)
                                     .as(InputStream.class)
                                     .downloadOnly(SimpleTarget.SIZE_ORIGINAL, SimpleTarget.SIZE_ORIGINAL);
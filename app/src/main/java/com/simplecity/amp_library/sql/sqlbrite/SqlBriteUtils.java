@@ -7,6 +7,7 @@ import com.simplecity.amp_library.BuildConfig;
 import com.simplecity.amp_library.model.Query;
 import com.squareup.sqlbrite2.BriteContentResolver;
 import com.squareup.sqlbrite2.SqlBrite;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.annotations.NonNull;
@@ -63,6 +64,47 @@ public final class SqlBriteUtils {
                 .lift(new QueryToListOperator<>(mapper));
     }
 
+    /**
+     * Creates an {@link Observable} that emits a single value built from the entire cursor, when subscribed and when the content provider notifies of a change.
+     * <p>
+     * Useful for building indexes (e.g. id -> play count) directly from the cursor, without materialising an intermediate object per row.
+     *
+     * @param reducer consumes the whole cursor. The cursor is closed once the reducer returns.
+     */
+    public static <T> Observable<T> createObservableReduced(@NonNull Context context, @NonNull Function<Cursor, T> reducer, @NonNull Query query) {
+        return createObservable(context, query)
+                .flatMapMaybe(sqlBriteQuery -> {
+                    Cursor cursor = sqlBriteQuery.run();
+                    if (cursor == null) {
+                        return Maybe.empty();
+                    }
+                    try {
+                        return Maybe.just(reducer.apply(cursor));
+                    } finally {
+                        cursor.close();
+                    }
+                });
+    }
+
+    /**
+     * As {@link #createObservableReduced(Context, Function, Query)}, but emits the default value if the query returns a null cursor, rather
+     * than emitting nothing.
+     */
+    public static <T> Observable<T> createObservableReduced(@NonNull Context context, @NonNull Function<Cursor, T> reducer, @NonNull Query query, @NonNull T defaultValue) {
+        return createObservable(context, query)
+                .map(sqlBriteQuery -> {
+                    Cursor cursor = sqlBriteQuery.run();
+                    if (cursor == null) {
+                        return defaultValue;
+                    }
+                    try {
+                        return reducer.apply(cursor);
+                    } finally {
+                        cursor.close();
+                    }
+                });
+    }
+
     /**
      * Creates a {@link Single} that emits a list.
      */
@@ -21,6 +21,7 @@ import com.simplecity.amp_library.model.BaseFileObject;
 import com.simplecity.amp_library.model.FileObject;
 import com.simplecity.amp_library.model.FolderObject;
 import com.simplecity.amp_library.model.InclExclItem;
+import com.simplecity.amp_library.model.TagInfo;
 import com.simplecity.amp_library.ui.adapters.ViewType;
 import com.simplecity.amp_library.ui.views.CircleImageView;
 import com.simplecity.amp_library.utils.SettingsManager;
@@ -173,7 +174,12 @@ public class FolderView extends BaseSelectableViewModel<FolderView.ViewHolder> {
             case FileType.FOLDER:
                 holder.overflow.setVisibility(View.VISIBLE);
                 holder.imageView.setImageDrawable(holder.folderDrawable);
-                holder.lineTwo.setText(StringUtils.makeSubfoldersLabel(holder.itemView.getContext(), ((FolderObject) baseFileObject).folderCount, ((FolderObject) baseFileObject).fileCount));
+                if (((FolderObject) baseFileObject).hasCounts) {
+                    holder.lineTwo.setText(StringUtils.makeSubfoldersLabel(holder.itemView.getContext(), ((FolderObject) baseFileObject).folderCount, ((FolderObject) baseFileObject).fileCount));
+                } else {
+                    // Still being counted
+                    holder.lineTwo.setText(null);
+                }
                 holder.lineThree.setVisibility(View.GONE);
                 holder.lineOne.setText(baseFileObject.name);
                 break;
@@ -181,8 +187,15 @@ public class FolderView extends BaseSelectableViewModel<FolderView.ViewHolder> {
                 holder.overflow.setVisibility(View.VISIBLE);
                 holder.imageView.setImageDrawable(holder.fileDrawable);
                 holder.lineThree.setVisibility(View.VISIBLE);
-                holder.lineOne.setText(((FileObject) baseFileObject).tagInfo.trackName);
-                holder.lineTwo.setText(String.format("%s - %s", ((FileObject) baseFileObject).tagInfo.artistName, ((FileObject) baseFileObject).tagInfo.albumName));
+                TagInfo tagInfo = ((FileObject) baseFileObject).tagInfo;
+                if (tagInfo != null) {
+                    holder.lineOne.setText(tagInfo.trackName);
+                    holder.lineTwo.setText(String.format("%s - %s", tagInfo.artistName, tagInfo.albumName));
+                } else {
+                    // The tags are still being read
+                    holder.lineOne.setText(baseFileObject.name);
+                    holder.lineTwo.setText(null);
+                }
                 DurationTask durationTask = new DurationTask(holder.lineThree, (FileObject) baseFileObject);
                 durationTask.execute();
                 break;
@@ -339,7 +352,10 @@ public class FolderView extends BaseSelectableViewModel<FolderView.ViewHolder> {
         if (other == null || getClass() != other.getClass()) return false;
         if (!super.areContentsEqual(other)) return false;
 
+        FolderView that = (FolderView) other;
+
         return baseFileObject.equals(that.baseFileObject)
-        && isSelected() == that.isSelected();
+                && baseFileObject.detailsEqual(that.baseFileObject)
+                && isSelected() == that.isSelected();
     }
 }
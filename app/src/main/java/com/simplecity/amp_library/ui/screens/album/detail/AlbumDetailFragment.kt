@@ -27,6 +27,7 @@ import com.google.android.gms.cast.framework.CastButtonFactory
 import com.simplecity.amp_library.R
 import com.simplecity.amp_library.cast.CastManager
 import com.simplecity.amp_library.glide.utils.AlwaysCrossFade
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.ArtworkProvider
 import com.simplecity.amp_library.model.Playlist
@@ -104,6 +105,8 @@ class AlbumDetailFragment :
 
     @Inject lateinit var settingsManager: SettingsManager
 
+    @Inject lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject lateinit var playlistMenuHelper: PlaylistMenuHelper
 
     private val disposables = CompositeDisposable()
@@ -489,7 +492,7 @@ class AlbumDetailFragment :
     }
 
     override fun presentArtworkEditorDialog(album: Album) {
-        ArtworkDialog.build(context, album).show()
+        ArtworkDialog.build(context, album, artworkSourceCache).show()
     }
 
     override fun onPlaybackFailed() {
@@ -15,6 +15,7 @@ import com.bumptech.glide.RequestManager
 import com.simplecity.amp_library.R
 import com.simplecity.amp_library.R.string
 import com.simplecity.amp_library.data.Repository
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.Playlist
 import com.simplecity.amp_library.model.Song
@@ -85,6 +86,8 @@ class AlbumListFragment :
 
     @Inject lateinit var settingsManager: SettingsManager
 
+    @Inject lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject lateinit var playlistMenuHelper: PlaylistMenuHelper
 
     interface AlbumClickListener {
@@ -411,7 +414,7 @@ class AlbumListFragment :
     }
 
     override fun presentArtworkEditorDialog(album: Album) {
-        ArtworkDialog.build(context, album).show()
+        ArtworkDialog.build(context, album, artworkSourceCache).show()
     }
 
     // BaseFragment Implementation
@@ -33,6 +33,7 @@ import com.simplecity.amp_library.R
 import com.simplecity.amp_library.cast.CastManager
 import com.simplecity.amp_library.data.Repository
 import com.simplecity.amp_library.glide.utils.AlwaysCrossFade
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.AlbumArtist
 import com.simplecity.amp_library.model.ArtworkProvider
@@ -120,6 +121,8 @@ class ArtistDetailFragment :
 
     @Inject lateinit var settingsManager: SettingsManager
 
+    @Inject lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject lateinit var playlistMenuHelper: PlaylistMenuHelper
 
     private val disposables = CompositeDisposable()
@@ -594,7 +597,7 @@ class ArtistDetailFragment :
     }
 
     override fun presentArtworkEditorDialog(albumArtist: AlbumArtist) {
-        ArtworkDialog.build(context, albumArtist).show()
+        ArtworkDialog.build(context, albumArtist, artworkSourceCache).show()
     }
 
     // AlbumMenuContract.View Implementation
@@ -612,7 +615,7 @@ class ArtistDetailFragment :
     }
 
     override fun presentArtworkEditorDialog(album: Album) {
-        ArtworkDialog.build(context, album).show()
+        ArtworkDialog.build(context, album, artworkSourceCache).show()
     }
 
     override fun onPlaybackFailed() {
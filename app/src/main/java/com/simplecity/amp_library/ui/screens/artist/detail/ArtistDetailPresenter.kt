@@ -20,7 +20,6 @@ import com.squareup.inject.assisted.Assisted
 import com.squareup.inject.assisted.AssistedInject
 import io.reactivex.Single
 import io.reactivex.android.schedulers.AndroidSchedulers
-import io.reactivex.functions.BiFunction
 import io.reactivex.schedulers.Schedulers
 
 class ArtistDetailPresenter @AssistedInject constructor(
@@ -62,11 +61,7 @@ class ArtistDetailPresenter @AssistedInject constructor(
     fun loadData() {
         addDisposable(
             albumArtist.getSongsSingle(songsRepository)
-                .zipWith<MutableList<Album>, Pair<MutableList<Album>, MutableList<Song>>>(
-                    albumArtist
-                        .getSongsSingle(songsRepository)
-                        .map { songs -> Operators.songsToAlbums(songs) },
-                    BiFunction { songs, albums -> Pair(albums, songs) })
+                .map { songs -> Pair(Operators.songsToAlbums(songs), songs.toMutableList()) }
                 .subscribeOn(Schedulers.io())
                 .doOnSuccess { pair ->
                     sortAlbums(pair.first!!)
@@ -14,6 +14,7 @@ import android.widget.Toast
 import com.bumptech.glide.RequestManager
 import com.simplecity.amp_library.R
 import com.simplecity.amp_library.R.string
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.AlbumArtist
 import com.simplecity.amp_library.model.Playlist
 import com.simplecity.amp_library.model.Song
@@ -76,6 +77,8 @@ class AlbumArtistListFragment :
 
     @Inject lateinit var settingsManager: SettingsManager
 
+    @Inject lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject lateinit var playlistMenuHelper: PlaylistMenuHelper
 
     interface AlbumArtistClickListener {
@@ -378,7 +381,7 @@ class AlbumArtistListFragment :
     }
 
     override fun presentArtworkEditorDialog(albumArtist: AlbumArtist) {
-        ArtworkDialog.build(context, albumArtist).show()
+        ArtworkDialog.build(context, albumArtist, artworkSourceCache).show()
     }
 
     // BaseFragment Implementation
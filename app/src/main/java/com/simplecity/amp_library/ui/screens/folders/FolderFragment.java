@@ -138,6 +138,9 @@ public class FolderFragment extends BaseFragment implements
     @Nullable
     private Disposable setItemsDisposable;
 
+    @Nullable
+    private Disposable changeDirDisposable;
+
     @Inject
     Repository.BlacklistRepository blacklistRepository;
 
@@ -265,6 +268,9 @@ public class FolderFragment extends BaseFragment implements
     @Override
     public void onPause() {
         disposables.clear();
+        if (changeDirDisposable != null) {
+            changeDirDisposable.dispose();
+        }
 
         getNavigationController().removeBackPressListener(this);
 
@@ -363,13 +369,18 @@ public class FolderFragment extends BaseFragment implements
 
     @SuppressLint("CheckResult")
     public void changeDir(File newDir) {
-        disposables.add(Single.zip(
-                whitelistRepository.getWhitelistItems(songsRepository).first(Collections.emptyList()),
-                blacklistRepository.getBlacklistItems(songsRepository).first(Collections.emptyList()),
-                Single.fromCallable(() -> {
+        // The directory's contents are emitted again once their details have loaded, which mustn't replace a newer directory
+        if (changeDirDisposable != null) {
+            changeDirDisposable.dispose();
+        }
+
+        changeDirDisposable = Observable.combineLatest(
+                whitelistRepository.getWhitelistItems(songsRepository).first(Collections.emptyList()).toObservable(),
+                blacklistRepository.getBlacklistItems(songsRepository).first(Collections.emptyList()).toObservable(),
+                Observable.defer(() -> {
                     final String path = FileHelper.getPath(newDir);
                     if (TextUtils.isEmpty(path)) {
-                        return new ArrayList<>();
+                        return Observable.<List<BaseFileObject>>just(new ArrayList<>());
                     }
                     currentDir = path;
                     return fileBrowser.loadDir(new File(path));
@@ -380,7 +391,9 @@ public class FolderFragment extends BaseFragment implements
 
                                 // Look for an existing FolderView wrapping the BaseFileObject, we'll reuse it if it exists.
                                 FolderView folderView = (FolderView) Stream.of(adapter.items)
-                                        .filter(viewModel -> viewModel instanceof FolderView && (((FolderView) viewModel).baseFileObject.equals(baseFileObject)))
+                                        .filter(viewModel -> viewModel instanceof FolderView
+                                                && ((FolderView) viewModel).baseFileObject.equals(baseFileObject)
+                                                && ((FolderView) viewModel).baseFileObject.detailsEqual(baseFileObject))
                                         .findFirst()
                                         .orElse(null);
 
@@ -419,8 +432,7 @@ public class FolderFragment extends BaseFragment implements
                             }
                             updateMenuItems();
                         },
-                        error -> LogUtils.logException(TAG, "Error changing dir", error))
-        );
+                        error -> LogUtils.logException(TAG, "Error changing dir", error));
     }
 
     public void reload() {
@@ -33,6 +33,7 @@ import com.simplecity.amp_library.R
 import com.simplecity.amp_library.cast.CastManager
 import com.simplecity.amp_library.data.Repository
 import com.simplecity.amp_library.glide.utils.AlwaysCrossFade
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.ArtworkProvider
 import com.simplecity.amp_library.model.Genre
@@ -133,6 +134,8 @@ class GenreDetailFragment :
 
     @Inject lateinit var settingsManager: SettingsManager
 
+    @Inject lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject lateinit var songsRepository: Repository.SongsRepository
 
     @Inject lateinit var playlistManager: PlaylistManager
@@ -595,7 +598,7 @@ class GenreDetailFragment :
     }
 
     override fun presentArtworkEditorDialog(album: Album) {
-        ArtworkDialog.build(context, album).show()
+        ArtworkDialog.build(context, album, artworkSourceCache).show()
     }
 
     override fun onPlaybackFailed() {
@@ -1,6 +1,6 @@
 package com.simplecity.amp_library.ui.screens.genre.menu
 
-import android.content.Context
+import com.simplecity.amp_library.data.Repository
 import com.simplecity.amp_library.model.Genre
 import com.simplecity.amp_library.model.Playlist
 import com.simplecity.amp_library.model.Song
@@ -8,15 +8,14 @@ import com.simplecity.amp_library.playback.MediaManager
 import com.simplecity.amp_library.ui.common.Presenter
 import com.simplecity.amp_library.ui.screens.album.menu.AlbumMenuPresenter
 import com.simplecity.amp_library.utils.LogUtils
-import com.simplecity.amp_library.utils.extensions.getSongs
 import com.simplecity.amp_library.utils.playlists.PlaylistManager
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.schedulers.Schedulers
 import javax.inject.Inject
 
 class GenreMenuPresenter @Inject constructor(
-    private val context: Context,
     private val mediaManager: MediaManager,
+    private val songsRepository: Repository.SongsRepository,
     private val playlistManager: PlaylistManager
 ) : Presenter<GenreMenuContract.View>(), GenreMenuContract.Presenter {
     override fun createPlaylist(genre: Genre) {
@@ -42,7 +41,7 @@ class GenreMenuPresenter @Inject constructor(
     }
 
     override fun play(genre: Genre) {
-        mediaManager.playAll(genre.getSongs(context)) {
+        mediaManager.playAll(songsRepository.getSongs(genre).first(emptyList())) {
             view?.onPlaybackFailed()
         }
     }
@@ -57,7 +56,8 @@ class GenreMenuPresenter @Inject constructor(
 
     private fun getSongs(genre: Genre, onSuccess: (songs: List<Song>) -> Unit) {
         addDisposable(
-            genre.getSongs(context)
+            songsRepository.getSongs(genre)
+                .first(emptyList())
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(
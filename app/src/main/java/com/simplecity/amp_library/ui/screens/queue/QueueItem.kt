@@ -3,8 +3,17 @@ package com.simplecity.amp_library.ui.screens.queue
 import android.support.v4.media.MediaDescriptionCompat
 import android.support.v4.media.session.MediaSessionCompat
 import com.simplecity.amp_library.model.Song
+import java.util.concurrent.atomic.AtomicLong
 
-class QueueItem(var song: Song, var occurrence: Int) {
+/**
+ * An entry in the play queue.
+ *
+ * Each item is assigned a unique, monotonically increasing [id] when it's created, which is what identifies it: the same song can be
+ * queued more than once, and items can be compared and looked up without regard to their song or position.
+ */
+class QueueItem(var song: Song) {
+
+    val id: Long = nextId.incrementAndGet()
 
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
@@ -12,33 +21,20 @@ class QueueItem(var song: Song, var occurrence: Int) {
 
         other as QueueItem
 
-        if (song != other.song) return false
-        if (occurrence != other.occurrence) return false
-
-        return true
+        return id == other.id
     }
 
     override fun hashCode(): Int {
-        var result = song.hashCode()
-        result = 31 * result + occurrence
-        return result
+        return (id xor (id ushr 32)).toInt()
     }
-}
 
-fun List<Song>.toQueueItems(): List<QueueItem> {
-    val queueItems = map { song -> QueueItem(song, 1) }
-    queueItems.updateOccurrence()
-    return queueItems
+    companion object {
+        private val nextId = AtomicLong()
+    }
 }
 
-fun List<QueueItem>.updateOccurrence() {
-    groupBy { queueItem -> queueItem.song }
-        .values
-        .forEach {
-            it.forEachIndexed { index, queueItem ->
-                queueItem.occurrence = index + 1
-            }
-        }
+fun List<Song>.toQueueItems(): List<QueueItem> {
+    return map { song -> QueueItem(song) }
 }
 
 fun List<QueueItem>.toSongs(): List<Song> {
@@ -51,7 +47,7 @@ fun QueueItem.toMediaSessionQueueItem(): MediaSessionCompat.QueueItem {
         .setTitle(song.name)
         .setSubtitle(song.artistName)
         .build()
-    return MediaSessionCompat.QueueItem(mediaDescription, hashCode().toLong())
+    return MediaSessionCompat.QueueItem(mediaDescription, id)
 }
 
 fun List<QueueItem>.toMediaSessionQueueItems(): List<MediaSessionCompat.QueueItem> {
@@ -23,6 +23,7 @@ import com.jakewharton.rxbinding2.support.v7.widget.RxSearchView
 import com.simplecity.amp_library.R
 import com.simplecity.amp_library.data.Repository
 import com.simplecity.amp_library.format.PrefixHighlighter
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.*
 import com.simplecity.amp_library.ui.adapters.ViewType
 import com.simplecity.amp_library.ui.common.BaseFragment
@@ -90,6 +91,9 @@ class SearchFragment :
     @Inject
     lateinit var settingsManager: SettingsManager
 
+    @Inject
+    lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject
     lateinit var playlistMenuHelper: PlaylistMenuHelper
 
@@ -307,7 +311,7 @@ class SearchFragment :
     }
 
     override fun presentArtworkEditorDialog(albumArtist: AlbumArtist) {
-        ArtworkDialog.build(context, albumArtist).show()
+        ArtworkDialog.build(context, albumArtist, artworkSourceCache).show()
     }
 
 
@@ -326,7 +330,7 @@ class SearchFragment :
     }
 
     override fun presentArtworkEditorDialog(album: Album) {
-        ArtworkDialog.build(context, album).show()
+        ArtworkDialog.build(context, album, artworkSourceCache).show()
     }
 
 
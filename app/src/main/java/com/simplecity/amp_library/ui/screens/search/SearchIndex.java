@@ -0,0 +1,372 @@
+package com.simplecity.amp_library.ui.screens.search;
+
+import android.os.CancellationSignal;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import com.simplecity.amp_library.utils.JaroWinklerScorer;
+import com.simplecity.amp_library.utils.LongLongMap;
+import com.simplecity.amp_library.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A fuzzy (Jaro-Winkler) search index over a list of items, built once per library emission and queried on each keystroke.
+ * <p>
+ * Names are normalized up front, and a character-trigram inverted index is used to find the items which share
+ * at least one trigram with the query. Only those candidates are scored. Names, tokens and the query are padded with start and end
+ * markers before being split into trigrams, so that a shared first or last character (which Jaro-Winkler weights heavily) is enough
+ * to make an item a candidate. Queries shorter than a trigram score every item.
+ * <p>
+ * Plain (case-insensitive substring) filtering is incremental: when a query extends the previous one, only the previous
+ * {@link Matches} are re-tested. Both kinds of search check a {@link CancellationSignal} as they go, and return null once it has been
+ * cancelled, so a superseded query doesn't run to completion.
+ * <p>
+ * Immutable once built, so it can be queried from any thread.
+ */
+public final class SearchIndex<T extends Comparable<? super T>> {
+
+    public interface NameFunction<T> {
+
+        @Nullable
+        String getName(@NonNull T item);
+    }
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final char START_MARKER = '\u0002';
+
+    private static final char END_MARKER = '\u0003';
+
+    /**
+     * How many items are scanned between checks of the cancellation signal.
+     */
+    private static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+    /**
+     * Items, in their natural (collation) order. Ties in score are broken by this order.
+     */
+    private final List<T> items;
+
+    /**
+     * The normalized name of each item.
+     */
+    private final String[] names;
+
+    /**
+     * The lower-cased (but not normalized) name of each item, for substring matching.
+     */
+    private final String[] lowerCaseNames;
+
+    /**
+     * The distinct trigrams, in ascending order
+     */
+    private final long[] grams;
+
+    /**
+     * The ascending item indexes containing each of {@link #grams}
+     */
+    private final int[][] postings;
+
+    public SearchIndex(@NonNull List<T> source, @NonNull NameFunction<T> nameFunction) {
+
+        List<T> items = new ArrayList<>(source.size());
+        for (T item : source) {
+            if (nameFunction.getName(item) != null) {
+                items.add(item);
+            }
+        }
+        Collections.sort(items);
+        this.items = items;
+
+        int size = items.size();
+        names = new String[size];
+        lowerCaseNames = new String[size];
+
+        PostingsBuilder postingsBuilder = new PostingsBuilder();
+        for (int i = 0; i < size; i++) {
+            String rawName = nameFunction.getName(items.get(i));
+            String name = StringUtils.normalizeForSimilarity(rawName);
+            names[i] = name;
+            lowerCaseNames[i] = rawName.toLowerCase();
+
+            addGrams(postingsBuilder, name, i);
+            String[] tokens = name.split("\\s");
+            if (tokens.length > 1) {
+                for (String token : tokens) {
+                    addGrams(postingsBuilder, token, i);
+                }
+            }
+        }
+
+        grams = postingsBuilder.sortedGrams();
+        postings = new int[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            postings[i] = postingsBuilder.get(grams[i]).toArray();
+        }
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Case-insensitive substring search, equivalent to filtering with {@link StringUtils#containsIgnoreCase(String, String)}.
+     *
+     * @param query the search query
+     * @param previous the matches for an earlier query. If they came from this index, and the new query contains the previous one, only
+     * the previous matches are tested.
+     * @param cancellationSignal checked periodically during the search
+     * @return the matching items, in their natural order, or null if the search was cancelled
+     */
+    @Nullable
+    public Matches<T> filter(@NonNull String query, @Nullable Matches<T> previous, @NonNull CancellationSignal cancellationSignal) {
+
+        String lowerCaseQuery = query.toLowerCase();
+
+        int[] rows;
+        int count;
+        if (previous != null && previous.index == this && lowerCaseQuery.contains(previous.lowerCaseQuery)) {
+            rows = previous.rows;
+            count = previous.rows.length;
+        } else {
+            rows = null;
+            count = items.size();
+        }
+
+        int[] matches = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0 && cancellationSignal.isCanceled()) {
+                return null;
+            }
+            int row = rows == null ? i : rows[i];
+            if (lowerCaseNames[row].contains(lowerCaseQuery)) {
+                matches[size++] = row;
+            }
+        }
+
+        return new Matches<>(this, lowerCaseQuery, Arrays.copyOf(matches, size));
+    }
+
+    /**
+     * Fuzzy (Jaro-Winkler) search.
+     *
+     * @param query the (un-normalized) search query
+     * @param threshold only items scoring above this are returned
+     * @param limit the maximum number of results
+     * @param cancellationSignal checked periodically during the search
+     * @return the best matching items, ordered by descending score, then by their natural order, or null if the search was cancelled.
+     * If the query is empty, all items are returned in their natural order.
+     */
+    @Nullable
+    public List<T> search(@Nullable String query, double threshold, int limit, @NonNull CancellationSignal cancellationSignal) {
+
+        if (TextUtils.isEmpty(query)) {
+            return new ArrayList<>(items);
+        }
+
+        String normalizedQuery = StringUtils.normalizeForSimilarity(query);
+
+        // Min-heap of the best 'limit' results so far; the head is the worst of them
+        PriorityQueue<Result> heap = new PriorityQueue<>(Math.max(1, Math.min(limit, items.size())));
+
+        JaroWinklerScorer scorer = JaroWinklerScorer.get();
+
+        boolean[] candidates = findCandidates(normalizedQuery);
+        for (int i = 0, size = items.size(); i < size; i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0 && cancellationSignal.isCanceled()) {
+                return null;
+            }
+            if (candidates != null && !candidates[i]) {
+                continue;
+            }
+            double score = scorer.getAdjustedSimilarity(names[i], normalizedQuery);
+            if (score <= threshold) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Result(i, score));
+            } else if (limit > 0 && Result.compare(score, i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(new Result(i, score));
+            }
+        }
+
+        Result[] results = heap.toArray(new Result[heap.size()]);
+        Arrays.sort(results, Collections.reverseOrder());
+
+        List<T> matches = new ArrayList<>(results.length);
+        for (Result result : results) {
+            matches.add(items.get(result.index));
+        }
+        return matches;
+    }
+
+    /**
+     * @return a flag per item indicating whether it shares a trigram with the query, or null if the query is too short to use the index
+     */
+    @Nullable
+    private boolean[] findCandidates(String normalizedQuery) {
+        if (normalizedQuery.length() < GRAM_LENGTH) {
+            return null;
+        }
+        boolean[] candidates = new boolean[items.size()];
+        for (int start = 0, end = gramCount(normalizedQuery); start < end; start++) {
+            int slot = Arrays.binarySearch(grams, gram(normalizedQuery, start));
+            if (slot >= 0) {
+                for (int index : postings[slot]) {
+                    candidates[index] = true;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static void addGrams(PostingsBuilder postingsBuilder, String str, int index) {
+        if (str.isEmpty()) {
+            return;
+        }
+        for (int start = 0, end = gramCount(str); start < end; start++) {
+            postingsBuilder.add(gram(str, start), index);
+        }
+    }
+
+    /**
+     * Strings are padded with two start and two end markers, so a string of length n has n + 2 trigrams.
+     */
+    private static int gramCount(String str) {
+        return str.length() + GRAM_LENGTH - 1;
+    }
+
+    private static long gram(String str, int start) {
+        return ((long) paddedCharAt(str, start) << 32) | ((long) paddedCharAt(str, start + 1) << 16) | paddedCharAt(str, start + 2);
+    }
+
+    private static char paddedCharAt(String str, int index) {
+        if (index < GRAM_LENGTH - 1) {
+            return START_MARKER;
+        }
+        index -= GRAM_LENGTH - 1;
+        return index < str.length() ? str.charAt(index) : END_MARKER;
+    }
+
+    /**
+     * The result of {@link #filter(String, Matches, CancellationSignal)}, which can be passed back in to refine a longer query.
+     */
+    public static final class Matches<T extends Comparable<? super T>> {
+
+        private final SearchIndex<T> index;
+
+        private final String lowerCaseQuery;
+
+        private final int[] rows;
+
+        Matches(SearchIndex<T> index, String lowerCaseQuery, int[] rows) {
+            this.index = index;
+            this.lowerCaseQuery = lowerCaseQuery;
+            this.rows = rows;
+        }
+
+        @NonNull
+        public List<T> getItems() {
+            List<T> items = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                items.add(index.items.get(row));
+            }
+            return items;
+        }
+    }
+
+    private static final class Result implements Comparable<Result> {
+
+        final int index;
+        final double score;
+
+        Result(int index, double score) {
+            this.index = index;
+            this.score = score;
+        }
+
+        /**
+         * Orders by score, then by <i>reverse</i> index, so that 'greater' results are the ones listed first.
+         */
+        static int compare(double score, int index, Result other) {
+            int result = Double.compare(score, other.score);
+            if (result != 0) {
+                return result;
+            }
+            return Integer.compare(other.index, index);
+        }
+
+        @Override
+        public int compareTo(@NonNull Result other) {
+            return compare(score, index, other);
+        }
+    }
+
+    /**
+     * Collects the postings for each trigram, keyed by the primitive trigram so that building the index doesn't box every trigram of
+     * every name.
+     */
+    private static final class PostingsBuilder {
+
+        /**
+         * Trigram -> position in {@link #grams} and {@link #postings}
+         */
+        private final LongLongMap slots = new LongLongMap();
+
+        private long[] grams = new long[256];
+        private Postings[] postings = new Postings[256];
+        private int size;
+
+        void add(long gram, int index) {
+            int slot = (int) slots.get(gram, -1);
+            if (slot < 0) {
+                if (size == grams.length) {
+                    grams = Arrays.copyOf(grams, size * 2);
+                    postings = Arrays.copyOf(postings, size * 2);
+                }
+                slot = size++;
+                slots.put(gram, slot);
+                grams[slot] = gram;
+                postings[slot] = new Postings();
+            }
+            postings[slot].add(index);
+        }
+
+        Postings get(long gram) {
+            return postings[(int) slots.get(gram, -1)];
+        }
+
+        long[] sortedGrams() {
+            long[] sorted = Arrays.copyOf(grams, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static final class Postings {
+
+        private int[] indexes = new int[4];
+        private int size;
+
+        void add(int index) {
+            // The same item can contain a trigram more than once
+            if (size > 0 && indexes[size - 1] == index) {
+                return;
+            }
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+            }
+            indexes[size++] = index;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(indexes, size);
+        }
+    }
+}
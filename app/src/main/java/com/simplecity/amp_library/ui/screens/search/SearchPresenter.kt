@@ -1,5 +1,6 @@
 package com.simplecity.amp_library.ui.screens.search
 
+import android.os.CancellationSignal
 import android.text.TextUtils
 import com.simplecity.amp_library.data.Repository
 import com.simplecity.amp_library.model.Album
@@ -17,15 +18,15 @@ import com.simplecity.amp_library.ui.screens.songs.menu.SongMenuContract
 import com.simplecity.amp_library.ui.screens.songs.menu.SongMenuPresenter
 import com.simplecity.amp_library.utils.LogUtils
 import com.simplecity.amp_library.utils.SettingsManager
-import com.simplecity.amp_library.utils.StringUtils
 import io.reactivex.Single
 import io.reactivex.SingleObserver
 import io.reactivex.SingleOperator
 import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.Disposables
 import io.reactivex.functions.Function3
 import io.reactivex.schedulers.Schedulers
-import java.util.*
 import javax.inject.Inject
 
 class SearchPresenter @Inject
@@ -48,6 +49,12 @@ constructor(
 
     private var query: String? = null
 
+    private val songSearchIndex = SearchIndexCache(SearchIndex.NameFunction<Song> { song -> song.name })
+
+    private val albumSearchIndex = SearchIndexCache(SearchIndex.NameFunction<Album> { album -> album.name })
+
+    private val albumArtistSearchIndex = SearchIndexCache(SearchIndex.NameFunction<AlbumArtist> { albumArtist -> albumArtist.name })
+
     override fun bindView(view: SearchView) {
         super.bindView(view)
 
@@ -99,20 +106,20 @@ constructor(
             val albumArtistsObservable = if (settingsManager.searchArtists)
                 albumArtistsRepository.getAlbumArtists()
                         .first(emptyList())
-                        .lift(AlbumArtistFilterOperator(query))
+                        .lift(FilterOperator(query, albumArtistSearchIndex))
             else
                 Single.just(emptyList())
 
             val albumsObservable = if (settingsManager.searchAlbums)
                 albumsRepository.getAlbums()
                         .first(emptyList())
-                        .lift(AlbumFilterOperator(query))
+                        .lift(FilterOperator(query, albumSearchIndex))
             else
                 Single.just(emptyList())
 
             val songsObservable = songsRepository.getSongs(null as Function1<Song, Boolean>?)
                     .first(emptyList())
-                    .lift(SongFilterOperator(query))
+                    .lift(FilterOperator(query, songSearchIndex))
 
             performSearchSubscription = Single.zip<List<AlbumArtist>, List<Album>, List<Song>, SearchResult>(albumArtistsObservable, albumsObservable, songsObservable, Function3 { albumArtists: List<AlbumArtist>, albums: List<Album>, songs: List<Song> -> SearchResult(albumArtists, albums, songs) })
                     .observeOn(AndroidSchedulers.mainThread())
@@ -159,19 +166,33 @@ constructor(
         view?.goToAlbum(albumView.album, viewHolder.imageOne)
     }
 
-    private inner class SongFilterOperator internal constructor(internal var filterString: String) : SingleOperator<List<Song>, List<Song>> {
+    /**
+     * Filters a library list against the query, using the [SearchIndex] for that list.
+     *
+     * Disposing the subscription (because a newer query has arrived) cancels an in-flight search, in which case nothing is emitted.
+     */
+    private inner class FilterOperator<T : Comparable<T>> internal constructor(
+            internal var filterString: String,
+            private val searchIndexCache: SearchIndexCache<T>
+    ) : SingleOperator<List<T>, List<T>> {
+
+        override fun apply(observer: SingleObserver<in List<T>>): SingleObserver<in List<T>> {
+            val cancellationSignal = CancellationSignal()
 
-        override fun apply(observer: SingleObserver<in List<Song>>): SingleObserver<in List<Song>> {
-            return object : SingleObserver<List<Song>> {
+            return object : SingleObserver<List<T>> {
                 override fun onSubscribe(d: Disposable) {
-                    observer.onSubscribe(d)
+                    observer.onSubscribe(CompositeDisposable(d, Disposables.fromAction { cancellationSignal.cancel() }))
                 }
 
-                override fun onSuccess(songs: List<Song>) {
-                    var songs = songs
-                    val songList = songs.filter { song -> song.name != null }
-                    songs = (if (settingsManager.searchFuzzy) applyJaroWinklerFilter(songList) else applySongFilter(songList)).toList()
-                    observer.onSuccess(songs)
+                override fun onSuccess(items: List<T>) {
+                    val filteredItems = if (settingsManager.searchFuzzy) {
+                        searchIndexCache.search(items, filterString, cancellationSignal)
+                    } else {
+                        searchIndexCache.filter(items, filterString, cancellationSignal)
+                    }
+                    if (filteredItems != null) {
+                        observer.onSuccess(filteredItems)
+                    }
                 }
 
                 override fun onError(e: Throwable) {
@@ -179,85 +200,46 @@ constructor(
                 }
             }
         }
-
-        internal fun applyJaroWinklerFilter(songList: List<Song>): List<Song> {
-            return songList.map { song -> JaroWinklerObject(song, filterString, song.name) }
-                    .filter { jaroWinklerObject -> jaroWinklerObject.score > SCORE_THRESHOLD || TextUtils.isEmpty(filterString) }
-                    .sortedWith(Comparator { a, b -> a.`object`.compareTo(b.`object`) })
-                    .sortedWith(Comparator { a, b -> java.lang.Double.compare(b.score, a.score) })
-                    .map { jaroWinklerObject -> jaroWinklerObject.`object` }
-        }
-
-        internal fun applySongFilter(songStream: List<Song>): List<Song> {
-            return songStream.filter { song -> StringUtils.containsIgnoreCase(song.name, filterString) }
-        }
     }
 
-    private inner class AlbumFilterOperator internal constructor(internal var filterString: String) : SingleOperator<List<Album>, List<Album>> {
+    /**
+     * Holds the [SearchIndex] for the most recent library emission, so it's only rebuilt when the library changes, rather than per query.
+     *
+     * Also holds the most recent substring matches, so that a query which extends the previous one only re-tests those.
+     */
+    private class SearchIndexCache<T : Comparable<T>>(private val nameFunction: SearchIndex.NameFunction<T>) {
 
-        override fun apply(observer: SingleObserver<in List<Album>>): SingleObserver<in List<Album>> {
-            return object : SingleObserver<List<Album>> {
-                override fun onSubscribe(d: Disposable) {
-                    observer.onSubscribe(d)
-                }
+        private var items: List<T>? = null
 
-                override fun onSuccess(albums: List<Album>) {
-                    albums.sortedWith(Comparator { a, b -> a.compareTo(b) })
-                    val albumStream = albums.filter { album -> album.name != null }
-                    val filteredStream = if (settingsManager.searchFuzzy) applyJaroWinklerAlbumFilter(albumStream) else applyAlbumFilter(albumStream)
-                    observer.onSuccess(filteredStream.toList())
-                }
+        private var index: SearchIndex<T>? = null
 
-                override fun onError(e: Throwable) {
-                    observer.onError(e)
-                }
-            }
-        }
+        private var previousMatches: SearchIndex.Matches<T>? = null
 
-        internal fun applyJaroWinklerAlbumFilter(albums: List<Album>): List<Album> {
-            return albums.map { album -> JaroWinklerObject(album, filterString, album.name) }
-                    .filter { jaroWinklerObject -> jaroWinklerObject.score > SCORE_THRESHOLD || TextUtils.isEmpty(filterString) }
-                    .sortedWith(Comparator { a, b -> a.`object`.compareTo(b.`object`) })
-                    .sortedWith(Comparator { a, b -> java.lang.Double.compare(b.score, a.score) })
-                    .map { jaroWinklerObject -> jaroWinklerObject.`object` }
+        @Synchronized
+        private fun get(items: List<T>): SearchIndex<T> {
+            var index = index
+            if (index == null || items !== this.items) {
+                index = SearchIndex(items, nameFunction)
+                this.items = items
+                this.index = index
+                previousMatches = null
+            }
+            return index
         }
 
-        internal fun applyAlbumFilter(stream: List<Album>): List<Album> {
-            return stream.filter { album -> StringUtils.containsIgnoreCase(album.name, filterString) }
+        fun search(items: List<T>, query: String, cancellationSignal: CancellationSignal): List<T>? {
+            return get(items).search(query, SCORE_THRESHOLD, MAX_RESULTS, cancellationSignal)
         }
-    }
-
-    private inner class AlbumArtistFilterOperator internal constructor(internal var filterString: String) : SingleOperator<List<AlbumArtist>, List<AlbumArtist>> {
-
-        override fun apply(observer: SingleObserver<in List<AlbumArtist>>): SingleObserver<in List<AlbumArtist>> {
-            return object : SingleObserver<List<AlbumArtist>> {
-                override fun onSubscribe(d: Disposable) {
-                    observer.onSubscribe(d)
-                }
 
-                override fun onSuccess(albumArtists: List<AlbumArtist>) {
-                    Collections.sort(albumArtists) { obj, albumArtist -> obj.compareTo(albumArtist) }
-                    val albumArtistList = albumArtists.filter { albumArtist -> albumArtist.name != null }
-                    val filteredList = if (settingsManager.searchFuzzy) applyJaroWinklerAlbumArtistFilter(albumArtistList) else applyAlbumArtistFilter(albumArtistList)
-                    observer.onSuccess(filteredList.toList())
-                }
-
-                override fun onError(e: Throwable) {
-                    observer.onError(e)
+        fun filter(items: List<T>, query: String, cancellationSignal: CancellationSignal): List<T>? {
+            val index = get(items)
+            val matches = index.filter(query, synchronized(this) { previousMatches }, cancellationSignal) ?: return null
+            synchronized(this) {
+                if (index === this.index) {
+                    previousMatches = matches
                 }
             }
-        }
-
-        internal fun applyJaroWinklerAlbumArtistFilter(stream: List<AlbumArtist>): List<AlbumArtist> {
-            return stream.map { albumArtist -> JaroWinklerObject(albumArtist, filterString, albumArtist.name) }
-                    .filter { jaroWinklerObject -> jaroWinklerObject.score > SCORE_THRESHOLD || TextUtils.isEmpty(filterString) }
-                    .sortedWith(Comparator { a, b -> a.`object`.compareTo(b.`object`) })
-                    .sortedWith(Comparator { a, b -> java.lang.Double.compare(b.score, a.score) })
-                    .map { jaroWinklerObject -> jaroWinklerObject.`object` }
-        }
-
-        internal fun applyAlbumArtistFilter(stream: List<AlbumArtist>): List<AlbumArtist> {
-            return stream.filter { albumArtist -> StringUtils.containsIgnoreCase(albumArtist.name, filterString) }
+            return matches.items
         }
     }
 
@@ -278,5 +260,7 @@ constructor(
         private const val TAG = "SearchPresenter"
 
         private const val SCORE_THRESHOLD = 0.80
+
+        private const val MAX_RESULTS = 250
     }
 }
@@ -13,6 +13,7 @@ import com.bumptech.glide.RequestManager
 import com.simplecity.amp_library.R
 import com.simplecity.amp_library.R.string
 import com.simplecity.amp_library.data.Repository
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.AlbumArtist
 import com.simplecity.amp_library.model.Playlist
@@ -66,6 +67,8 @@ class SuggestedFragment :
 
     @Inject lateinit var settingsManager: SettingsManager
 
+    @Inject lateinit var artworkSourceCache: ArtworkSourceCache
+
     @Inject lateinit var favoritesPlaylistManager: FavoritesPlaylistManager
 
     @Inject lateinit var playlistMenuHelper: PlaylistMenuHelper
@@ -360,7 +363,7 @@ class SuggestedFragment :
     }
 
     override fun presentArtworkEditorDialog(album: Album) {
-        ArtworkDialog.build(context, album).show()
+        ArtworkDialog.build(context, album, artworkSourceCache).show()
     }
 
 
@@ -15,6 +15,7 @@ import com.mlsdev.rximagepicker.RxImagePicker;
 import com.mlsdev.rximagepicker.Sources;
 import com.simplecity.amp_library.R;
 import com.simplecity.amp_library.ShuttleApplication;
+import com.simplecity.amp_library.glide.utils.ArtworkSourceCache;
 import com.simplecity.amp_library.model.ArtworkModel;
 import com.simplecity.amp_library.model.ArtworkProvider;
 import com.simplecity.amp_library.model.UserSelectedArtwork;
@@ -41,7 +42,7 @@ public class ArtworkDialog {
 
     }
 
-    public static MaterialDialog build(Context context, ArtworkProvider artworkProvider) {
+    public static MaterialDialog build(Context context, ArtworkProvider artworkProvider, ArtworkSourceCache artworkSourceCache) {
 
         @SuppressLint("InflateParams")
         View customView = LayoutInflater.from(context).inflate(R.layout.dialog_artwork, null);
@@ -127,6 +128,7 @@ public class ArtworkDialog {
                 .positiveText(context.getString(R.string.save))
                 .onPositive((dialog, which) -> {
                     ArtworkView checkedView = ArtworkDialog.getCheckedView(adapter.items);
+                    artworkSourceCache.remove(artworkProvider.getArtworkKey());
                     if (checkedView != null) {
                         ArtworkModel artworkModel = checkedView.getItem();
                         ContentValues values = new ContentValues();
@@ -9,7 +9,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.util.Log;
-import com.annimon.stream.Stream;
 import com.simplecity.amp_library.model.Album;
 import com.simplecity.amp_library.model.Song;
 import java.io.ByteArrayInputStream;
@@ -21,7 +20,6 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.regex.Pattern;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.audio.exceptions.CannotReadException;
@@ -34,6 +32,8 @@ public class ArtworkUtils {
 
     private static final String TAG = "ArtworkUtils";
 
+    private static final FolderArtworkIndex folderArtworkIndex = new FolderArtworkIndex(256);
+
     //This class is never instantiated
     private ArtworkUtils() {
 
@@ -42,35 +42,15 @@ public class ArtworkUtils {
     /**
      * Searches the parent directory of the passed in path for [cover/album/artwork].[png/jpg/jpeg]
      * using regex and returns a {@link InputStream} representing the artwork
+     * <p>
+     * Directory listings are cached, see {@link FolderArtworkIndex}.
      */
     @WorkerThread
     public static InputStream getFolderArtwork(@Nullable final String path) {
-
-        InputStream fileInputStream = null;
-
-        if (path != null) {
-            File[] files;
-            File file = new File(path);
-            File parent = file.getParentFile();
-            if (parent.exists() && parent.isDirectory()) {
-                final Pattern pattern = Pattern.compile("(folder|cover|album).*\\.(jpg|jpeg|png)", Pattern.CASE_INSENSITIVE);
-                files = parent.listFiles(file1 -> pattern.matcher(file1.getName()).matches());
-
-                if (files.length > 0) {
-                    try {
-                        File artworkFile = Stream.of(files)
-                                .filter(aFile -> aFile.exists() && aFile.length() > 1024)
-                                .max((a, b) -> (int) (a.length() / 1024 - b.length() / 1024))
-                                .get();
-
-                        fileInputStream = getFileArtwork(artworkFile);
-                    } catch (NoSuchElementException e) {
-                        Log.e(TAG, "getFolderArtwork failed: " + e.toString());
-                    }
-                }
-            }
+        if (path == null) {
+            return null;
         }
-        return fileInputStream;
+        return getFileArtwork(folderArtworkIndex.getBest(new File(path).getParentFile()));
     }
 
     /**
@@ -148,6 +128,9 @@ public class ArtworkUtils {
 
     /**
      * Retrieves the Artwork from the id3 tags of the file at the given path.
+     * <p>
+     * Where possible, the image is streamed directly from the file (see {@link EmbeddedArtworkLocator}), otherwise the tag is read via
+     * jaudiotagger.
      */
     @WorkerThread
     public static InputStream getTagArtwork(@Nullable String filePath) {
@@ -155,8 +138,21 @@ public class ArtworkUtils {
         InputStream inputStream = null;
 
         if (filePath != null) {
+            File file = new File(filePath);
+            try {
+                EmbeddedArtworkLocator.Location location = EmbeddedArtworkLocator.locate(file);
+                if (location == EmbeddedArtworkLocator.NOT_FOUND) {
+                    return null;
+                }
+                if (location != null) {
+                    return new RangeInputStream(file, location.start, location.length);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to locate embedded artwork: " + e.toString());
+            }
+
             try {
-                AudioFile audioFIle = AudioFileIO.read(new File(filePath));
+                AudioFile audioFIle = AudioFileIO.read(file);
                 if (audioFIle != null) {
                     Tag tag = audioFIle.getTag();
                     if (tag != null) {
@@ -180,24 +176,9 @@ public class ArtworkUtils {
      */
     @WorkerThread
     public static List<File> getAllFolderArtwork(@Nullable final String path) {
-        List<File> fileArray = new ArrayList<>();
-
-        if (path != null) {
-            File[] files;
-            File parent = new File(path).getParentFile();
-            if (parent.exists() && parent.isDirectory()) {
-                final Pattern pattern = Pattern.compile("(folder|cover|album).*\\.(jpg|jpeg|png)", Pattern.CASE_INSENSITIVE);
-                files = parent.listFiles(file1 -> pattern.matcher(file1.getName()).matches());
-
-                if (files.length != 0) {
-                    for (File file : files) {
-                        if (file.exists()) {
-                            fileArray.add(file);
-                        }
-                    }
-                }
-            }
+        if (path == null) {
+            return new ArrayList<>();
         }
-        return fileArray;
+        return new ArrayList<>(folderArtworkIndex.getFiles(new File(path).getParentFile()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.simplecity.amp_library.utils;
+
+import android.support.annotation.NonNull;
+
+/**
+ * An immutable collation key, along with the collation generation it was computed under (see {@link ComparisonUtils#onLocaleChanged}).
+ * <p>
+ * Entities hold one of these (in a volatile field) for their sort key, so that comparisons are plain byte-array compares rather than
+ * {@link java.text.Collator} calls. Since instances are immutable, they can be safely shared between threads, e.g. parallel sorts.
+ */
+public final class CachedCollationKey {
+
+    private final int generation;
+
+    @NonNull
+    private final byte[] bytes;
+
+    private CachedCollationKey(int generation, @NonNull byte[] bytes) {
+        this.generation = generation;
+        this.bytes = bytes;
+    }
+
+    @NonNull
+    public static CachedCollationKey of(@NonNull String source) {
+        // Read the generation before computing the key, so a concurrent locale change can only cause an unnecessary recomputation.
+        int generation = ComparisonUtils.getCollationGeneration();
+        return new CachedCollationKey(generation, ComparisonUtils.getCollationKeyBytes(source));
+    }
+
+    /**
+     * @return true if the locale has changed since this key was computed
+     */
+    public boolean isStale() {
+        return generation != ComparisonUtils.getCollationGeneration();
+    }
+
+    @NonNull
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,348 @@
+package com.simplecity.amp_library.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Finds the position of the first embedded picture in an audio file, reading only the tag headers, so the image can be streamed straight
+ * from the file rather than parsing the whole tag into memory.
+ * <p>
+ * Supports ID3v2 (APIC / PIC frames) at the start of the file, FLAC PICTURE metadata blocks, and the MP4 'covr' atom. Anything else, or
+ * anything this doesn't understand (unsynchronised or compressed frames, for example), is left to jaudiotagger.
+ */
+final class EmbeddedArtworkLocator {
+
+    /**
+     * The byte range of an embedded image within a file.
+     */
+    static final class Location {
+
+        final long start;
+
+        final long length;
+
+        Location(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The file was parsed, and definitely has no embedded picture.
+     */
+    static final Location NOT_FOUND = new Location(-1, 0);
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final int ID3_HEADER_LENGTH = 10;
+
+    /**
+     * How much of a picture frame to read when looking for the start of the image. The mime type and description precede it.
+     */
+    private static final int MAX_PICTURE_HEADER_LENGTH = 4096;
+
+    private static final int FLAC_BLOCK_PICTURE = 6;
+
+    private EmbeddedArtworkLocator() {
+
+    }
+
+    /**
+     * @return the location of the first embedded picture, {@link #NOT_FOUND}, or null if the file couldn't be parsed (in which case it
+     * may or may not have embedded artwork)
+     */
+    @WorkerThread
+    @Nullable
+    static Location locate(@NonNull File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            long fileLength = channel.size();
+            if (fileLength < 12) {
+                return null;
+            }
+            ByteBuffer header = read(channel, 0, 12);
+
+            if (matches(header, 0, "ID3")) {
+                Location location = locateId3(channel, header);
+                if (location != NOT_FOUND) {
+                    return location;
+                }
+                // An ID3 tag can precede the FLAC stream marker
+                long flacStart = ID3_HEADER_LENGTH + syncSafeInt(header, 6);
+                if (flacStart + 4 <= fileLength && matches(read(channel, flacStart, 4), 0, "fLaC")) {
+                    return locateFlac(channel, flacStart, fileLength);
+                }
+                return location;
+            }
+            if (matches(header, 0, "fLaC")) {
+                return locateFlac(channel, 0, fileLength);
+            }
+            if (matches(header, 4, "ftyp")) {
+                return locateMp4(channel, fileLength);
+            }
+            return null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Location locateId3(FileChannel channel, ByteBuffer header) throws IOException {
+        int version = header.get(3);
+        int flags = header.get(5);
+        if (version < 2 || version > 4 || (flags & 0x80) != 0 || (version == 2 && (flags & 0x40) != 0)) {
+            // Unknown version, tag-wide unsynchronisation, or (v2.2) compression
+            return null;
+        }
+
+        long tagEnd = ID3_HEADER_LENGTH + syncSafeInt(header, 6);
+        long position = ID3_HEADER_LENGTH;
+        if ((flags & 0x40) != 0) {
+            // Extended header. Its size excludes itself in v2.3, and includes itself in v2.4.
+            ByteBuffer extendedHeader = read(channel, position, 4);
+            position += version == 3 ? 4 + (extendedHeader.getInt(0) & 0xFFFFFFFFL) : syncSafeInt(extendedHeader, 0);
+        }
+
+        int frameHeaderLength = version == 2 ? 6 : 10;
+        String pictureId = version == 2 ? "PIC" : "APIC";
+
+        while (position + frameHeaderLength <= tagEnd) {
+            ByteBuffer frameHeader = read(channel, position, frameHeaderLength);
+            if (frameHeader.get(0) == 0) {
+                // Padding
+                break;
+            }
+            long frameSize;
+            if (version == 2) {
+                frameSize = ((frameHeader.get(3) & 0xFF) << 16) | ((frameHeader.get(4) & 0xFF) << 8) | (frameHeader.get(5) & 0xFF);
+            } else if (version == 3) {
+                frameSize = frameHeader.getInt(4) & 0xFFFFFFFFL;
+            } else {
+                frameSize = syncSafeInt(frameHeader, 4);
+            }
+            long frameStart = position + frameHeaderLength;
+            long frameEnd = frameStart + frameSize;
+            if (frameEnd > tagEnd) {
+                return null;
+            }
+
+            if (matches(frameHeader, 0, pictureId)) {
+                return locateId3Picture(channel, version, version == 2 ? 0 : frameHeader.get(9), frameStart, frameEnd);
+            }
+            position = frameEnd;
+        }
+        return NOT_FOUND;
+    }
+
+    @Nullable
+    private static Location locateId3Picture(FileChannel channel, int version, int formatFlags, long frameStart, long frameEnd) throws IOException {
+        long position = frameStart;
+        if (version == 3) {
+            if ((formatFlags & 0xC0) != 0) {
+                // Compressed or encrypted
+                return null;
+            }
+            if ((formatFlags & 0x20) != 0) {
+                // Grouping identity
+                position += 1;
+            }
+        } else if (version == 4) {
+            if ((formatFlags & 0x0E) != 0) {
+                // Compressed, encrypted or unsynchronised
+                return null;
+            }
+            if ((formatFlags & 0x40) != 0) {
+                // Grouping identity
+                position += 1;
+            }
+            if ((formatFlags & 0x01) != 0) {
+                // Data length indicator
+                position += 4;
+            }
+        }
+
+        if (position >= frameEnd) {
+            return null;
+        }
+        ByteBuffer frame = read(channel, position, (int) Math.min(frameEnd - position, MAX_PICTURE_HEADER_LENGTH));
+        int limit = frame.limit();
+        if (limit < 2) {
+            return null;
+        }
+        int encoding = frame.get(0);
+        int offset = 1;
+        if (version == 2) {
+            // Three character image format
+            offset += 3;
+        } else {
+            // Null terminated mime type
+            while (offset < limit && frame.get(offset) != 0) {
+                offset++;
+            }
+            offset++;
+        }
+        // Picture type
+        offset++;
+
+        // Null terminated description, in the frame's text encoding
+        if (encoding == 1 || encoding == 2) {
+            // UTF-16: terminated by a pair of zero bytes, aligned to the character
+            while (offset + 1 < limit && (frame.get(offset) != 0 || frame.get(offset + 1) != 0)) {
+                offset += 2;
+            }
+            offset += 2;
+        } else {
+            while (offset < limit && frame.get(offset) != 0) {
+                offset++;
+            }
+            offset++;
+        }
+        if (offset > limit) {
+            // The description runs past what we read
+            return null;
+        }
+
+        long imageStart = position + offset;
+        return imageStart < frameEnd ? new Location(imageStart, frameEnd - imageStart) : null;
+    }
+
+    /**
+     * @return the first PICTURE block in the FLAC stream, or null. Pictures can also be stored as Vorbis comments, so a missing PICTURE
+     * block isn't conclusive.
+     */
+    @Nullable
+    private static Location locateFlac(FileChannel channel, long flacStart, long fileLength) throws IOException {
+        long position = flacStart + 4;
+        while (position + 4 <= fileLength) {
+            ByteBuffer blockHeader = read(channel, position, 4);
+            int blockType = blockHeader.get(0) & 0x7F;
+            boolean isLast = (blockHeader.get(0) & 0x80) != 0;
+            long blockLength = blockHeader.getInt(0) & 0xFFFFFF;
+            long blockStart = position + 4;
+            long blockEnd = blockStart + blockLength;
+            if (blockEnd > fileLength) {
+                return null;
+            }
+
+            if (blockType == FLAC_BLOCK_PICTURE) {
+                // Picture type, then the mime type and description, each preceded by their length
+                long offset = blockStart + 4;
+                offset += 4 + readUnsignedInt(channel, offset);
+                offset += 4 + readUnsignedInt(channel, offset);
+                // Width, height, colour depth and number of colours
+                offset += 16;
+                long imageLength = readUnsignedInt(channel, offset);
+                long imageStart = offset + 4;
+                if (imageLength <= 0 || imageStart + imageLength > blockEnd) {
+                    return null;
+                }
+                return new Location(imageStart, imageLength);
+            }
+
+            if (isLast) {
+                break;
+            }
+            position = blockEnd;
+        }
+        return null;
+    }
+
+    /**
+     * @return the image in moov/udta/meta/ilst/covr/data, or null
+     */
+    @Nullable
+    private static Location locateMp4(FileChannel channel, long fileLength) throws IOException {
+        long[] moov = findBox(channel, 0, fileLength, "moov");
+        long[] udta = moov == null ? null : findBox(channel, moov[0], moov[1], "udta");
+        long[] meta = udta == null ? null : findBox(channel, udta[0], udta[1], "meta");
+        if (meta == null) {
+            return null;
+        }
+        // 'meta' is usually a full box (with 4 bytes of version and flags before its children), but not always
+        long metaChildren = meta[0];
+        if (meta[1] - meta[0] >= 8 && !matches(read(channel, meta[0] + 4, 4), 0, "hdlr")) {
+            metaChildren += 4;
+        }
+        long[] ilst = findBox(channel, metaChildren, meta[1], "ilst");
+        long[] covr = ilst == null ? null : findBox(channel, ilst[0], ilst[1], "covr");
+        long[] data = covr == null ? null : findBox(channel, covr[0], covr[1], "data");
+        if (data == null) {
+            return null;
+        }
+        // The data type and locale precede the image
+        long imageStart = data[0] + 8;
+        return imageStart < data[1] ? new Location(imageStart, data[1] - imageStart) : null;
+    }
+
+    /**
+     * @return the start and end of the content of the first box of the given type within [start, end), or null
+     */
+    @Nullable
+    private static long[] findBox(FileChannel channel, long start, long end, String type) throws IOException {
+        long position = start;
+        while (position + 8 <= end) {
+            ByteBuffer header = read(channel, position, 8);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            long contentStart = position + 8;
+            if (size == 1) {
+                // 64 bit size
+                size = read(channel, position + 8, 8).getLong(0);
+                contentStart += 8;
+            } else if (size == 0) {
+                // Extends to the end of the parent
+                size = end - position;
+            }
+            long boxEnd = position + size;
+            if (boxEnd < contentStart || boxEnd > end) {
+                return null;
+            }
+            if (matches(header, 4, type)) {
+                return new long[] { contentStart, boxEnd };
+            }
+            position = boxEnd;
+        }
+        return null;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long readUnsignedInt(FileChannel channel, long position) throws IOException {
+        return read(channel, position, 4).getInt(0) & 0xFFFFFFFFL;
+    }
+
+    private static long syncSafeInt(ByteBuffer buffer, int offset) {
+        return ((buffer.get(offset) & 0x7F) << 21)
+                | ((buffer.get(offset + 1) & 0x7F) << 14)
+                | ((buffer.get(offset + 2) & 0x7F) << 7)
+                | (buffer.get(offset + 3) & 0x7F);
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, String id) {
+        byte[] bytes = id.getBytes(ASCII);
+        if (buffer.limit() < offset + bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
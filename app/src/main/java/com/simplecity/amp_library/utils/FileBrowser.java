@@ -4,6 +4,7 @@ import android.os.Environment;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
+import android.util.LruCache;
 import com.simplecity.amp_library.R;
 import com.simplecity.amp_library.interfaces.FileType;
 import com.simplecity.amp_library.model.BaseFileObject;
@@ -11,6 +12,8 @@ import com.simplecity.amp_library.model.FileObject;
 import com.simplecity.amp_library.model.FolderObject;
 import com.simplecity.amp_library.model.TagInfo;
 import com.simplecity.amp_library.utils.sorting.SortManager;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -21,6 +24,33 @@ public class FileBrowser {
 
     private static final String TAG = "FileBrowser";
 
+    /**
+     * How many files have their tags read (or folders their contents counted) at once.
+     */
+    private static final int MAX_CONCURRENT_DETAILS = 4;
+
+    private static final class Cached<T> {
+
+        final long lastModified;
+
+        final T value;
+
+        Cached(long lastModified, T value) {
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+
+    /**
+     * File path -> tags, valid while the file's modification time is unchanged.
+     */
+    private static final LruCache<String, Cached<TagInfo>> tagInfoCache = new LruCache<>(2000);
+
+    /**
+     * Folder path -> {file count, folder count}, valid while the folder's modification time is unchanged.
+     */
+    private static final LruCache<String, Cached<int[]>> countsCache = new LruCache<>(1000);
+
     @Nullable
     private File currentDir;
 
@@ -32,66 +62,206 @@ public class FileBrowser {
 
     /**
      * Loads the specified folder.
+     * <p>
+     * The folder's contents are emitted straight away, using basic file information along with any tags and folder counts cached from
+     * a previous load. Any missing tags and counts are then read in parallel, and the contents emitted again.
      *
      * @param directory The file object to points to the directory to load.
-     * @return An {@link List<BaseFileObject>} object that holds the data of the specified directory.
+     * @return An {@link Observable} emitting {@link List<BaseFileObject>}s that hold the data of the specified directory.
      */
-    @WorkerThread
-    public List<BaseFileObject> loadDir(File directory) {
+    public Observable<List<BaseFileObject>> loadDir(File directory) {
+        return Observable.defer(() -> {
 
-        ThreadUtils.ensureNotOnMainThread();
+            ThreadUtils.ensureNotOnMainThread();
 
-        currentDir = directory;
+            currentDir = directory;
 
-        List<BaseFileObject> folderObjects = new ArrayList<>();
-        List<BaseFileObject> fileObjects = new ArrayList<>();
+            List<BaseFileObject> baseFileObjects = listDir(directory);
 
-        //Grab a list of all files/subdirs within the specified directory.
-        File[] files = directory.listFiles(FileHelper.getAudioFilter());
+            List<BaseFileObject> pending = new ArrayList<>();
+            for (BaseFileObject baseFileObject : baseFileObjects) {
+                if (!hasDetails(baseFileObject)) {
+                    pending.add(baseFileObject);
+                }
+            }
+
+            Observable<List<BaseFileObject>> contents = Observable.just(sort(directory, baseFileObjects, pending.isEmpty()));
+            if (pending.isEmpty()) {
+                return contents;
+            }
 
-        if (files != null) {
-            for (File file : files) {
-                BaseFileObject baseFileObject;
-
-                if (file.isDirectory()) {
-                    baseFileObject = new FolderObject();
-                    baseFileObject.path = FileHelper.getPath(file);
-                    baseFileObject.name = file.getName();
-                    File[] listOfFiles = file.listFiles(FileHelper.getAudioFilter());
-                    if (listOfFiles != null && listOfFiles.length > 0) {
-                        for (File listOfFile : listOfFiles) {
-                            if (listOfFile.isDirectory()) {
-                                ((FolderObject) baseFileObject).folderCount++;
-                            } else {
-                                ((FolderObject) baseFileObject).fileCount++;
+            return contents.concatWith(Observable.fromIterable(pending)
+                    .flatMap(baseFileObject -> Observable.fromCallable(() -> loadDetails(baseFileObject)).subscribeOn(Schedulers.io()),
+                            MAX_CONCURRENT_DETAILS)
+                    .toMap(baseFileObject -> baseFileObject.path)
+                    .map(loaded -> {
+                        List<BaseFileObject> result = new ArrayList<>(baseFileObjects.size());
+                        for (BaseFileObject baseFileObject : baseFileObjects) {
+                            BaseFileObject loadedObject = loaded.get(baseFileObject.path);
+                            if (loadedObject != null) {
+                                baseFileObject = loadedObject;
+                            }
+                            if (!isEmptyFolder(baseFileObject)) {
+                                result.add(baseFileObject);
                             }
                         }
-                    } else {
-                        continue;
-                    }
-                    if (!folderObjects.contains(baseFileObject)) {
-                        folderObjects.add(baseFileObject);
-                    }
-                } else {
-                    baseFileObject = new FileObject();
-                    baseFileObject.path = FileHelper.getPath(file);
-                    baseFileObject.name = FileHelper.getName(file.getName());
-                    baseFileObject.size = file.length();
-                    ((FileObject) baseFileObject).extension = FileHelper.getExtension(file.getName());
-                    if (TextUtils.isEmpty(((FileObject) baseFileObject).extension)) {
+                        return sort(directory, result, true);
+                    })
+                    .toObservable());
+        });
+    }
+
+    /**
+     * Lists the folder, filling in tags and folder counts only where they're cached.
+     */
+    @WorkerThread
+    private List<BaseFileObject> listDir(File directory) {
+
+        //Grab a list of all files/subdirs within the specified directory.
+        File[] files = directory.listFiles(FileHelper.getAudioFilter());
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        List<BaseFileObject> baseFileObjects = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                FolderObject folderObject = new FolderObject();
+                folderObject.path = FileHelper.getPath(file);
+                folderObject.name = file.getName();
+                int[] counts = getCached(countsCache, folderObject.path, file.lastModified());
+                if (counts != null) {
+                    setCounts(folderObject, counts);
+                    if (isEmptyFolder(folderObject)) {
                         continue;
                     }
-                    ((FileObject) baseFileObject).tagInfo = new TagInfo(baseFileObject.path);
+                }
+                baseFileObjects.add(folderObject);
+            } else {
+                String extension = FileHelper.getExtension(file.getName());
+                if (TextUtils.isEmpty(extension)) {
+                    continue;
+                }
+                FileObject fileObject = new FileObject();
+                fileObject.path = FileHelper.getPath(file);
+                fileObject.name = FileHelper.getName(file.getName());
+                fileObject.size = file.length();
+                fileObject.extension = extension;
+                fileObject.tagInfo = getCached(tagInfoCache, fileObject.path, file.lastModified());
+                baseFileObjects.add(fileObject);
+            }
+        }
+        return baseFileObjects;
+    }
 
-                    if (!fileObjects.contains(baseFileObject)) {
-                        fileObjects.add(baseFileObject);
+    /**
+     * Reads the tags of a file, or counts the contents of a folder.
+     *
+     * @return a copy of the object with its details filled in. It's copied rather than updated in place, as the object may already be
+     * displayed.
+     */
+    @WorkerThread
+    private static BaseFileObject loadDetails(BaseFileObject baseFileObject) {
+        File file = new File(baseFileObject.path);
+        // Read before loading, so a modification made while loading invalidates the cached result
+        long lastModified = file.lastModified();
+
+        if (baseFileObject instanceof FolderObject) {
+            int[] counts = new int[2];
+            File[] listOfFiles = file.listFiles(FileHelper.getAudioFilter());
+            if (listOfFiles != null) {
+                for (File listOfFile : listOfFiles) {
+                    if (listOfFile.isDirectory()) {
+                        counts[1]++;
+                    } else {
+                        counts[0]++;
                     }
                 }
             }
+            countsCache.put(baseFileObject.path, new Cached<>(lastModified, counts));
+
+            FolderObject folderObject = new FolderObject();
+            copy(baseFileObject, folderObject);
+            setCounts(folderObject, counts);
+            return folderObject;
+        } else {
+            TagInfo tagInfo = new TagInfo(baseFileObject.path);
+            tagInfoCache.put(baseFileObject.path, new Cached<>(lastModified, tagInfo));
+
+            FileObject fileObject = new FileObject();
+            copy(baseFileObject, fileObject);
+            fileObject.extension = ((FileObject) baseFileObject).extension;
+            fileObject.tagInfo = tagInfo;
+            return fileObject;
         }
+    }
+
+    private static void copy(BaseFileObject from, BaseFileObject to) {
+        to.name = from.name;
+        to.path = from.path;
+        to.size = from.size;
+        to.fileType = from.fileType;
+    }
+
+    private static void setCounts(FolderObject folderObject, int[] counts) {
+        folderObject.fileCount = counts[0];
+        folderObject.folderCount = counts[1];
+        folderObject.hasCounts = true;
+    }
 
-        sortFileObjects(fileObjects);
-        sortFolderObjects(folderObjects);
+    private static boolean hasDetails(BaseFileObject baseFileObject) {
+        if (baseFileObject instanceof FolderObject) {
+            return ((FolderObject) baseFileObject).hasCounts;
+        }
+        return ((FileObject) baseFileObject).tagInfo != null;
+    }
+
+    private static boolean isEmptyFolder(BaseFileObject baseFileObject) {
+        if (!(baseFileObject instanceof FolderObject)) {
+            return false;
+        }
+        FolderObject folderObject = (FolderObject) baseFileObject;
+        return folderObject.hasCounts && folderObject.fileCount == 0 && folderObject.folderCount == 0;
+    }
+
+    /**
+     * @return the cached value for the given path, or null if there isn't one or the file has been modified since it was cached
+     */
+    @Nullable
+    private static <T> T getCached(LruCache<String, Cached<T>> cache, String path, long lastModified) {
+        Cached<T> cached = cache.get(path);
+        return cached != null && cached.lastModified == lastModified ? cached.value : null;
+    }
+
+    /**
+     * Sorts folders before files, and adds the parent folder entry.
+     *
+     * @param hasDetails whether the tags and folder counts have been loaded. If not, objects are sorted by name wherever the sort order
+     * depends on them.
+     */
+    private List<BaseFileObject> sort(File directory, List<BaseFileObject> baseFileObjects, boolean hasDetails) {
+
+        List<BaseFileObject> folderObjects = new ArrayList<>();
+        List<BaseFileObject> fileObjects = new ArrayList<>();
+        for (BaseFileObject baseFileObject : baseFileObjects) {
+            if (baseFileObject instanceof FolderObject) {
+                folderObjects.add(baseFileObject);
+            } else {
+                fileObjects.add(baseFileObject);
+            }
+        }
+
+        int filesSortOrder = settingsManager.getFolderBrowserFilesSortOrder();
+        if (hasDetails || filesSortOrder == SortManager.SortFiles.SIZE || filesSortOrder == SortManager.SortFiles.FILE_NAME) {
+            sortFileObjects(fileObjects);
+        } else {
+            Collections.sort(fileObjects, filenameComparator());
+        }
+        if (hasDetails || settingsManager.getFolderBrowserFoldersSortOrder() != SortManager.SortFolders.COUNT) {
+            sortFolderObjects(folderObjects);
+        } else {
+            Collections.sort(folderObjects, filenameComparator());
+        }
 
         if (!settingsManager.getFolderBrowserFilesAscending()) {
             Collections.reverse(fileObjects);
@@ -103,11 +273,11 @@ public class FileBrowser {
 
         folderObjects.addAll(fileObjects);
 
-        if (!FileHelper.isRootDirectory(currentDir)) {
+        if (!FileHelper.isRootDirectory(directory)) {
             FolderObject parentObject = new FolderObject();
             parentObject.fileType = FileType.PARENT;
             parentObject.name = FileHelper.PARENT_DIRECTORY;
-            parentObject.path = FileHelper.getPath(currentDir) + "/" + FileHelper.PARENT_DIRECTORY;
+            parentObject.path = FileHelper.getPath(directory) + "/" + FileHelper.PARENT_DIRECTORY;
             folderObjects.add(0, parentObject);
         }
 
@@ -7,11 +7,11 @@ import android.net.Uri;
 import android.os.Environment;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
-import com.annimon.stream.Stream;
 import com.simplecity.amp_library.data.Repository;
 import com.simplecity.amp_library.model.BaseFileObject;
 import com.simplecity.amp_library.model.FileObject;
 import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.library.SongPathIndex;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
@@ -209,35 +209,30 @@ public class FileHelper {
     }
 
     /**
-     * Recursively collects all the songs for the given directory and
-     * all of its sub-directories. Must be called Asynchronously.
+     * Collects the songs in the given directory, and optionally all of its sub-directories.
      *
-     * @param file the File to retrieve the song Id's from
-     * @param recursive whether to recursively check the sub-directories for song Id's
-     * @return List<Song> a list of the songs for the given fileObject's directory & sub-directories
+     * @param file the directory to retrieve the songs from
+     * @param recursive whether to include the songs in sub-directories
+     * @param inSameDir whether to use the directory containing the given file, rather than the file itself
+     * @return List<Song> a list of the songs for the given fileObject's directory (& sub-directories)
      */
     public static Single<List<Song>> getSongList(Repository.SongsRepository songsRepository, File file, boolean recursive, boolean inSameDir) {
-        return Single.fromCallable(
-                () -> walk(file, new ArrayList<>(), recursive, inSameDir))
-                .flatMap(filePaths -> songsRepository.getSongs(song -> song.path.contains(FileHelper.getPath(inSameDir ? file.getParentFile() : file)))
-                        .first(Collections.emptyList()))
-                .subscribeOn(Schedulers.io());
+        return songsRepository.getSongPathIndex()
+                .first(SongPathIndex.EMPTY)
+                .map(songPathIndex -> songPathIndex.getSongs(FileHelper.getPath(inSameDir ? file.getParentFile() : file), recursive));
     }
 
     /**
      * Gets the song for a given file
      */
     public static Single<Song> getSong(Repository.SongsRepository songsRepository, File file) {
-        return songsRepository.getSongs(song -> song.path.contains(FileHelper.getPath(file)))
+        return songsRepository.getSongPathIndex()
                 .firstOrError()
-                .flatMap(songs -> {
-                    try {
-                        return Single.just(Stream.of(songs).findFirst().get());
-                    } catch (NoSuchElementException e) {
-                        return Single.error(e);
-                    }
-                })
-                .subscribeOn(Schedulers.io());
+                .flatMap(songPathIndex -> {
+                    String path = FileHelper.getPath(file);
+                    Song song = songPathIndex.getSong(path);
+                    return song != null ? Single.just(song) : Single.<Song>error(new NoSuchElementException("No song at " + path));
+                });
     }
 
     /**
@@ -0,0 +1,130 @@
+package com.simplecity.amp_library.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.LruCache;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the artwork files (folder.jpg, cover.png, etc.) found in each directory, along with the best candidate among them.
+ * <p>
+ * Every song or album in a directory shares the same listing, so it's read once and reused until the directory's modification time
+ * changes (which it does whenever a file is added, removed or renamed). Directories without any artwork are cached too, so they aren't
+ * listed again on every fetch.
+ * <p>
+ * Thread safe.
+ */
+final class FolderArtworkIndex {
+
+    private static final Pattern ARTWORK_PATTERN = Pattern.compile("(folder|cover|album).*\\.(jpg|jpeg|png)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Candidates this small are assumed to be thumbnails or placeholders.
+     */
+    private static final long MIN_BEST_LENGTH = 1024;
+
+    private static final class Entry {
+
+        static final Entry EMPTY = new Entry(0, Collections.emptyList(), null);
+
+        /**
+         * The modification time of the directory when it was listed.
+         */
+        final long lastModified;
+
+        @NonNull
+        final List<File> files;
+
+        @Nullable
+        final File best;
+
+        Entry(long lastModified, @NonNull List<File> files, @Nullable File best) {
+            this.lastModified = lastModified;
+            this.files = files;
+            this.best = best;
+        }
+    }
+
+    /**
+     * Directory path -> entry
+     */
+    private final LruCache<String, Entry> entries;
+
+    FolderArtworkIndex(int maxDirectories) {
+        entries = new LruCache<>(maxDirectories);
+    }
+
+    /**
+     * @return the artwork files in the given directory, in listing order
+     */
+    @WorkerThread
+    @NonNull
+    List<File> getFiles(@Nullable File directory) {
+        return getEntry(directory).files;
+    }
+
+    /**
+     * @return the largest artwork file in the given directory, or null if it doesn't have one
+     */
+    @WorkerThread
+    @Nullable
+    File getBest(@Nullable File directory) {
+        return getEntry(directory).best;
+    }
+
+    void clear() {
+        entries.evictAll();
+    }
+
+    @NonNull
+    private Entry getEntry(@Nullable File directory) {
+        if (directory == null) {
+            return Entry.EMPTY;
+        }
+
+        // lastModified() is 0 if the directory doesn't exist (or can't be read)
+        long lastModified = directory.lastModified();
+        if (lastModified == 0) {
+            entries.remove(directory.getPath());
+            return Entry.EMPTY;
+        }
+
+        Entry entry = entries.get(directory.getPath());
+        if (entry == null || entry.lastModified != lastModified) {
+            entry = list(directory, lastModified);
+            entries.put(directory.getPath(), entry);
+        }
+        return entry;
+    }
+
+    @NonNull
+    private static Entry list(@NonNull File directory, long lastModified) {
+        File[] files = directory.listFiles(file -> ARTWORK_PATTERN.matcher(file.getName()).matches());
+        if (files == null || files.length == 0) {
+            return new Entry(lastModified, Collections.emptyList(), null);
+        }
+
+        List<File> artworkFiles = new ArrayList<>(files.length);
+        File best = null;
+        long bestKb = 0;
+        for (File file : files) {
+            long length = file.length();
+            // length() is 0 if the file no longer exists
+            if (length == 0 && !file.exists()) {
+                continue;
+            }
+            artworkFiles.add(file);
+            // Sizes are compared to the nearest KB, the first file listed wins a tie
+            if (length > MIN_BEST_LENGTH && (best == null || length / 1024 > bestKb)) {
+                best = file;
+                bestKb = length / 1024;
+            }
+        }
+        return new Entry(lastModified, Collections.unmodifiableList(artworkFiles), best);
+    }
+}
@@ -0,0 +1,185 @@
+package com.simplecity.amp_library.utils;
+
+import android.support.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * Computes the same Jaro-Winkler similarity as {@link StringUtils#getJaroWinklerSimilarity(String, String)} and
+ * {@link StringUtils#getAdjustedJaroWinklerSimilarity(String, String)}, without allocating.
+ * <p>
+ * Inputs must already have been passed through {@link StringUtils#normalizeForSimilarity(String)}. Scratch buffers are reused between
+ * calls and grown as needed, and tokens are scored in place rather than split out, so scoring a large list doesn't generate garbage.
+ * <p>
+ * Not thread safe - use {@link #get()} to obtain the instance for the current thread.
+ */
+public final class JaroWinklerScorer {
+
+    private static final double DEFAULT_SCALING_FACTOR = 0.1;
+
+    private static final ThreadLocal<JaroWinklerScorer> scorers = new ThreadLocal<JaroWinklerScorer>() {
+        @Override
+        protected JaroWinklerScorer initialValue() {
+            return new JaroWinklerScorer();
+        }
+    };
+
+    /**
+     * For each char of the shorter string, the index of the char it matched in the longer string, or -1
+     */
+    private int[] matchIndexes = new int[32];
+
+    /**
+     * For each char of the longer string, whether it has been matched
+     */
+    private boolean[] matchFlags = new boolean[32];
+
+    private JaroWinklerScorer() {
+
+    }
+
+    @NonNull
+    public static JaroWinklerScorer get() {
+        return scorers.get();
+    }
+
+    /**
+     * @return the Jaro-Winkler similarity of the two (normalized) Strings
+     */
+    public double getSimilarity(@NonNull String first, @NonNull String second) {
+        return getSimilarity(first, 0, first.length(), second);
+    }
+
+    /**
+     * @return the best of the similarity between the (normalized) Strings, and the similarity between each whitespace separated token
+     * of {@code first} and {@code second}
+     */
+    public double getAdjustedSimilarity(@NonNull String first, @NonNull String second) {
+
+        if (first.isEmpty() || second.isEmpty()) {
+            return 0;
+        }
+
+        double score = getSimilarity(first, 0, first.length(), second);
+
+        // Matches the behaviour of String.split("\\s"): a single (possibly whitespace-padded at the end) token isn't scored separately
+        if (!hasMultipleTokens(first)) {
+            return score;
+        }
+
+        int length = first.length();
+        int tokenStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isWhitespace(first.charAt(i))) {
+                if (i > tokenStart) {
+                    score = Math.max(score, getSimilarity(first, tokenStart, i, second));
+                }
+                tokenStart = i + 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return the similarity between {@code first.substring(start, end)} and {@code second}
+     */
+    private double getSimilarity(String first, int start, int end, String second) {
+
+        int firstLength = end - start;
+        int secondLength = second.length();
+
+        // Ties go to 'second' as the longer string, as in StringUtils
+        boolean firstIsMax = firstLength > secondLength;
+        int maxLength = firstIsMax ? firstLength : secondLength;
+        int minLength = firstIsMax ? secondLength : firstLength;
+
+        ensureCapacity(minLength, maxLength);
+        Arrays.fill(matchIndexes, 0, minLength, -1);
+        Arrays.fill(matchFlags, 0, maxLength, false);
+
+        final int range = Math.max(maxLength / 2 - 1, 0);
+
+        int matches = 0;
+        for (int mi = 0; mi < minLength; mi++) {
+            final char c1 = firstIsMax ? second.charAt(mi) : first.charAt(start + mi);
+            int xStart = Math.max(mi - range, 0);
+            int xEnd = Math.min(mi + range + 1, maxLength);
+            for (int xi = xStart; xi < xEnd; xi++) {
+                if (!matchFlags[xi] && c1 == (firstIsMax ? first.charAt(start + xi) : second.charAt(xi))) {
+                    matchIndexes[mi] = xi;
+                    matchFlags[xi] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+
+        if (matches == 0) {
+            return 0D;
+        }
+
+        // Walk the matched chars of both strings in order, counting mismatched pairs
+        int transpositions = 0;
+        int xi = 0;
+        for (int mi = 0; mi < minLength; mi++) {
+            if (matchIndexes[mi] == -1) {
+                continue;
+            }
+            while (!matchFlags[xi]) {
+                xi++;
+            }
+            char minChar = firstIsMax ? second.charAt(mi) : first.charAt(start + mi);
+            char maxChar = firstIsMax ? first.charAt(start + xi) : second.charAt(xi);
+            if (minChar != maxChar) {
+                transpositions++;
+            }
+            xi++;
+        }
+        transpositions /= 2;
+
+        int prefix = 0;
+        for (int i = 0; i < minLength; i++) {
+            if (first.charAt(start + i) == second.charAt(i)) {
+                prefix++;
+            } else {
+                break;
+            }
+        }
+
+        final double m = matches;
+        final double j = (m / firstLength + m / secondLength + (m - transpositions) / m) / 3;
+        final double jw = j < 0.7D ? j : j + Math.min(DEFAULT_SCALING_FACTOR, 1D / maxLength) * prefix * (1D - j);
+        return Math.round(jw * 100.0D) / 100.0D;
+    }
+
+    private void ensureCapacity(int minLength, int maxLength) {
+        if (matchIndexes.length < minLength) {
+            matchIndexes = new int[Math.max(minLength, matchIndexes.length * 2)];
+        }
+        if (matchFlags.length < maxLength) {
+            matchFlags = new boolean[Math.max(maxLength, matchFlags.length * 2)];
+        }
+    }
+
+    /**
+     * @return true if a whitespace char is followed by a non-whitespace char, i.e. if String.split("\\s") would return more than one
+     * element
+     */
+    private static boolean hasMultipleTokens(String str) {
+        boolean seenWhitespace = false;
+        for (int i = 0, length = str.length(); i < length; i++) {
+            if (isWhitespace(str.charAt(i))) {
+                seenWhitespace = true;
+            } else if (seenWhitespace) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The chars matched by the regex {@code \s}
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,163 @@
+package com.simplecity.amp_library.utils;
+
+import android.support.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A compiled set of path rules (e.g. blacklisted or whitelisted folders), used to check whether a path contains any of the rules, ignoring case.
+ * <p>
+ * Equivalent to calling {@link StringUtils#containsIgnoreCase(String, String)} against every rule, but the rules are case-folded once into a
+ * trie (with Aho-Corasick failure links), so each path is matched in a single walk, without allocating.
+ * <p>
+ * Immutable once built, so it can be shared between threads.
+ */
+public final class PathRuleIndex {
+
+    private static final class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /**
+         * Child keys, in ascending order, and the children they lead to. Parallel arrays rather than a map, so lookups don't box.
+         */
+        char[] keys = NO_KEYS;
+
+        Node[] children = NO_CHILDREN;
+
+        Node fail;
+
+        /**
+         * True if a rule ends at this node, or at any node reachable via its failure links.
+         */
+        boolean terminal;
+
+        @Nullable
+        Node get(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+
+        Node getOrAdd(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -(index + 1);
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            Node child = new Node();
+            newKeys[index] = c;
+            newChildren[index] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+
+    private final int size;
+
+    private final boolean matchesAll;
+
+    public PathRuleIndex(Collection<String> rules) {
+        boolean matchesAll = false;
+        for (String rule : rules) {
+            if (rule == null) {
+                continue;
+            }
+            if (rule.isEmpty()) {
+                // Every path contains the empty string
+                matchesAll = true;
+            }
+            insert(rule);
+        }
+        this.size = rules.size();
+        this.matchesAll = matchesAll;
+        buildFailureLinks();
+    }
+
+    /**
+     * @return the number of rules this index was built from
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true if the path contains any of the rules, ignoring case
+     */
+    public boolean matches(@Nullable String path) {
+        if (path == null) {
+            return false;
+        }
+        if (matchesAll) {
+            return true;
+        }
+        Node node = root;
+        for (int i = 0, length = path.length(); i < length; i++) {
+            char c = fold(path.charAt(i));
+            Node next = node.get(c);
+            while (next == null && node != root) {
+                node = node.fail;
+                next = node.get(c);
+            }
+            node = next != null ? next : root;
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(String rule) {
+        Node node = root;
+        for (int i = 0, length = rule.length(); i < length; i++) {
+            node = node.getOrAdd(fold(rule.charAt(i)));
+        }
+        node.terminal = true;
+    }
+
+    private void buildFailureLinks() {
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        for (Node child : root.children) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (int i = 0; i < node.keys.length; i++) {
+                char c = node.keys[i];
+                Node child = node.children[i];
+
+                Node fail = node.fail;
+                Node target = fail.get(c);
+                while (target == null && fail != root) {
+                    fail = fail.fail;
+                    target = fail.get(c);
+                }
+                child.fail = target != null && target != child ? target : root;
+                child.terminal |= child.fail.terminal;
+
+                queue.add(child);
+            }
+        }
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+}
@@ -0,0 +1,84 @@
+package com.simplecity.amp_library.utils;
+
+import android.support.annotation.NonNull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams a byte range of a file using positional {@link FileChannel} reads.
+ * <p>
+ * Each stream has its own channel and never seeks, so any number of streams over the same file can be read concurrently.
+ */
+public final class RangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    /**
+     * Reused by {@link #read()}, so reading a single byte doesn't allocate.
+     */
+    private final ByteBuffer singleByte = ByteBuffer.allocate(1);
+
+    private long position;
+
+    private final long end;
+
+    /**
+     * @param start the offset of the first byte to read
+     * @param length the number of bytes to read
+     */
+    public RangeInputStream(@NonNull File file, long start, long length) throws IOException {
+        channel = new FileInputStream(file).getChannel();
+        position = start;
+        end = start + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= end) {
+            return -1;
+        }
+        singleByte.clear();
+        if (channel.read(singleByte, position) <= 0) {
+            return -1;
+        }
+        position++;
+        return singleByte.get(0) & 0xFF;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
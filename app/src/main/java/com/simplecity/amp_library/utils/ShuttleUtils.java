@@ -24,17 +24,18 @@ import android.provider.Settings;
 import android.support.annotation.NonNull;
 import android.util.Log;
 import android.widget.Toast;
-import com.annimon.stream.Stream;
 import com.simplecity.amp_library.BuildConfig;
 import com.simplecity.amp_library.R;
 import com.simplecity.amp_library.ShuttleApplication;
 import com.simplecity.amp_library.constants.Config;
 import com.simplecity.amp_library.data.Repository;
+import com.simplecity.amp_library.interfaces.FileType;
 import com.simplecity.amp_library.model.BaseFileObject;
 import com.simplecity.amp_library.model.Query;
 import com.simplecity.amp_library.model.Song;
 import com.simplecity.amp_library.sql.SqlUtils;
 import com.simplecity.amp_library.sql.providers.PlayCountTable;
+import com.simplecity.amp_library.utils.library.SongPathIndex;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
@@ -164,19 +165,28 @@ public final class ShuttleUtils {
         return context.getResources().getBoolean(R.bool.isTablet);
     }
 
+    /**
+     * @return the songs for the given files, and for the given folders and all of their sub-folders, resolved against a single
+     * {@link SongPathIndex}
+     */
     public static Single<List<Song>> getSongsForFileObjects(Repository.SongsRepository songsRepository, List<BaseFileObject> fileObjects) {
-
-        List<Single<List<Song>>> observables = Stream.of(fileObjects)
-                .map(fileObject -> FileHelper.getSongList(songsRepository, new File(fileObject.path), true, false))
-                .toList();
-
-        return Single.concat(observables)
-                .reduce((songs, songs2) -> {
-                    List<Song> allSongs = new ArrayList<>();
-                    allSongs.addAll(songs);
-                    allSongs.addAll(songs2);
-                    return allSongs;
-                }).toSingle();
+        return songsRepository.getSongPathIndex()
+                .first(SongPathIndex.EMPTY)
+                .map(songPathIndex -> {
+                    List<Song> songs = new ArrayList<>();
+                    for (BaseFileObject fileObject : fileObjects) {
+                        String path = FileHelper.getPath(new File(fileObject.path));
+                        if (fileObject.fileType == FileType.FILE) {
+                            Song song = songPathIndex.getSong(path);
+                            if (song != null) {
+                                songs.add(song);
+                            }
+                        } else {
+                            songs.addAll(songPathIndex.getSongs(path, true));
+                        }
+                    }
+                    return songs;
+                });
     }
 
     public static void incrementPlayCount(Context context, Song song) {
@@ -7,7 +7,6 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.simplecity.amp_library.R;
 import java.text.Normalizer;
-import java.util.Arrays;
 import java.util.Formatter;
 import java.util.Locale;
 import java.util.regex.Pattern;
@@ -214,20 +213,7 @@ public class StringUtils {
             return 0;
         }
 
-        String[] split = first.split("\\s");
-        if (split.length > 1) {
-            double score = 0;
-            for (String str : split) {
-                double curScore = getJaroWinklerSimilarity(str, second);
-                if (curScore > score) {
-                    score = curScore;
-                }
-            }
-            //Make sure we do a normal (non-adjusted) test as well, in case that comes out as our best match.
-            return Math.max(getJaroWinklerSimilarity(first, second), score);
-        } else {
-            return getJaroWinklerSimilarity(first, second);
-        }
+        return JaroWinklerScorer.get().getAdjustedSimilarity(normalizeForSimilarity(first), normalizeForSimilarity(second));
     }
 
     /**
@@ -246,98 +232,22 @@ public class StringUtils {
      */
     public static double getJaroWinklerSimilarity(@NonNull String first, @NonNull String second) {
 
-        final double DEFAULT_SCALING_FACTOR = 0.1;
-
-        first = first.toLowerCase();
-        second = second.toLowerCase();
-        first = Normalizer.normalize(first, Normalizer.Form.NFD);
-        second = Normalizer.normalize(second, Normalizer.Form.NFD);
-
-        final int[] mtp = matches(first, second);
-        final double m = mtp[0];
-        if (m == 0) {
-            return 0D;
-        }
-        final double j = (m / first.length() + m / second.length() + (m - mtp[1]) / m) / 3;
-        final double jw = j < 0.7D ? j : j + Math.min(DEFAULT_SCALING_FACTOR, 1D / mtp[3]) * mtp[2] * (1D - j);
-        return Math.round(jw * 100.0D) / 100.0D;
-    }
-
-    private static int[] matches(final CharSequence first, final CharSequence second) {
-        CharSequence max = first.length() > second.length() ? first : second;
-        CharSequence min = first.length() > second.length() ? second : first;
-
-        final int range = Math.max(max.length() / 2 - 1, 0);
-        final int[] matchIndexes = new int[min.length()];
-        Arrays.fill(matchIndexes, -1);
-        final boolean[] matchFlags = new boolean[max.length()];
-
-        int matches = 0;
-        for (int mi = 0; mi < min.length(); mi++) {
-            final char c1 = min.charAt(mi);
-            int start = Math.max(mi - range, 0);
-            int end = Math.min(mi + range + 1, max.length());
-            for (int xi = start; xi < end; xi++) {
-                if (!matchFlags[xi] && c1 == max.charAt(xi)) {
-                    matchIndexes[mi] = xi;
-                    matchFlags[xi] = true;
-                    matches++;
-                    break;
-                }
-            }
-        }
-
-        final char[] ms1 = extractMatches(min, matchIndexes, matches);
-        final char[] ms2 = extractMatchChars(max, matchFlags, matches);
-
-        int transpositions = countTranspositions(ms1, ms2);
-        int prefix = countPrefix(first, second);
-
-        return new int[]{matches, transpositions / 2, prefix, max.length()};
-    }
-
-    private static char[] extractMatches(CharSequence input, int[] matchIndexes, int matches) {
-        char[] result = new char[matches];
-        int index = 0;
-        for (int i = 0; i < matchIndexes.length; i++) {
-            if (matchIndexes[i] != -1) {
-                result[index++] = input.charAt(i);
-            }
-        }
-        return result;
-    }
-
-    private static char[] extractMatchChars(CharSequence input, boolean[] matchFlags, int matches) {
-        char[] result = new char[matches];
-        int index = 0;
-        for (int i = 0; i < matchFlags.length; i++) {
-            if (matchFlags[i]) {
-                result[index++] = input.charAt(i);
-            }
-        }
-        return result;
+        return getNormalizedJaroWinklerSimilarity(normalizeForSimilarity(first), normalizeForSimilarity(second));
     }
 
-    private static int countTranspositions(char[] ms1, char[] ms2) {
-        int transpositions = 0;
-        for (int i = 0; i < ms1.length; i++) {
-            if (ms1[i] != ms2[i]) {
-                transpositions++;
-            }
-        }
-        return transpositions;
+    /**
+     * Lower-cases and NFD-normalizes the given String, as required by {@link #getNormalizedJaroWinklerSimilarity(String, String)}.
+     */
+    @NonNull
+    public static String normalizeForSimilarity(@NonNull String str) {
+        return Normalizer.normalize(str.toLowerCase(), Normalizer.Form.NFD);
     }
 
-    private static int countPrefix(CharSequence first, CharSequence second) {
-        int prefix = 0;
-        int maxPrefix = Math.min(first.length(), second.length());
-        for (int i = 0; i < maxPrefix; i++) {
-            if (first.charAt(i) == second.charAt(i)) {
-                prefix++;
-            } else {
-                break;
-            }
-        }
-        return prefix;
+    /**
+     * Equivalent to {@link #getJaroWinklerSimilarity(String, String)}, but for Strings which have already been passed through
+     * {@link #normalizeForSimilarity(String)}. Use this when the same Strings are compared repeatedly.
+     */
+    public static double getNormalizedJaroWinklerSimilarity(@NonNull String first, @NonNull String second) {
+        return JaroWinklerScorer.get().getSimilarity(first, second);
     }
 }
\ No newline at end of file
@@ -3,25 +3,20 @@ package com.simplecity.amp_library.utils.extensions
 import com.simplecity.amp_library.data.Repository.SongsRepository
 import com.simplecity.amp_library.model.AlbumArtist
 import com.simplecity.amp_library.model.Song
-import com.simplecity.amp_library.utils.ComparisonUtils
+import com.simplecity.amp_library.utils.library.SongGroupIndex
 import io.reactivex.Single
-import java.util.Comparator
 
 fun AlbumArtist.getSongs(songsRepository: SongsRepository): Single<List<Song>> {
+    // Already sorted by album name, disc, track and year
     return songsRepository.getSongs(this)
         .first(emptyList())
-        .map { songs ->
-            songs.sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(b.year, a.year) })
-                .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.track, b.track) })
-                .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.discNumber, b.discNumber) })
-                .sortedWith(Comparator { a, b -> ComparisonUtils.compare(a.albumName, b.albumName) })
-        }
 }
 
 fun List<AlbumArtist>.getSongs(songsRepository: SongsRepository): Single<List<Song>> {
-    return Single.concat(
-        map { albumArtist -> albumArtist.getSongsSingle(songsRepository) })
-        .reduce(emptyList()) { a, b -> a + b }
+    // Each album artist is looked up in the same snapshot of the index, and the (pre-sorted) results are appended in a single pass
+    return songsRepository.getSongGroupIndex()
+        .first(SongGroupIndex.EMPTY)
+        .map { groupIndex -> flatMap { albumArtist -> groupIndex.getSongs(albumArtist) } }
 }
 
 fun Single<List<AlbumArtist>>.getSongs(songsRepository: SongsRepository): Single<List<Song>> {
@@ -4,25 +4,20 @@ import com.simplecity.amp_library.data.Repository
 import com.simplecity.amp_library.data.Repository.SongsRepository
 import com.simplecity.amp_library.model.Album
 import com.simplecity.amp_library.model.Song
-import com.simplecity.amp_library.utils.ComparisonUtils
+import com.simplecity.amp_library.utils.library.SongGroupIndex
 import io.reactivex.Single
 
 fun Album.getSongsSingle(songsRepository: Repository.SongsRepository): Single<List<Song>> {
+    // Already sorted by disc, track and year
     return songsRepository.getSongs(this)
         .first(emptyList())
-        .map { songs ->
-            songs
-                .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(b.year, a.year) })
-                .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.track, b.track) })
-                .sortedWith(Comparator { a, b -> ComparisonUtils.compareInt(a.discNumber, b.discNumber) })
-        }
 }
 
 fun List<Album>.getSongs(songsRepository: SongsRepository): Single<List<Song>> {
-    return Single.concat(
-        map { album -> album.getSongsSingle(songsRepository) })
-        .reduce(emptyList()) { a, b -> a + b }
-
+    // Each album is looked up in the same snapshot of the index, and the (pre-sorted) results are appended in a single pass
+    return songsRepository.getSongGroupIndex()
+        .first(SongGroupIndex.EMPTY)
+        .map { groupIndex -> flatMap { album -> groupIndex.getSongs(album) } }
 }
 
 fun Single<List<Album>>.getSongsSingle(songsRepository: SongsRepository): Single<List<Song>> {
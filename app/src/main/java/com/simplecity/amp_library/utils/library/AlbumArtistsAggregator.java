@@ -0,0 +1,101 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.model.Album;
+import com.simplecity.amp_library.model.AlbumArtist;
+import com.simplecity.amp_library.utils.Operators;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the list of {@link AlbumArtist}s for a continuous stream of album lists.
+ * <p>
+ * Albums are matched by id, and are only considered unchanged if the very same {@link Album} instance is present in both lists (as
+ * produced by {@link AlbumsAggregator}). Only album artists owning an added, changed or removed album are rebuilt.
+ * <p>
+ * Album artists are listed in order of first appearance. Patched album artists keep their place, and new ones are added at the end.
+ */
+public final class AlbumArtistsAggregator {
+
+    private final LinkedHashMap<String, AlbumArtist> albumArtistsByName = new LinkedHashMap<>();
+
+    @Nullable
+    private HashMap<Long, Album> previousAlbums;
+
+    @NonNull
+    public synchronized List<AlbumArtist> apply(@NonNull List<Album> albums) {
+
+        HashMap<Long, Album> currentAlbums = new HashMap<>(albums.size() * 2);
+        for (Album album : albums) {
+            currentAlbums.put(album.id, album);
+        }
+
+        if (previousAlbums == null) {
+            rebuild(albums);
+        } else {
+            patch(albums, previousAlbums, currentAlbums);
+        }
+
+        previousAlbums = currentAlbums;
+
+        return new ArrayList<>(albumArtistsByName.values());
+    }
+
+    private void rebuild(List<Album> albums) {
+        albumArtistsByName.clear();
+
+        for (AlbumArtist albumArtist : Operators.albumsToAlbumArtists(albums)) {
+            albumArtistsByName.put(albumArtist.name, albumArtist);
+        }
+    }
+
+    private void patch(List<Album> albums, HashMap<Long, Album> previousAlbums, HashMap<Long, Album> currentAlbums) {
+
+        Set<String> affectedNames = new HashSet<>();
+
+        for (Album previousAlbum : previousAlbums.values()) {
+            if (currentAlbums.get(previousAlbum.id) != previousAlbum) {
+                affectedNames.add(previousAlbum.albumArtistName);
+            }
+        }
+
+        for (Album album : currentAlbums.values()) {
+            if (previousAlbums.get(album.id) != album) {
+                affectedNames.add(album.albumArtistName);
+            }
+        }
+
+        if (affectedNames.isEmpty()) {
+            return;
+        }
+
+        // Collect the affected album artists' albums from the new list, so they're in the same order as a rebuild would put them
+        LinkedHashMap<String, List<Album>> albumsByArtistName = new LinkedHashMap<>();
+        for (Album album : albums) {
+            if (affectedNames.contains(album.albumArtistName)) {
+                List<Album> artistAlbums = albumsByArtistName.get(album.albumArtistName);
+                if (artistAlbums == null) {
+                    artistAlbums = new ArrayList<>();
+                    albumsByArtistName.put(album.albumArtistName, artistAlbums);
+                }
+                artistAlbums.add(album);
+            }
+        }
+
+        // New album artists are added in the order they appear in the new list
+        for (Map.Entry<String, List<Album>> entry : albumsByArtistName.entrySet()) {
+            albumArtistsByName.put(entry.getKey(), new AlbumArtist(entry.getKey(), entry.getValue()));
+        }
+        for (String name : affectedNames) {
+            if (!albumsByArtistName.containsKey(name)) {
+                albumArtistsByName.remove(name);
+            }
+        }
+    }
+}
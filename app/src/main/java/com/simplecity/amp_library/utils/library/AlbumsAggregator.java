@@ -0,0 +1,107 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.model.Album;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.LongLongMap;
+import com.simplecity.amp_library.utils.Operators;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the list of {@link Album}s for a continuous stream of song lists.
+ * <p>
+ * Rather than rebuilding every album on each emission, the new song list is diffed against the previous one (see {@link SongsDiff}),
+ * and only the albums containing inserted, updated or removed songs are rebuilt (from their songs in the new list's order, so a
+ * patched album is the same as a rebuilt one). All other {@link Album} instances are carried over as-is, which in turn lets
+ * {@link AlbumArtistsAggregator} patch only the affected album artists.
+ * <p>
+ * Albums are listed in order of first appearance, as a rebuild lists them. Patched albums keep their place, and new albums are added at
+ * the end, so repeated emissions have a stable order.
+ */
+public final class AlbumsAggregator {
+
+    /**
+     * If more than this fraction of the library has changed, a full rebuild is cheaper than patching.
+     */
+    private static final float FULL_REBUILD_THRESHOLD = 0.25f;
+
+    private final LinkedHashMap<Long, Album> albumsById = new LinkedHashMap<>();
+
+    @Nullable
+    private List<Song> previousSongs;
+
+    @NonNull
+    public synchronized List<Album> apply(@NonNull List<Song> songs) {
+
+        SongsDiff diff = SongsDiff.calculate(previousSongs, songs);
+        previousSongs = songs;
+
+        if (diff.isInitial || diff.size() > songs.size() * FULL_REBUILD_THRESHOLD) {
+            rebuild(songs);
+        } else if (!diff.isEmpty()) {
+            patch(diff);
+        }
+
+        return new ArrayList<>(albumsById.values());
+    }
+
+    private void rebuild(List<Song> songs) {
+        albumsById.clear();
+
+        for (Album album : Operators.songsToAlbums(songs)) {
+            albumsById.put(album.id, album);
+        }
+    }
+
+    private void patch(SongsDiff diff) {
+
+        LongLongMap affectedAlbumIds = new LongLongMap(diff.size() * 2);
+        addAlbumIds(diff.removed, affectedAlbumIds);
+        addAlbumIds(diff.replaced, affectedAlbumIds);
+        addAlbumIds(diff.inserted, affectedAlbumIds);
+        addAlbumIds(diff.updated, affectedAlbumIds);
+
+        // Collect the affected albums' songs from the new list, rather than patching their previous song lists, so they're in library
+        // order. Each album takes its name, year, etc. from its first song, so this keeps a patched album identical to a rebuilt one.
+        LinkedHashMap<Long, List<Song>> songsByAlbumId = new LinkedHashMap<>();
+        List<Song> songs = diff.songs;
+        for (int i = 0, size = songs.size(); i < size; i++) {
+            Song song = songs.get(i);
+            if (affectedAlbumIds.containsKey(song.albumId)) {
+                List<Song> albumSongs = songsByAlbumId.get(song.albumId);
+                if (albumSongs == null) {
+                    albumSongs = new ArrayList<>();
+                    songsByAlbumId.put(song.albumId, albumSongs);
+                }
+                albumSongs.add(song);
+            }
+        }
+
+        // Albums whose songs have all been removed (or moved to another album) are dropped
+        removeAlbums(diff.removed, songsByAlbumId);
+        removeAlbums(diff.replaced, songsByAlbumId);
+
+        for (List<Song> albumSongs : songsByAlbumId.values()) {
+            Album album = Operators.songsToAlbums(albumSongs).get(0);
+            albumsById.put(album.id, album);
+        }
+    }
+
+    private static void addAlbumIds(List<Song> songs, LongLongMap albumIds) {
+        for (Song song : songs) {
+            albumIds.put(song.albumId, song.albumId);
+        }
+    }
+
+    private void removeAlbums(List<Song> songs, Map<Long, List<Song>> remainingSongsByAlbumId) {
+        for (Song song : songs) {
+            if (!remainingSongsByAlbumId.containsKey(song.albumId)) {
+                albumsById.remove(song.albumId);
+            }
+        }
+    }
+}
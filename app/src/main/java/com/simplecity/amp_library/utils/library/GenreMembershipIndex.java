@@ -0,0 +1,200 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+import com.simplecity.amp_library.model.Query;
+import com.simplecity.amp_library.model.Song;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the song ids belonging to each genre, built from a single pass over MediaStore's genre map.
+ * <p>
+ * Genres are stored in ascending id order, each with a sorted run of song ids, so looking up a genre's members (or just how many there
+ * are) is a binary search, rather than a MediaStore query. Members are resolved against the in-memory song list, rather than mapped from
+ * a cursor.
+ * <p>
+ * Immutable once built, so it can be shared between threads.
+ */
+public final class GenreMembershipIndex {
+
+    public static final GenreMembershipIndex EMPTY = new Builder().build();
+
+    /**
+     * Every genre's members, along with the id of the genre they belong to.
+     */
+    private static final Uri ALL_MEMBERS_URI = MediaStore.Audio.Genres.EXTERNAL_CONTENT_URI.buildUpon()
+            .appendPath("all")
+            .appendPath("members")
+            .build();
+
+    /**
+     * Distinct genre ids, in ascending order.
+     */
+    private final long[] genreIds;
+
+    /**
+     * The members of genreIds[i] are songIds[offsets[i]] to songIds[offsets[i + 1]].
+     */
+    private final int[] offsets;
+
+    /**
+     * Distinct song ids, in ascending order within each genre.
+     */
+    private final long[] songIds;
+
+    private GenreMembershipIndex(long[] genreIds, int[] offsets, long[] songIds) {
+        this.genreIds = genreIds;
+        this.offsets = offsets;
+        this.songIds = songIds;
+    }
+
+    /**
+     * @return a query for the (genre id, song id) pairs of every genre
+     */
+    @NonNull
+    public static Query getQuery() {
+        return new Query.Builder()
+                .uri(ALL_MEMBERS_URI)
+                .projection(new String[] { MediaStore.Audio.Genres.Members.GENRE_ID, MediaStore.Audio.Genres.Members.AUDIO_ID })
+                .selection(null)
+                .args(null)
+                .sort(null)
+                .build();
+    }
+
+    /**
+     * Builds an index from a cursor over {@link #getQuery()}.
+     */
+    @NonNull
+    public static GenreMembershipIndex fromCursor(@NonNull Cursor cursor) {
+        Builder builder = new Builder();
+        int genreIdColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Genres.Members.GENRE_ID);
+        int songIdColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Genres.Members.AUDIO_ID);
+        while (cursor.moveToNext()) {
+            builder.add(cursor.getLong(genreIdColumn), cursor.getLong(songIdColumn));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the number of songs in the genre
+     */
+    public int getCount(long genreId) {
+        int index = Arrays.binarySearch(genreIds, genreId);
+        return index < 0 ? 0 : offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @return the ids of the songs in the genre, in ascending order
+     */
+    @NonNull
+    public long[] getSongIds(long genreId) {
+        int index = Arrays.binarySearch(genreIds, genreId);
+        return index < 0 ? new long[0] : Arrays.copyOfRange(songIds, offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * @param songs the songs to resolve members against. Members which aren't in the list (because they're excluded, for example) are
+     * left out. Lookups are cheapest against a {@link SongTable} or a {@link SongTable.View}.
+     * @return the songs in the genre, in ascending id order
+     */
+    @NonNull
+    public List<Song> getSongs(long genreId, @NonNull List<Song> songs) {
+        int index = Arrays.binarySearch(genreIds, genreId);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+
+        SongTable.View view = songs instanceof SongTable.View ? (SongTable.View) songs : null;
+        SongTable table = view != null ? view.getTable() : SongTable.of(songs);
+
+        List<Song> result = new ArrayList<>(offsets[index + 1] - offsets[index]);
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            Song song = view != null ? view.getById(songIds[i]) : table.getById(songIds[i]);
+            if (song != null) {
+                result.add(song);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of genres with at least one song
+     */
+    public int size() {
+        return genreIds.length;
+    }
+
+    /**
+     * Collects (genre id, song id) pairs, in any order, duplicates included.
+     */
+    public static final class Builder {
+
+        private long[] genreIds = new long[64];
+
+        private long[] songIds = new long[64];
+
+        private int size;
+
+        public void add(long genreId, long songId) {
+            if (size == genreIds.length) {
+                genreIds = Arrays.copyOf(genreIds, size * 2);
+                songIds = Arrays.copyOf(songIds, size * 2);
+            }
+            genreIds[size] = genreId;
+            songIds[size] = songId;
+            size++;
+        }
+
+        @NonNull
+        public GenreMembershipIndex build() {
+            // Distinct genre ids
+            long[] distinctGenreIds = Arrays.copyOf(genreIds, size);
+            Arrays.sort(distinctGenreIds);
+            int genreCount = 0;
+            for (int i = 0; i < distinctGenreIds.length; i++) {
+                if (genreCount == 0 || distinctGenreIds[genreCount - 1] != distinctGenreIds[i]) {
+                    distinctGenreIds[genreCount++] = distinctGenreIds[i];
+                }
+            }
+            distinctGenreIds = Arrays.copyOf(distinctGenreIds, genreCount);
+
+            // Bucket the songs by genre (a counting sort), then sort each bucket
+            int[] genreIndexes = new int[size];
+            int[] offsets = new int[genreCount + 1];
+            for (int i = 0; i < size; i++) {
+                genreIndexes[i] = Arrays.binarySearch(distinctGenreIds, genreIds[i]);
+                offsets[genreIndexes[i] + 1]++;
+            }
+            for (int i = 0; i < genreCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            long[] bucketed = new long[size];
+            int[] next = Arrays.copyOf(offsets, genreCount);
+            for (int i = 0; i < size; i++) {
+                bucketed[next[genreIndexes[i]]++] = songIds[i];
+            }
+
+            // Drop duplicate members, compacting the buckets as we go
+            int[] compactedOffsets = new int[genreCount + 1];
+            int compactedSize = 0;
+            for (int i = 0; i < genreCount; i++) {
+                Arrays.sort(bucketed, offsets[i], offsets[i + 1]);
+                int bucketStart = compactedSize;
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    if (compactedSize == bucketStart || bucketed[compactedSize - 1] != bucketed[j]) {
+                        bucketed[compactedSize++] = bucketed[j];
+                    }
+                }
+                compactedOffsets[i + 1] = compactedSize;
+            }
+
+            return new GenreMembershipIndex(distinctGenreIds, compactedOffsets, Arrays.copyOf(bucketed, compactedSize));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+import com.simplecity.amp_library.model.Song;
+import io.reactivex.functions.Function;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps a {@link Song#getQuery()} cursor to a list of songs, reusing the {@link Song} from the previous emission for every row whose
+ * {@code _ID}, {@code DATE_MODIFIED} and {@code BOOKMARK} are unchanged.
+ * <p>
+ * {@code DATE_MODIFIED} covers everything read from the file's tags. {@code BOOKMARK} is compared as well, because it's written straight
+ * to MediaStore (see {@code PlaybackManager#saveBookmarkIfNeeded}) without the file being touched.
+ * <p>
+ * Only new or modified rows go through {@link Song#Song(Cursor)} (and its sort key & artwork key computation), so a MediaStore change
+ * notification caused by scanning a single file no longer rebuilds the whole library. The resulting lists can be compared cheaply via
+ * {@link SongsDiff}.
+ * <p>
+ * The strings of new or modified rows are deduplicated via a {@link StringPool}, and the songs are emitted as a {@link SongTable}. The
+ * pool is seeded with the strings of the rows carried over from the previous query, so a song added to an existing album shares that
+ * album's strings. The pool only lives for a single query, so it doesn't keep the strings of deleted songs reachable. On the first
+ * query, every row is new, so the whole library is deduplicated.
+ * <p>
+ * Stateful: use one instance per query subscription.
+ */
+public final class IncrementalSongMapper implements Function<Cursor, List<Song>> {
+
+    private SongTable previousSongs = SongTable.EMPTY;
+
+    /**
+     * Seeds the mapper with a known song list (for example, one restored from disk), so that the first query can reuse its instances.
+     */
+    public synchronized void seed(@NonNull List<Song> songs) {
+        previousSongs = SongTable.of(songs);
+    }
+
+    @Override
+    public synchronized List<Song> apply(Cursor cursor) {
+
+        int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media._ID);
+        int dateModifiedColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DATE_MODIFIED);
+        int bookmarkColumn = cursor.getColumnIndex(MediaStore.Audio.Media.BOOKMARK);
+
+        List<Song> songs = new ArrayList<>(cursor.getCount());
+        boolean[] isNew = new boolean[cursor.getCount()];
+        int newCount = 0;
+
+        while (cursor.moveToNext()) {
+            Song song = null;
+
+            if (dateModifiedColumn != -1 && bookmarkColumn != -1) {
+                Song previousSong = previousSongs.getById(cursor.getLong(idColumn));
+                if (previousSong != null
+                        && previousSong.dateModified == cursor.getLong(dateModifiedColumn)
+                        && previousSong.bookMark == cursor.getLong(bookmarkColumn)) {
+                    song = previousSong;
+                }
+            }
+
+            if (song == null) {
+                song = new Song(cursor);
+                isNew[songs.size()] = true;
+                newCount++;
+            }
+
+            songs.add(song);
+        }
+
+        if (newCount != 0) {
+            StringPool stringPool = new StringPool();
+            // Seed the pool with the strings of the retained songs first, so new songs share their instances rather than adding copies
+            if (newCount != songs.size()) {
+                for (int i = 0; i < songs.size(); i++) {
+                    if (!isNew[i]) {
+                        seed(songs.get(i), stringPool);
+                    }
+                }
+            }
+            for (int i = 0; i < songs.size(); i++) {
+                if (isNew[i]) {
+                    intern(songs.get(i), stringPool);
+                }
+            }
+        }
+
+        previousSongs = SongTable.of(songs);
+
+        return previousSongs;
+    }
+
+    private static void seed(Song song, StringPool stringPool) {
+        stringPool.intern(song.artistName);
+        stringPool.intern(song.albumName);
+        stringPool.intern(song.albumArtistName);
+        stringPool.intern(song.getArtworkKey());
+    }
+
+    private static void intern(Song song, StringPool stringPool) {
+        song.artistName = stringPool.intern(song.artistName);
+        song.albumName = stringPool.intern(song.albumName);
+        song.albumArtistName = stringPool.intern(song.albumArtistName);
+        song.setKeys(song.getSortKey(), stringPool.intern(song.getArtworkKey()));
+    }
+}
@@ -0,0 +1,263 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import com.simplecity.amp_library.model.Album;
+import com.simplecity.amp_library.model.AlbumArtist;
+import com.simplecity.amp_library.model.Artist;
+import com.simplecity.amp_library.model.Song;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Groups songs into {@link Album}s, and albums into {@link AlbumArtist}s.
+ * <p>
+ * Per-album stats are accumulated into mutable builders (which deduplicate artists and paths with hash sets, once there are enough of
+ * them to be worth hashing), and each {@link Album} is only materialised once, rather than building a throwaway album per song and
+ * merging it. Large song lists are split into contiguous partitions which are aggregated in parallel, then merged in order, so the
+ * result is the same as a single sequential pass: each album takes its name, year, etc. from its first song.
+ * <p>
+ * Thread safe.
+ */
+public final class LibraryAggregation {
+
+    /**
+     * Partitions smaller than this are aggregated sequentially. Below it, the cost of forking outweighs the gain.
+     */
+    private static final int PARTITION_SIZE = 4096;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    private LibraryAggregation() {
+
+    }
+
+    /**
+     * @return an album for each distinct album id, in order of first appearance
+     */
+    @NonNull
+    public static List<Album> songsToAlbums(@NonNull List<Song> songs) {
+        Map<Long, AlbumBuilder> builders;
+        if (songs.size() > PARTITION_SIZE && songs instanceof RandomAccess && pool.getParallelism() > 1) {
+            builders = pool.invoke(new AggregateTask(songs, 0, songs.size()));
+        } else {
+            builders = aggregate(songs, 0, songs.size());
+        }
+
+        List<Album> albums = new ArrayList<>(builders.size());
+        for (AlbumBuilder builder : builders.values()) {
+            albums.add(builder.build());
+        }
+        return albums;
+    }
+
+    /**
+     * @return an album artist for each distinct album artist name, in order of first appearance
+     */
+    @NonNull
+    public static List<AlbumArtist> albumsToAlbumArtists(@NonNull List<Album> albums) {
+        LinkedHashMap<String, List<Album>> albumsByName = new LinkedHashMap<>();
+        LinkedHashMap<String, HashSet<Album>> seenByName = new LinkedHashMap<>();
+
+        for (Album album : albums) {
+            List<Album> artistAlbums = albumsByName.get(album.albumArtistName);
+            HashSet<Album> seen = seenByName.get(album.albumArtistName);
+            if (artistAlbums == null) {
+                artistAlbums = new ArrayList<>();
+                seen = new HashSet<>();
+                albumsByName.put(album.albumArtistName, artistAlbums);
+                seenByName.put(album.albumArtistName, seen);
+            }
+            if (seen.add(album)) {
+                artistAlbums.add(album);
+            }
+        }
+
+        List<AlbumArtist> albumArtists = new ArrayList<>(albumsByName.size());
+        for (Map.Entry<String, List<Album>> entry : albumsByName.entrySet()) {
+            albumArtists.add(new AlbumArtist(entry.getKey(), entry.getValue()));
+        }
+        return albumArtists;
+    }
+
+    /**
+     * Aggregates songs[start, end) sequentially.
+     */
+    private static LinkedHashMap<Long, AlbumBuilder> aggregate(List<Song> songs, int start, int end) {
+        LinkedHashMap<Long, AlbumBuilder> builders = new LinkedHashMap<>();
+        AlbumBuilder builder = null;
+        for (int i = start; i < end; i++) {
+            Song song = songs.get(i);
+            // Songs from the same album tend to be adjacent, so avoid the lookup where we can
+            if (builder == null || builder.id != song.albumId) {
+                builder = builders.get(song.albumId);
+                if (builder == null) {
+                    builder = new AlbumBuilder(song);
+                    builders.put(song.albumId, builder);
+                    continue;
+                }
+            }
+            builder.add(song);
+        }
+        return builders;
+    }
+
+    /**
+     * Aggregates songs[start, end), splitting it in two (and aggregating each half in parallel) if it's large enough.
+     */
+    private static final class AggregateTask extends RecursiveTask<LinkedHashMap<Long, AlbumBuilder>> {
+
+        private final List<Song> songs;
+
+        private final int start;
+
+        private final int end;
+
+        AggregateTask(List<Song> songs, int start, int end) {
+            this.songs = songs;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected LinkedHashMap<Long, AlbumBuilder> compute() {
+            if (end - start <= PARTITION_SIZE) {
+                return aggregate(songs, start, end);
+            }
+
+            int middle = (start + end) >>> 1;
+            AggregateTask right = new AggregateTask(songs, middle, end);
+            right.fork();
+            LinkedHashMap<Long, AlbumBuilder> left = new AggregateTask(songs, start, middle).compute();
+
+            // The left partition precedes the right, so its builders take precedence
+            for (AlbumBuilder rightBuilder : right.join().values()) {
+                AlbumBuilder leftBuilder = left.get(rightBuilder.id);
+                if (leftBuilder == null) {
+                    left.put(rightBuilder.id, rightBuilder);
+                } else {
+                    leftBuilder.merge(rightBuilder);
+                }
+            }
+            return left;
+        }
+    }
+
+    /**
+     * The accumulated stats of one album. Fields which aren't aggregated are taken from the album's first song.
+     */
+    private static final class AlbumBuilder {
+
+        final long id;
+
+        final String name;
+
+        final String albumArtistName;
+
+        final int year;
+
+        final long lastPlayed;
+
+        final long dateAdded;
+
+        int numSongs = 1;
+
+        int numDiscs;
+
+        int songPlayCount;
+
+        final DistinctList<Artist> artists = new DistinctList<>();
+
+        final DistinctList<String> paths = new DistinctList<>();
+
+        /**
+         * The most recently added artist, so consecutive songs by the same artist don't each allocate an {@link Artist}.
+         */
+        private long lastArtistId;
+
+        private String lastArtistName;
+
+        AlbumBuilder(Song song) {
+            id = song.albumId;
+            name = song.albumName;
+            albumArtistName = song.albumArtistName;
+            year = song.year;
+            lastPlayed = Math.max(0, song.lastPlayed);
+            dateAdded = Math.max(0, song.dateAdded);
+            numDiscs = song.discNumber;
+            songPlayCount = song.playCount;
+            addArtist(song);
+            paths.add(song.path);
+        }
+
+        void add(Song song) {
+            numSongs++;
+            numDiscs = Math.max(numDiscs, song.discNumber);
+            songPlayCount += song.playCount;
+            addArtist(song);
+            paths.add(song.path);
+        }
+
+        /**
+         * Adds the stats of a later partition's builder for the same album.
+         */
+        void merge(AlbumBuilder other) {
+            numSongs += other.numSongs;
+            numDiscs = Math.max(numDiscs, other.numDiscs);
+            songPlayCount += other.songPlayCount;
+            artists.addAll(other.artists);
+            paths.addAll(other.paths);
+        }
+
+        private void addArtist(Song song) {
+            if (!artists.items.isEmpty() && song.artistId == lastArtistId
+                    && (song.artistName == null ? lastArtistName == null : song.artistName.equals(lastArtistName))) {
+                return;
+            }
+            artists.add(new Artist(song.artistId, song.artistName));
+            lastArtistId = song.artistId;
+            lastArtistName = song.artistName;
+        }
+
+        Album build() {
+            return new Album(id, name, artists.items, albumArtistName, numSongs, numDiscs, year, lastPlayed, dateAdded, paths.items, songPlayCount);
+        }
+    }
+
+    /**
+     * A list which ignores values it already contains. Most albums only have a handful of artists and paths, so small lists are
+     * searched linearly, and only indexed with a hash set once they grow.
+     */
+    private static final class DistinctList<T> {
+
+        private static final int HASH_THRESHOLD = 8;
+
+        final ArrayList<T> items = new ArrayList<>(2);
+
+        private HashSet<T> index;
+
+        void add(T item) {
+            if (index != null) {
+                if (index.add(item)) {
+                    items.add(item);
+                }
+            } else if (!items.contains(item)) {
+                items.add(item);
+                if (items.size() > HASH_THRESHOLD) {
+                    index = new HashSet<>(items);
+                }
+            }
+        }
+
+        void addAll(DistinctList<T> other) {
+            for (int i = 0, size = other.items.size(); i < size; i++) {
+                add(other.items.get(i));
+            }
+        }
+    }
+}
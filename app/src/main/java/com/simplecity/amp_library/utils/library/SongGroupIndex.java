@@ -0,0 +1,187 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import com.simplecity.amp_library.model.Album;
+import com.simplecity.amp_library.model.AlbumArtist;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.sorting.SortSpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index of songs by album, and by album artist.
+ * <p>
+ * Songs are sorted once when the index is built, so that each album's (and each album artist's) songs form a contiguous, already sorted
+ * run. Looking up an album or an album artist is then a hash lookup and a copy of the run, rather than a scan over the whole library
+ * followed by a sort.
+ * <p>
+ * Songs are grouped the same way as {@link com.simplecity.amp_library.utils.Operators#songsToAlbums(List)} and
+ * {@link com.simplecity.amp_library.utils.Operators#albumsToAlbumArtists(List)}: by album id, and then by the album artist of the first
+ * song in each album.
+ * <p>
+ * Immutable once built, so it can be shared between threads.
+ */
+public final class SongGroupIndex {
+
+    /**
+     * Groups songs by album id. Within an album, songs are sorted by disc, then track, then by year (descending).
+     */
+    private static final SortSpec<Song> songsByAlbumSortSpec = new SortSpec.Builder<Song>()
+            .byLong(song -> song.albumId)
+            .byInt(song -> song.discNumber)
+            .byInt(song -> song.track)
+            .byIntDescending(song -> song.year)
+            .build();
+
+    /**
+     * Album artist songs are sorted by album name, disc, track, then by year (descending).
+     */
+    private static final SortSpec<Song> albumArtistSongsSortSpec = new SortSpec.Builder<Song>()
+            .byString(song -> song.albumName)
+            .byInt(song -> song.discNumber)
+            .byInt(song -> song.track)
+            .byIntDescending(song -> song.year)
+            .build();
+
+    // Declared after the sort specs it's built with
+    public static final SongGroupIndex EMPTY = new SongGroupIndex(Collections.emptyList());
+
+    /**
+     * The start (inclusive) and end (exclusive) of a group's run.
+     */
+    private static final class Group {
+
+        final int start;
+
+        final int end;
+
+        /**
+         * The number of albums in the group.
+         */
+        int numAlbums;
+
+        Group(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final List<Song> songsByAlbum;
+
+    private final List<Song> songsByAlbumArtist;
+
+    private final HashMap<Long, Group> albumGroups = new HashMap<>();
+
+    private final HashMap<String, Group> albumArtistGroups = new HashMap<>();
+
+    /**
+     * Album id -> the name of the album artist it's grouped under
+     */
+    private final HashMap<Long, String> albumArtistNames = new HashMap<>();
+
+    public SongGroupIndex(@NonNull List<Song> songs) {
+
+        // Each album belongs to the album artist of its first song, and each album artist is assigned an ordinal, to group on
+        HashMap<String, Integer> albumArtistOrdinals = new HashMap<>();
+        for (Song song : songs) {
+            if (!albumArtistNames.containsKey(song.albumId)) {
+                albumArtistNames.put(song.albumId, song.albumArtistName);
+                if (!albumArtistOrdinals.containsKey(song.albumArtistName)) {
+                    albumArtistOrdinals.put(song.albumArtistName, albumArtistOrdinals.size());
+                }
+            }
+        }
+
+        songsByAlbum = songsByAlbumSortSpec.sorted(songs);
+
+        songsByAlbumArtist = new SortSpec.Builder<Song>()
+                .byInt(song -> albumArtistOrdinals.get(albumArtistNames.get(song.albumId)))
+                .byString(song -> song.albumName)
+                .byInt(song -> song.discNumber)
+                .byInt(song -> song.track)
+                .byIntDescending(song -> song.year)
+                .build()
+                .sorted(songs);
+
+        for (int start = 0, end; start < songsByAlbum.size(); start = end) {
+            long albumId = songsByAlbum.get(start).albumId;
+            end = start + 1;
+            while (end < songsByAlbum.size() && songsByAlbum.get(end).albumId == albumId) {
+                end++;
+            }
+            albumGroups.put(albumId, new Group(start, end));
+        }
+
+        for (int start = 0, end; start < songsByAlbumArtist.size(); start = end) {
+            String name = albumArtistNames.get(songsByAlbumArtist.get(start).albumId);
+            end = start + 1;
+            while (end < songsByAlbumArtist.size() && sameName(name, albumArtistNames.get(songsByAlbumArtist.get(end).albumId))) {
+                end++;
+            }
+            albumArtistGroups.put(name, new Group(start, end));
+        }
+
+        for (String name : albumArtistNames.values()) {
+            albumArtistGroups.get(name).numAlbums++;
+        }
+    }
+
+    /**
+     * @return a new list of the songs in the given album, sorted by disc, track and year
+     */
+    @NonNull
+    public List<Song> getSongs(@NonNull Album album) {
+        Group group = albumGroups.get(album.id);
+        return group == null ? new ArrayList<>() : new ArrayList<>(songsByAlbum.subList(group.start, group.end));
+    }
+
+    /**
+     * @return a new list of the songs in the given album artist's albums, sorted by album name, disc, track and year
+     */
+    @NonNull
+    public List<Song> getSongs(@NonNull AlbumArtist albumArtist) {
+        Group group = albumArtistGroups.get(albumArtist.name);
+        if (group != null && isWholeGroup(albumArtist, group)) {
+            return new ArrayList<>(songsByAlbumArtist.subList(group.start, group.end));
+        }
+
+        // The album artist doesn't correspond to one of our groups (it may only hold some of the artist's albums), so put its songs
+        // together from its albums instead
+        List<Song> songs = new ArrayList<>();
+        for (Album album : albumArtist.albums) {
+            Group albumGroup = albumGroups.get(album.id);
+            if (albumGroup != null) {
+                songs.addAll(songsByAlbum.subList(albumGroup.start, albumGroup.end));
+            }
+        }
+        return albumArtistSongsSortSpec.sorted(songs);
+    }
+
+    /**
+     * @return the number of songs in the index
+     */
+    public int size() {
+        return songsByAlbum.size();
+    }
+
+    /**
+     * @return true if the album artist's albums are exactly those in the group
+     */
+    private boolean isWholeGroup(AlbumArtist albumArtist, Group group) {
+        if (albumArtist.albums.size() != group.numAlbums) {
+            return false;
+        }
+        for (Album album : albumArtist.albums) {
+            if (!albumArtistNames.containsKey(album.id) || !sameName(albumArtist.name, albumArtistNames.get(album.id))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameName(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,176 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.model.Song;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of songs by the directory they're in.
+ * <p>
+ * Songs are sorted by directory, so the songs in a directory form a contiguous run, and the songs in a directory and all of its
+ * subdirectories do too (every path in the subtree starts with the directory's path). Either is found with a pair of binary searches,
+ * so looking up a folder costs O(log n + result size), rather than a scan over the whole library.
+ * <p>
+ * Immutable once built, so it can be shared between threads.
+ */
+public final class SongPathIndex {
+
+    public static final SongPathIndex EMPTY = new SongPathIndex(Collections.emptyList());
+
+    private static final char SEPARATOR = '/';
+
+    /**
+     * The songs the index was built from.
+     */
+    private final List<Song> songs;
+
+    /**
+     * The directory of each indexed song, including the trailing separator, in ascending order.
+     */
+    private final String[] directories;
+
+    /**
+     * The position in {@link #songs} of the song in the corresponding directory. Ascending within each directory.
+     */
+    private final int[] positions;
+
+    private static final class Entry {
+
+        final String directory;
+
+        final int position;
+
+        Entry(String directory, int position) {
+            this.directory = directory;
+            this.position = position;
+        }
+    }
+
+    public SongPathIndex(@NonNull List<Song> songs) {
+        this.songs = songs;
+
+        List<Entry> entries = new ArrayList<>(songs.size());
+        // Songs in the same directory share a single directory string
+        Map<String, String> directoryPool = new HashMap<>();
+        for (int position = 0, size = songs.size(); position < size; position++) {
+            String path = songs.get(position).path;
+            int separator = path == null ? -1 : path.lastIndexOf(SEPARATOR);
+            if (separator == -1) {
+                continue;
+            }
+            String directory = path.substring(0, separator + 1);
+            String pooled = directoryPool.get(directory);
+            if (pooled == null) {
+                directoryPool.put(directory, directory);
+                pooled = directory;
+            }
+            entries.add(new Entry(pooled, position));
+        }
+
+        // The sort is stable, so positions remain in ascending order within each directory
+        Collections.sort(entries, (a, b) -> a.directory.compareTo(b.directory));
+
+        directories = new String[entries.size()];
+        positions = new int[entries.size()];
+        for (int i = 0; i < directories.length; i++) {
+            Entry entry = entries.get(i);
+            directories[i] = entry.directory;
+            positions[i] = entry.position;
+        }
+    }
+
+    /**
+     * @param folderPath the path of a folder
+     * @param recursive whether to include the songs in its subfolders
+     * @return the songs in the folder, in the order they appear in the indexed list
+     */
+    @NonNull
+    public List<Song> getSongs(@Nullable String folderPath, boolean recursive) {
+        if (folderPath == null || folderPath.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String directory = toDirectory(folderPath);
+
+        int start = lowerBound(directory);
+        int end;
+        if (recursive) {
+            // Every path in the subtree sorts before the directory with its trailing separator replaced by the next character
+            end = lowerBound(directory.substring(0, directory.length() - 1) + (char) (SEPARATOR + 1));
+        } else {
+            // Only the directory itself sorts before it with any character appended
+            end = lowerBound(directory + '\0');
+        }
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+
+        int[] subtreePositions = Arrays.copyOfRange(positions, start, end);
+        if (recursive) {
+            // Positions are only ordered within each directory
+            Arrays.sort(subtreePositions);
+        }
+        List<Song> result = new ArrayList<>(subtreePositions.length);
+        for (int position : subtreePositions) {
+            result.add(songs.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * @return the song with the given path, or null if there isn't one
+     */
+    @Nullable
+    public Song getSong(@Nullable String path) {
+        int separator = path == null ? -1 : path.lastIndexOf(SEPARATOR);
+        if (separator == -1) {
+            return null;
+        }
+        String directory = path.substring(0, separator + 1);
+        for (int i = lowerBound(directory); i < directories.length && directories[i].equals(directory); i++) {
+            Song song = songs.get(positions[i]);
+            if (path.equals(song.path)) {
+                return song;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of songs in the index
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    private static String toDirectory(String folderPath) {
+        int end = folderPath.length();
+        while (end > 1 && folderPath.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+        String directory = folderPath.substring(0, end);
+        return directory.charAt(directory.length() - 1) == SEPARATOR ? directory : directory + SEPARATOR;
+    }
+
+    /**
+     * @return the index of the first directory which isn't less than the given one
+     */
+    private int lowerBound(String directory) {
+        int low = 0;
+        int high = directories.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (directories[mid].compareTo(directory) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
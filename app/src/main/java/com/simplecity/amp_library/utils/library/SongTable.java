@@ -0,0 +1,162 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.LongLongMap;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable table of songs, with a primitive song id -> row index.
+ * <p>
+ * Filtered subsets of the table are represented as a {@link View} (an array of row indexes into the table), rather than as a second
+ * list of songs. Both the table and its views are read-only {@link List}s, so they can be handed to existing consumers as-is.
+ */
+public final class SongTable extends AbstractList<Song> implements RandomAccess {
+
+    public static final SongTable EMPTY = new SongTable(new Song[0]);
+
+    /**
+     * A filter applied to the rows of a table.
+     */
+    public interface Filter {
+
+        boolean test(@NonNull Song song);
+    }
+
+    private final Song[] songs;
+
+    private final LongLongMap rowsById;
+
+    private SongTable(Song[] songs) {
+        this.songs = songs;
+
+        rowsById = new LongLongMap(songs.length);
+        for (int row = 0; row < songs.length; row++) {
+            rowsById.put(songs[row].id, row);
+        }
+    }
+
+    /**
+     * @return a table containing the given songs. If the list is already a {@link SongTable}, it is returned as-is.
+     */
+    @NonNull
+    public static SongTable of(@NonNull List<Song> songs) {
+        if (songs instanceof SongTable) {
+            return (SongTable) songs;
+        }
+        if (songs.isEmpty()) {
+            return EMPTY;
+        }
+        return new SongTable(songs.toArray(new Song[songs.size()]));
+    }
+
+    /**
+     * Filters the given songs. If the list is a {@link SongTable} or a {@link View}, the result is a view over the same table, so no
+     * songs are copied.
+     */
+    @NonNull
+    public static View select(@NonNull List<Song> songs, @NonNull Filter filter) {
+        if (songs instanceof View) {
+            return ((View) songs).select(filter);
+        }
+        return of(songs).select(filter);
+    }
+
+    @Override
+    public Song get(int row) {
+        return songs[row];
+    }
+
+    @Override
+    public int size() {
+        return songs.length;
+    }
+
+    /**
+     * @return the row of the song with the given id, or -1 if there is no such song
+     */
+    public int rowOf(long id) {
+        return (int) rowsById.get(id, -1);
+    }
+
+    @Nullable
+    public Song getById(long id) {
+        int row = rowOf(id);
+        return row == -1 ? null : songs[row];
+    }
+
+    @NonNull
+    public View select(@NonNull Filter filter) {
+        int[] rows = new int[songs.length];
+        int size = 0;
+        for (int row = 0; row < songs.length; row++) {
+            if (filter.test(songs[row])) {
+                rows[size++] = row;
+            }
+        }
+        return new View(this, rows, size);
+    }
+
+    /**
+     * A read-only subset of a {@link SongTable}, backed by an array of row indexes.
+     */
+    public static final class View extends AbstractList<Song> implements RandomAccess {
+
+        private final SongTable table;
+
+        private final int[] rows;
+
+        private final int size;
+
+        View(SongTable table, int[] rows, int size) {
+            this.table = table;
+            this.rows = rows.length - size > 1024 ? Arrays.copyOf(rows, size) : rows;
+            this.size = size;
+        }
+
+        @NonNull
+        public SongTable getTable() {
+            return table;
+        }
+
+        @Override
+        public Song get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return table.songs[rows[index]];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return the song with the given id, or null if it isn't in this view
+         */
+        @Nullable
+        public Song getById(long id) {
+            int row = table.rowOf(id);
+            // Rows are selected in table order, so they're ascending
+            return row != -1 && Arrays.binarySearch(rows, 0, size, row) >= 0 ? table.songs[row] : null;
+        }
+
+        @NonNull
+        public View select(@NonNull Filter filter) {
+            int[] selectedRows = new int[size];
+            int selectedSize = 0;
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                if (filter.test(table.songs[row])) {
+                    selectedRows[selectedSize++] = row;
+                }
+            }
+            return new View(table, selectedRows, selectedSize);
+        }
+    }
+}
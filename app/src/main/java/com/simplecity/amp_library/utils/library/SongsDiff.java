@@ -0,0 +1,117 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.LongLongMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The difference between two successive emissions of a song list.
+ * <p>
+ * Songs are matched by id, and are only considered unchanged if the very same {@link Song} instance is present in both lists.
+ * {@link IncrementalSongMapper} reuses the previous instance for any row whose id, {@code DATE_MODIFIED} and {@code BOOKMARK}
+ * haven't changed, so lists derived from it can be diffed without comparing individual fields.
+ */
+public final class SongsDiff {
+
+    /**
+     * The complete, current song list.
+     */
+    @NonNull
+    public final List<Song> songs;
+
+    @NonNull
+    public final List<Song> inserted;
+
+    @NonNull
+    public final List<Song> updated;
+
+    /**
+     * The previous instances of the {@link #updated} songs, in the same order.
+     */
+    @NonNull
+    public final List<Song> replaced;
+
+    @NonNull
+    public final List<Song> removed;
+
+    /**
+     * True if there was no previous list to compare against. All songs are reported as {@link #inserted}.
+     */
+    public final boolean isInitial;
+
+    private SongsDiff(@NonNull List<Song> songs, @NonNull List<Song> inserted, @NonNull List<Song> updated, @NonNull List<Song> replaced, @NonNull List<Song> removed, boolean isInitial) {
+        this.songs = songs;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.replaced = replaced;
+        this.removed = removed;
+        this.isInitial = isInitial;
+    }
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * @return the total number of inserted, updated and removed songs
+     */
+    public int size() {
+        return inserted.size() + updated.size() + removed.size();
+    }
+
+    public static SongsDiff calculate(@Nullable List<Song> previous, @NonNull List<Song> current) {
+
+        if (previous == null) {
+            return new SongsDiff(current, current, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), true);
+        }
+
+        LongLongMap previousPositions = new LongLongMap(previous.size());
+        for (int i = 0, size = previous.size(); i < size; i++) {
+            previousPositions.put(previous.get(i).id, i);
+        }
+
+        boolean[] seen = new boolean[previous.size()];
+
+        List<Song> inserted = new ArrayList<>();
+        List<Song> updated = new ArrayList<>();
+        List<Song> replaced = new ArrayList<>();
+
+        for (int i = 0, size = current.size(); i < size; i++) {
+            Song song = current.get(i);
+            int position = (int) previousPositions.get(song.id, -1);
+            if (position == -1) {
+                inserted.add(song);
+            } else {
+                seen[position] = true;
+                Song previousSong = previous.get(position);
+                if (previousSong != song) {
+                    updated.add(song);
+                    replaced.add(previousSong);
+                }
+            }
+        }
+
+        List<Song> removed = new ArrayList<>();
+        for (int i = 0; i < seen.length; i++) {
+            if (!seen[i]) {
+                removed.add(previous.get(i));
+            }
+        }
+
+        return new SongsDiff(current, inserted, updated, replaced, removed, false);
+    }
+
+    @Override
+    public String toString() {
+        return "SongsDiff{" +
+                "inserted=" + inserted.size() +
+                ", updated=" + updated.size() +
+                ", removed=" + removed.size() +
+                ", isInitial=" + isInitial +
+                '}';
+    }
+}
@@ -0,0 +1,252 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+import com.simplecity.amp_library.BuildConfig;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.LogUtils;
+import io.reactivex.Maybe;
+import io.reactivex.schedulers.Schedulers;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A compact, on-disk copy of the last known song table, so the library can be displayed on a cold start before the MediaStore
+ * query has completed.
+ * <p>
+ * The snapshot is columnar: a deduplicated string table, followed by one column per {@link Song} field (strings are stored as indexes
+ * into the string table). It's memory-mapped when read, and the precomputed sort & artwork keys are restored along with the songs.
+ * <p>
+ * The snapshot is only a cache - MediaStore remains the source of truth, and is reconciled against the snapshot in the background
+ * (see {@link IncrementalSongMapper#seed(List)}).
+ * <p>
+ * Besides the tag fields covered by {@code DATE_MODIFIED}, the snapshot stores {@link Song#bookMark}, which MediaStore can change on its
+ * own. The mapper compares it when deciding whether to reuse a restored song, so a stale bookmark is replaced by a new instance, and
+ * since {@link #write(List)} compares songs by instance, that in turn causes the snapshot to be rewritten.
+ */
+public final class SongsSnapshot {
+
+    private static final String TAG = "SongsSnapshot";
+
+    private static final boolean ENABLE_LOGGING = false;
+
+    private static final int MAGIC = 0x53484e50; // "SHNP"
+
+    /**
+     * Must be incremented whenever the layout changes. Snapshots with a different version are ignored.
+     */
+    private static final int VERSION = 1;
+
+    private static final int NO_STRING = -1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    @Nullable
+    private List<Song> lastWritten;
+
+    public SongsSnapshot(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return a {@link Maybe} which emits the songs stored in the snapshot, or completes empty if there is no (valid) snapshot.
+     */
+    public Maybe<List<Song>> read() {
+        return Maybe.fromCallable(() -> {
+            if (!file.exists()) {
+                return null;
+            }
+            long time = System.currentTimeMillis();
+            List<Song> songs = readSnapshot();
+            if (ENABLE_LOGGING && BuildConfig.DEBUG) {
+                Log.d(TAG, String.format("Read %s songs from snapshot in %sms", songs != null ? songs.size() : 0, System.currentTimeMillis() - time));
+            }
+            lastWritten = songs;
+            return songs;
+        })
+                .doOnError(error -> LogUtils.logException(TAG, "Failed to read songs snapshot", error))
+                .onErrorComplete()
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Writes the songs to the snapshot, unless they're unchanged since the last read or write.
+     */
+    @WorkerThread
+    public synchronized void write(@NonNull List<Song> songs) {
+        if (lastWritten != null && SongsDiff.calculate(lastWritten, songs).isEmpty()) {
+            return;
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            long time = System.currentTimeMillis();
+            writeSnapshot(tempFile, songs);
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + file);
+            }
+            lastWritten = songs;
+            if (ENABLE_LOGGING && BuildConfig.DEBUG) {
+                Log.d(TAG, String.format("Wrote %s songs to snapshot in %sms", songs.size(), System.currentTimeMillis() - time));
+            }
+        } catch (IOException e) {
+            LogUtils.logException(TAG, "Failed to write songs snapshot", e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Deletes the snapshot.
+     */
+    @WorkerThread
+    public synchronized void clear() {
+        lastWritten = null;
+        file.delete();
+    }
+
+    private static void writeSnapshot(File file, List<Song> songs) throws IOException {
+
+        int count = songs.size();
+
+        // Build the string table, and the string column indexes
+        HashMap<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[][] stringColumns = new int[7][count];
+        for (int i = 0; i < count; i++) {
+            Song song = songs.get(i);
+            stringColumns[0][i] = indexOf(song.name, stringIndexes, strings);
+            stringColumns[1][i] = indexOf(song.artistName, stringIndexes, strings);
+            stringColumns[2][i] = indexOf(song.albumName, stringIndexes, strings);
+            stringColumns[3][i] = indexOf(song.albumArtistName, stringIndexes, strings);
+            stringColumns[4][i] = indexOf(song.path, stringIndexes, strings);
+            stringColumns[5][i] = indexOf(song.getSortKey(), stringIndexes, strings);
+            stringColumns[6][i] = indexOf(song.getArtworkKey(), stringIndexes, strings);
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(strings.size());
+
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            for (Song song : songs) out.writeLong(song.id);
+            for (Song song : songs) out.writeLong(song.artistId);
+            for (Song song : songs) out.writeLong(song.albumId);
+            for (Song song : songs) out.writeLong(song.duration);
+            for (Song song : songs) out.writeLong(song.dateModified);
+            for (Song song : songs) out.writeLong(song.bookMark);
+            for (Song song : songs) out.writeInt(song.year);
+            for (Song song : songs) out.writeInt(song.dateAdded);
+            for (Song song : songs) out.writeInt(song.track);
+            for (Song song : songs) out.writeInt(song.discNumber);
+
+            for (int[] column : stringColumns) {
+                for (int index : column) {
+                    out.writeInt(index);
+                }
+            }
+
+            for (Song song : songs) out.writeByte(song.isPodcast ? 1 : 0);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Nullable
+    private List<Song> readSnapshot() throws IOException {
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+
+            int count = buffer.getInt();
+            int stringCount = buffer.getInt();
+
+            String[] strings = new String[stringCount];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, UTF_8);
+            }
+
+            Song[] songs = new Song[count];
+            for (int i = 0; i < count; i++) songs[i] = new Song();
+
+            for (Song song : songs) song.id = buffer.getLong();
+            for (Song song : songs) song.artistId = buffer.getLong();
+            for (Song song : songs) song.albumId = buffer.getLong();
+            for (Song song : songs) song.duration = buffer.getLong();
+            for (Song song : songs) song.dateModified = buffer.getLong();
+            for (Song song : songs) song.bookMark = buffer.getLong();
+            for (Song song : songs) song.year = buffer.getInt();
+            for (Song song : songs) song.dateAdded = buffer.getInt();
+            for (Song song : songs) song.track = buffer.getInt();
+            for (Song song : songs) song.discNumber = buffer.getInt();
+
+            for (Song song : songs) song.name = stringAt(strings, buffer.getInt());
+            for (Song song : songs) song.artistName = stringAt(strings, buffer.getInt());
+            for (Song song : songs) song.albumName = stringAt(strings, buffer.getInt());
+            for (Song song : songs) song.albumArtistName = stringAt(strings, buffer.getInt());
+            for (Song song : songs) song.path = stringAt(strings, buffer.getInt());
+
+            int[] sortKeys = new int[count];
+            for (int i = 0; i < count; i++) sortKeys[i] = buffer.getInt();
+            for (int i = 0; i < count; i++) songs[i].setKeys(stringAt(strings, sortKeys[i]), stringAt(strings, buffer.getInt()));
+
+            for (Song song : songs) song.isPodcast = buffer.get() == 1;
+
+            return SongTable.of(Arrays.asList(songs));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static int indexOf(@Nullable String string, HashMap<String, Integer> stringIndexes, List<String> strings) {
+        if (string == null) {
+            return NO_STRING;
+        }
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndexes.put(string, index);
+        }
+        return index;
+    }
+
+    @Nullable
+    private static String stringAt(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+}
@@ -0,0 +1,39 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+
+/**
+ * Deduplicates equal strings, so that values repeated across many songs (artist, album and album-artist names, artwork keys) are
+ * only retained once.
+ * <p>
+ * Unlike {@link String#intern()}, the pool is scoped to its owner, so its strings can be garbage collected along with it. Not thread safe.
+ */
+public final class StringPool {
+
+    private final HashMap<String, String> strings = new HashMap<>();
+
+    /**
+     * @return a canonical instance equal to the given string
+     */
+    @Nullable
+    public String intern(@Nullable String string) {
+        if (string == null) {
+            return null;
+        }
+        String canonical = strings.get(string);
+        if (canonical == null) {
+            strings.put(string, string);
+            canonical = string;
+        }
+        return canonical;
+    }
+
+    public int size() {
+        return strings.size();
+    }
+
+    public void clear() {
+        strings.clear();
+    }
+}
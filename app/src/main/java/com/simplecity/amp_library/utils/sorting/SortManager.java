@@ -7,8 +7,6 @@ import com.simplecity.amp_library.model.Album;
 import com.simplecity.amp_library.model.AlbumArtist;
 import com.simplecity.amp_library.model.Playlist;
 import com.simplecity.amp_library.model.Song;
-import com.simplecity.amp_library.utils.ComparisonUtils;
-import java.util.Collections;
 import java.util.List;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -269,6 +267,80 @@ public class SortManager {
         String COUNT = "count";
     }
 
+    private static final SortSpec<Album> ALBUMS_DEFAULT = new SortSpec.Builder<Album>()
+            .byCollationKey(Album::getCollationKey)
+            .build();
+
+    private static final SortSpec<Album> ALBUMS_NAME = new SortSpec.Builder<Album>()
+            .byString(album -> album.name)
+            .build();
+
+    private static final SortSpec<Album> ALBUMS_YEAR = new SortSpec.Builder<Album>()
+            .byIntDescending(album -> album.year)
+            .build();
+
+    private static final SortSpec<Album> ALBUMS_ARTIST_NAME = new SortSpec.Builder<Album>()
+            .byString(album -> album.albumArtistName)
+            .build();
+
+    private static final SortSpec<Song> SONGS_DEFAULT = new SortSpec.Builder<Song>()
+            .byCollationKey(Song::getCollationKey)
+            .build();
+
+    private static final SortSpec<Song> SONGS_NAME = new SortSpec.Builder<Song>()
+            .byString(song -> song.name)
+            .build();
+
+    private static final SortSpec<Song> SONGS_TRACK_NUMBER = new SortSpec.Builder<Song>()
+            .byInt(song -> song.discNumber)
+            .byInt(song -> song.track)
+            .build();
+
+    private static final SortSpec<Song> SONGS_DURATION = new SortSpec.Builder<Song>()
+            .byLong(song -> song.duration)
+            .build();
+
+    private static final SortSpec<Song> SONGS_DATE = new SortSpec.Builder<Song>()
+            .byIntDescending(song -> song.dateAdded)
+            .build();
+
+    private static final SortSpec<Song> SONGS_YEAR = new SortSpec.Builder<Song>()
+            .byIntDescending(song -> song.year)
+            .byCollationKey(Song::getCollationKey)
+            .byString(song -> song.albumName)
+            .byString(song -> song.albumArtistName)
+            .build();
+
+    private static final SortSpec<Song> SONGS_ALBUM_NAME = new SortSpec.Builder<Song>()
+            .byString(song -> song.albumName)
+            .byInt(song -> song.discNumber)
+            .byInt(song -> song.track)
+            .byString(song -> song.albumArtistName)
+            .build();
+
+    private static final SortSpec<Song> SONGS_ARTIST_NAME = new SortSpec.Builder<Song>()
+            .byString(song -> song.albumArtistName)
+            .byInt(song -> song.discNumber)
+            .byInt(song -> song.track)
+            .byString(song -> song.albumName)
+            .build();
+
+    private static final SortSpec<Song> SONGS_DETAIL_DEFAULT = new SortSpec.Builder<Song>()
+            .byString(song -> song.albumName)
+            .byInt(song -> song.discNumber)
+            .byInt(song -> song.track)
+            .byIntDescending(song -> song.year)
+            .byString(song -> song.albumArtistName)
+            .build();
+
+    private static final SortSpec<AlbumArtist> ALBUM_ARTISTS_DEFAULT = new SortSpec.Builder<AlbumArtist>()
+            .byCollationKey(AlbumArtist::getCollationKey)
+            .build();
+
+    private static final SortSpec<AlbumArtist> ALBUM_ARTISTS_NAME = new SortSpec.Builder<AlbumArtist>()
+            .byString(albumArtist -> albumArtist.name)
+            .build();
+
     public void sortAlbums(List<Album> albums) {
         sortAlbums(albums, getAlbumsSortOrder());
     }
@@ -276,17 +348,16 @@ public class SortManager {
     public void sortAlbums(List<Album> albums, int key) {
         switch (key) {
             case AlbumSort.DEFAULT:
-                Collections.sort(albums, Album::compareTo);
+                ALBUMS_DEFAULT.sort(albums);
                 break;
             case AlbumSort.NAME:
-                Collections.sort(albums, (a, b) -> ComparisonUtils.compare(a.name, b.name));
-                Collections.sort(albums, (a, b) -> ComparisonUtils.compare(a.name, b.name));
+                ALBUMS_NAME.sort(albums);
                 break;
             case AlbumSort.YEAR:
-                Collections.sort(albums, (a, b) -> ComparisonUtils.compareInt(b.year, a.year));
+                ALBUMS_YEAR.sort(albums);
                 break;
             case AlbumSort.ARTIST_NAME:
-                Collections.sort(albums, (a, b) -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName));
+                ALBUMS_ARTIST_NAME.sort(albums);
                 break;
         }
     }
@@ -298,45 +369,31 @@ public class SortManager {
     public void sortSongs(List<Song> songs, @SongSort int key) {
         switch (key) {
             case SongSort.DEFAULT:
-                Collections.sort(songs, Song::compareTo);
+                SONGS_DEFAULT.sort(songs);
                 break;
             case SongSort.NAME:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.name, b.name));
+                SONGS_NAME.sort(songs);
                 break;
             case SongSort.TRACK_NUMBER:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.track, b.track));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.discNumber, b.discNumber));
+                SONGS_TRACK_NUMBER.sort(songs);
                 break;
             case SongSort.DURATION:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareLong(a.duration, b.duration));
+                SONGS_DURATION.sort(songs);
                 break;
             case SongSort.DATE:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(b.dateAdded, a.dateAdded));
+                SONGS_DATE.sort(songs);
                 break;
             case SongSort.YEAR:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumName, b.albumName));
-                Collections.sort(songs, Song::compareTo);
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(b.year, a.year));
+                SONGS_YEAR.sort(songs);
                 break;
             case SongSort.ALBUM_NAME:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.track, b.track));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.discNumber, b.discNumber));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumName, b.albumName));
+                SONGS_ALBUM_NAME.sort(songs);
                 break;
             case SongSort.ARTIST_NAME:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumName, b.albumName));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.track, b.track));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.discNumber, b.discNumber));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName));
+                SONGS_ARTIST_NAME.sort(songs);
                 break;
             case SongSort.DETAIL_DEFAULT:
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumArtistName, b.albumArtistName));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(b.year, a.year));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.track, b.track));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compareInt(a.discNumber, b.discNumber));
-                Collections.sort(songs, (a, b) -> ComparisonUtils.compare(a.albumName, b.albumName));
+                SONGS_DETAIL_DEFAULT.sort(songs);
                 break;
         }
     }
@@ -345,10 +402,10 @@ public class SortManager {
         int sortOrder = mPrefs.getInt(Key.ARTISTS, ArtistSort.DEFAULT);
         switch (sortOrder) {
             case ArtistSort.DEFAULT:
-                Collections.sort(albumArtists, AlbumArtist::compareTo);
+                ALBUM_ARTISTS_DEFAULT.sort(albumArtists);
                 break;
             case ArtistSort.NAME:
-                Collections.sort(albumArtists, (a, b) -> ComparisonUtils.compare(a.name, b.name));
+                ALBUM_ARTISTS_NAME.sort(albumArtists);
                 break;
         }
     }
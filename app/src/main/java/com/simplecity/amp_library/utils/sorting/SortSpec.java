@@ -0,0 +1,247 @@
+package com.simplecity.amp_library.utils.sorting;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.simplecity.amp_library.utils.ComparisonUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A multi-key sort order, applied in a single pass.
+ * <p>
+ * Replaces chains of consecutive stable sorts (where the <i>last</i> sort is the primary key) with one sort whose keys are listed in
+ * priority order. String keys are converted to collation keys once per distinct value before sorting (or taken from the entity's
+ * cached collation key, see {@link Builder#byCollationKey(CollationKeyKey)}), so each comparison is a plain byte-array comparison
+ * rather than a call to the {@link java.text.Collator}.
+ * <p>
+ * Specs are immutable, and can be shared and reused across threads.
+ */
+public final class SortSpec<T> {
+
+    public interface StringKey<T> {
+
+        @Nullable
+        String get(@NonNull T item);
+    }
+
+    public interface CollationKeyKey<T> {
+
+        @Nullable
+        byte[] get(@NonNull T item);
+    }
+
+    public interface IntKey<T> {
+
+        int get(@NonNull T item);
+    }
+
+    public interface LongKey<T> {
+
+        long get(@NonNull T item);
+    }
+
+    private static final int TYPE_STRING = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_COLLATION_KEY = 3;
+
+    private static final class Key {
+
+        final int type;
+        final Object extractor;
+        final boolean ascending;
+
+        Key(int type, Object extractor, boolean ascending) {
+            this.type = type;
+            this.extractor = extractor;
+            this.ascending = ascending;
+        }
+    }
+
+    private static final class Row<T> {
+
+        final T item;
+        final int index;
+
+        Row(T item, int index) {
+            this.item = item;
+            this.index = index;
+        }
+    }
+
+    private final Key[] keys;
+
+    private SortSpec(List<Key> keys) {
+        this.keys = keys.toArray(new Key[keys.size()]);
+    }
+
+    /**
+     * Sorts the given (mutable) list in place. The sort is stable.
+     */
+    public void sort(@NonNull List<T> items) {
+        List<T> sorted = sorted(items);
+        for (int i = 0, size = sorted.size(); i < size; i++) {
+            items.set(i, sorted.get(i));
+        }
+    }
+
+    /**
+     * @return a new list containing the given items, sorted. The sort is stable.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public List<T> sorted(@NonNull List<T> items) {
+
+        int size = items.size();
+        if (size < 2 || keys.length == 0) {
+            return new ArrayList<>(items);
+        }
+
+        // Extract every key up front, so the comparator only touches arrays
+        Object[] columns = new Object[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            columns[k] = extract(keys[k], items);
+        }
+
+        Row<T>[] rows = new Row[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = new Row<>(items.get(i), i);
+        }
+
+        Arrays.sort(rows, (Comparator<Row<T>>) (a, b) -> {
+            for (int k = 0; k < keys.length; k++) {
+                int result = compare(keys[k].type, columns[k], a.index, b.index);
+                if (result != 0) {
+                    return keys[k].ascending ? result : -result;
+                }
+            }
+            return 0;
+        });
+
+        List<T> sorted = new ArrayList<>(size);
+        for (Row<T> row : rows) {
+            sorted.add(row.item);
+        }
+        return sorted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Object extract(Key key, List<T> items) {
+        int size = items.size();
+        switch (key.type) {
+            case TYPE_STRING: {
+                StringKey<T> extractor = (StringKey<T>) key.extractor;
+                byte[][] column = new byte[size][];
+                // Names repeat heavily (album & artist names), so only compute one collation key per distinct value
+                HashMap<String, byte[]> cache = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String value = extractor.get(items.get(i));
+                    if (value != null) {
+                        byte[] collationKey = cache.get(value);
+                        if (collationKey == null) {
+                            collationKey = ComparisonUtils.getCollationKeyBytes(value);
+                            cache.put(value, collationKey);
+                        }
+                        column[i] = collationKey;
+                    }
+                }
+                return column;
+            }
+            case TYPE_COLLATION_KEY: {
+                CollationKeyKey<T> extractor = (CollationKeyKey<T>) key.extractor;
+                byte[][] column = new byte[size][];
+                for (int i = 0; i < size; i++) {
+                    column[i] = extractor.get(items.get(i));
+                }
+                return column;
+            }
+            case TYPE_INT: {
+                IntKey<T> extractor = (IntKey<T>) key.extractor;
+                int[] column = new int[size];
+                for (int i = 0; i < size; i++) {
+                    column[i] = extractor.get(items.get(i));
+                }
+                return column;
+            }
+            default: {
+                LongKey<T> extractor = (LongKey<T>) key.extractor;
+                long[] column = new long[size];
+                for (int i = 0; i < size; i++) {
+                    column[i] = extractor.get(items.get(i));
+                }
+                return column;
+            }
+        }
+    }
+
+    private static int compare(int type, Object column, int a, int b) {
+        switch (type) {
+            case TYPE_STRING:
+            case TYPE_COLLATION_KEY: {
+                byte[][] keys = (byte[][]) column;
+                return ComparisonUtils.compareCollationKeys(keys[a], keys[b]);
+            }
+            case TYPE_INT: {
+                int[] values = (int[]) column;
+                return ComparisonUtils.compareInt(values[a], values[b]);
+            }
+            default: {
+                long[] values = (long[]) column;
+                return ComparisonUtils.compareLong(values[a], values[b]);
+            }
+        }
+    }
+
+    /**
+     * Keys are added in priority order - the first key is the primary sort key.
+     */
+    public static final class Builder<T> {
+
+        private final List<Key> keys = new ArrayList<>();
+
+        public Builder<T> byString(StringKey<T> key) {
+            keys.add(new Key(TYPE_STRING, key, true));
+            return this;
+        }
+
+        public Builder<T> byStringDescending(StringKey<T> key) {
+            keys.add(new Key(TYPE_STRING, key, false));
+            return this;
+        }
+
+        /**
+         * Sorts by a precomputed collation key, such as {@link com.simplecity.amp_library.model.Song#getCollationKey()}.
+         */
+        public Builder<T> byCollationKey(CollationKeyKey<T> key) {
+            keys.add(new Key(TYPE_COLLATION_KEY, key, true));
+            return this;
+        }
+
+        public Builder<T> byInt(IntKey<T> key) {
+            keys.add(new Key(TYPE_INT, key, true));
+            return this;
+        }
+
+        public Builder<T> byIntDescending(IntKey<T> key) {
+            keys.add(new Key(TYPE_INT, key, false));
+            return this;
+        }
+
+        public Builder<T> byLong(LongKey<T> key) {
+            keys.add(new Key(TYPE_LONG, key, true));
+            return this;
+        }
+
+        public Builder<T> byLongDescending(LongKey<T> key) {
+            keys.add(new Key(TYPE_LONG, key, false));
+            return this;
+        }
+
+        public SortSpec<T> build() {
+            return new SortSpec<>(keys);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.simplecity.amp_library.http;
+
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void parsesClosedRange() {
+        assertRanges(ByteRange.parse("bytes=0-499", LENGTH), "0-499");
+        assertEquals(500, ByteRange.parse("bytes=0-499", LENGTH).get(0).length());
+    }
+
+    @Test
+    public void parsesOpenEndedRange() {
+        assertRanges(ByteRange.parse("bytes=500-", LENGTH), "500-999");
+    }
+
+    @Test
+    public void parsesSuffixRange() {
+        assertRanges(ByteRange.parse("bytes=-100", LENGTH), "900-999");
+        // Longer than the file: the whole file
+        assertRanges(ByteRange.parse("bytes=-5000", LENGTH), "0-999");
+        // Zero length: unsatisfiable
+        assertRanges(ByteRange.parse("bytes=-0", LENGTH));
+    }
+
+    @Test
+    public void clampsEndToFileLength() {
+        assertRanges(ByteRange.parse("bytes=900-2000", LENGTH), "900-999");
+    }
+
+    @Test
+    public void dropsRangesStartingBeyondFile() {
+        assertRanges(ByteRange.parse("bytes=1000-", LENGTH));
+        assertRanges(ByteRange.parse("bytes=1500-1600", LENGTH));
+        assertRanges(ByteRange.parse("bytes=0-9,1500-1600", LENGTH), "0-9");
+    }
+
+    @Test
+    public void sortsAndCoalescesMultipleRanges() {
+        assertRanges(ByteRange.parse("bytes=200-299, 0-99", LENGTH), "0-99", "200-299");
+        // Overlapping
+        assertRanges(ByteRange.parse("bytes=0-99,50-149", LENGTH), "0-149");
+        // Adjacent
+        assertRanges(ByteRange.parse("bytes=0-99,100-199", LENGTH), "0-199");
+        // Contained
+        assertRanges(ByteRange.parse("bytes=0-499,100-199,-10", LENGTH), "0-499", "990-999");
+    }
+
+    @Test
+    public void unitIsCaseInsensitive() {
+        assertRanges(ByteRange.parse(" Bytes=0-0 ", LENGTH), "0-0");
+    }
+
+    @Test
+    public void rejectsMalformedHeaders() {
+        assertNull(ByteRange.parse("", LENGTH));
+        assertNull(ByteRange.parse("items=0-99", LENGTH));
+        assertNull(ByteRange.parse("bytes=", LENGTH));
+        assertNull(ByteRange.parse("bytes=100", LENGTH));
+        assertNull(ByteRange.parse("bytes=-", LENGTH));
+        assertNull(ByteRange.parse("bytes=a-b", LENGTH));
+        assertNull(ByteRange.parse("bytes=200-100", LENGTH));
+        assertNull(ByteRange.parse("bytes=--100", LENGTH));
+        assertNull(ByteRange.parse("bytes=0-99,x", LENGTH));
+    }
+
+    private static void assertRanges(List<ByteRange> ranges, String... expected) {
+        assertTrue(ranges != null);
+        assertEquals(expected.length, ranges.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], ranges.get(i).toString());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.simplecity.amp_library.playback;
+
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.rx.UnsafeAction;
+import com.simplecity.amp_library.ui.screens.queue.QueueItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class QueueManagerTest {
+
+    private QueueManager queueManager;
+
+    /**
+     * Songs 0 - 5, in playlist order
+     */
+    private final List<QueueItem> items = new ArrayList<>();
+
+    private int stopCount;
+
+    private int moveToNextTrackCount;
+
+    private final UnsafeAction stop = () -> stopCount++;
+
+    private final UnsafeAction moveToNextTrack = () -> moveToNextTrackCount++;
+
+    @Before
+    public void setUp() {
+        // Nothing is saved, so the queue manager doesn't need a store or settings
+        queueManager = new QueueManager(new NoOpCallbacks(), null, null, null, null);
+        queueManager.queueIsSaveable = false;
+
+        for (int i = 0; i < 6; i++) {
+            Song song = new Song();
+            song.id = i;
+            items.add(new QueueItem(song));
+        }
+        queueManager.playlist.addAll(items);
+    }
+
+    @Test
+    public void removingCurrentItemMovesToFollowingItem() {
+        queueManager.queuePosition = 2;
+
+        queueManager.removeQueueItem(items.get(2), stop, moveToNextTrack);
+
+        assertSongs(0, 1, 3, 4, 5);
+        assertEquals(2, queueManager.queuePosition);
+        assertEquals(1, moveToNextTrackCount);
+        assertEquals(0, stopCount);
+    }
+
+    @Test
+    public void removingLastItemWhileCurrentWrapsToStart() {
+        queueManager.queuePosition = 5;
+
+        queueManager.removeQueueItem(items.get(5), stop, moveToNextTrack);
+
+        assertSongs(0, 1, 2, 3, 4);
+        assertEquals(0, queueManager.queuePosition);
+        assertEquals(1, moveToNextTrackCount);
+    }
+
+    @Test
+    public void removingRangeStraddlingCurrentItem() {
+        queueManager.queuePosition = 4;
+
+        queueManager.removeQueueItems(items.subList(2, 5), stop, moveToNextTrack);
+
+        // The first remaining item after the current one is played
+        assertSongs(0, 1, 5);
+        assertEquals(2, queueManager.queuePosition);
+        assertEquals(1, moveToNextTrackCount);
+    }
+
+    @Test
+    public void removingItemsBeforeCurrentKeepsCurrentItem() {
+        queueManager.queuePosition = 4;
+
+        queueManager.removeQueueItems(Arrays.asList(items.get(3), items.get(0)), stop, moveToNextTrack);
+
+        assertSongs(1, 2, 4, 5);
+        assertEquals(2, queueManager.queuePosition);
+        assertEquals(items.get(4), queueManager.getCurrentQueueItem());
+        assertEquals(0, moveToNextTrackCount);
+    }
+
+    @Test
+    public void removingEveryItemStops() {
+        queueManager.queuePosition = 1;
+
+        queueManager.removeQueueItems(new ArrayList<>(items), stop, moveToNextTrack);
+
+        assertSongs();
+        assertEquals(-1, queueManager.queuePosition);
+        assertEquals(1, stopCount);
+        assertEquals(0, moveToNextTrackCount);
+    }
+
+    @Test
+    public void removingInShuffleMode() {
+        queueManager.shuffleMode = QueueManager.ShuffleMode.ON;
+        queueManager.shuffleList.setOrder(new int[] { 3, 1, 4, 0, 2, 5 });
+        // Song 4
+        queueManager.queuePosition = 2;
+
+        queueManager.removeQueueItems(Arrays.asList(items.get(1), items.get(4)), stop, moveToNextTrack);
+
+        assertEquals(Arrays.asList(items.get(0), items.get(2), items.get(3), items.get(5)), queueManager.playlist);
+        assertSongs(3, 0, 2, 5);
+        // Song 3 is the only remaining item before the current one in the shuffled order, so Song 0 is played next
+        assertEquals(1, queueManager.queuePosition);
+        assertEquals(1, moveToNextTrackCount);
+    }
+
+    @Test
+    public void indexOfFollowsMovesAndRemovals() {
+        assertEquals(3, queueManager.indexOf(items.get(3).getId()));
+
+        queueManager.moveQueueItem(0, 4);
+        assertSongs(1, 2, 3, 4, 0, 5);
+        assertEquals(2, queueManager.indexOf(items.get(3).getId()));
+        assertEquals(4, queueManager.indexOf(items.get(0).getId()));
+
+        queueManager.removeQueueItem(items.get(2), stop, moveToNextTrack);
+        assertSongs(1, 3, 4, 0, 5);
+        assertEquals(1, queueManager.indexOf(items.get(3).getId()));
+        assertEquals(-1, queueManager.indexOf(items.get(2).getId()));
+        assertEquals(4, queueManager.indexOf(items.get(5).getId()));
+    }
+
+    @Test
+    public void indexOfUsesShuffledOrder() {
+        queueManager.shuffleMode = QueueManager.ShuffleMode.ON;
+        queueManager.shuffleList.setOrder(new int[] { 3, 1, 4, 0, 2, 5 });
+        assertEquals(0, queueManager.indexOf(items.get(3).getId()));
+
+        queueManager.moveQueueItem(0, 5);
+        assertSongs(1, 4, 0, 2, 5, 3);
+        assertEquals(5, queueManager.indexOf(items.get(3).getId()));
+
+        queueManager.removeQueueItem(items.get(4), stop, moveToNextTrack);
+        assertSongs(1, 0, 2, 5, 3);
+        assertEquals(4, queueManager.indexOf(items.get(3).getId()));
+        assertEquals(-1, queueManager.indexOf(items.get(4).getId()));
+        assertEquals(-1, queueManager.indexOf(null));
+    }
+
+    /**
+     * Asserts the song ids of the current (possibly shuffled) playlist.
+     */
+    private void assertSongs(long... ids) {
+        List<QueueItem> currentPlaylist = queueManager.getCurrentPlaylist();
+        long[] actual = new long[currentPlaylist.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = currentPlaylist.get(i).getSong().id;
+        }
+        assertArrayEquals(ids, actual);
+    }
+
+    private static final class NoOpCallbacks implements MusicService.Callbacks {
+
+        @Override
+        public void notifyChange(String action) {
+
+        }
+
+        @Override
+        public void scheduleDelayedShutdown() {
+
+        }
+
+        @Override
+        public void cancelShutdown() {
+
+        }
+
+        @Override
+        public void updateNotification() {
+
+        }
+
+        @Override
+        public void stopForegroundImpl(boolean removeNotification, boolean withDelay) {
+
+        }
+    }
+}
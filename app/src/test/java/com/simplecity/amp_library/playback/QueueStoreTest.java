@@ -0,0 +1,210 @@
+package com.simplecity.amp_library.playback;
+
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.ui.screens.queue.QueueItem;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class QueueStoreTest {
+
+    private File directory;
+
+    private File journalFile;
+
+    private final List<QueueItem> playlist = new ArrayList<>();
+
+    private final ShuffleList shuffleList = new ShuffleList(null);
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("queue", "");
+        directory.delete();
+        directory.mkdir();
+        journalFile = new File(directory, "queue.journal");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void readsNothingWithoutAStore() {
+        assertNull(new QueueStore(directory).read().blockingGet());
+    }
+
+    @Test
+    public void roundTripsSnapshot() {
+        QueueStore store = new QueueStore(directory);
+        add(0, 1, 2, 3, 2);
+        store.save(playlist, shuffleList);
+
+        assertQueue(read(store));
+        assertQueue(new QueueStore(directory).read().blockingGet());
+    }
+
+    @Test
+    public void replaysJournal() {
+        QueueStore store = new QueueStore(directory);
+        add(0, 10, 20, 30, 40, 50);
+        store.save(playlist, shuffleList);
+
+        // Replace
+        add(2, 60, 70);
+        store.save(playlist, shuffleList);
+        playlist.remove(0);
+        store.save(playlist, shuffleList);
+
+        // Move
+        playlist.add(5, playlist.remove(1));
+        store.save(playlist, shuffleList);
+
+        // Shuffle, stored as its seed
+        store.onShuffle(42, 3);
+        shuffleList.setOrder(ShuffleList.shuffle(playlist.size(), 3, 42));
+        store.save(playlist, shuffleList);
+
+        // Move within the shuffled order
+        shuffleList.move(1, 4);
+        store.save(playlist, shuffleList);
+
+        assertQueue(read(store));
+        assertTrue(journalFile.length() > 16);
+
+        assertQueue(new QueueStore(directory).read().blockingGet());
+    }
+
+    @Test
+    public void continuesJournalAfterRead() {
+        QueueStore store = new QueueStore(directory);
+        add(0, 1, 2, 3);
+        store.save(playlist, shuffleList);
+        add(3, 4);
+        store.save(playlist, shuffleList);
+        read(store);
+
+        QueueStore restored = new QueueStore(directory);
+        assertQueue(restored.read().blockingGet());
+        add(0, 5);
+        restored.save(playlist, shuffleList);
+
+        assertQueue(read(restored));
+        assertQueue(new QueueStore(directory).read().blockingGet());
+    }
+
+    @Test
+    public void compactsLargeJournal() {
+        QueueStore store = new QueueStore(directory);
+        add(0, 1, 2, 3);
+        store.save(playlist, shuffleList);
+
+        // A single insertion larger than the minimum compaction length
+        long[] ids = new long[10000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (i * 7919L) % 100003 + 1000;
+        }
+        add(1, ids);
+        store.save(playlist, shuffleList);
+
+        assertQueue(read(store));
+        assertEquals(16, journalFile.length());
+
+        // Further edits are journalled against the new snapshot
+        playlist.remove(2);
+        store.save(playlist, shuffleList);
+
+        assertQueue(read(store));
+        assertTrue(journalFile.length() > 16);
+        assertQueue(new QueueStore(directory).read().blockingGet());
+    }
+
+    @Test
+    public void ignoresTruncatedFinalRecord() throws IOException {
+        QueueStore store = new QueueStore(directory);
+        add(0, 1, 2, 3, 4, 5);
+        store.save(playlist, shuffleList);
+        add(5, 6, 7);
+        store.save(playlist, shuffleList);
+        read(store);
+
+        List<QueueItem> expected = new ArrayList<>(playlist);
+
+        // The last record is torn, as though we'd been killed part way through appending it
+        playlist.add(0, playlist.remove(6));
+        store.save(playlist, shuffleList);
+        read(store);
+        long length = journalFile.length();
+        RandomAccessFile journal = new RandomAccessFile(journalFile, "rw");
+        try {
+            journal.setLength(length - 1);
+        } finally {
+            journal.close();
+        }
+
+        playlist.clear();
+        playlist.addAll(expected);
+        QueueStore restored = new QueueStore(directory);
+        assertQueue(restored.read().blockingGet());
+
+        // The torn record is compacted away, so later records aren't appended after it
+        read(restored);
+        assertEquals(16, journalFile.length());
+        playlist.remove(0);
+        restored.save(playlist, shuffleList);
+
+        assertQueue(read(restored));
+        assertQueue(new QueueStore(directory).read().blockingGet());
+    }
+
+    /**
+     * Reads the store back. As reads are queued behind writes, this also waits for pending writes to complete.
+     */
+    private static QueueStore.Queue read(QueueStore store) {
+        return store.read().blockingGet();
+    }
+
+    private void add(int position, long... ids) {
+        for (int i = 0; i < ids.length; i++) {
+            Song song = new Song();
+            song.id = ids[i];
+            playlist.add(position + i, new QueueItem(song));
+        }
+    }
+
+    private void assertQueue(QueueStore.Queue queue) {
+        assertNotNull(queue);
+        long[] ids = new long[playlist.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = playlist.get(i).getSong().id;
+        }
+        int[] order = new int[shuffleList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = shuffleList.getPlaylistPosition(i);
+        }
+        assertArrayEquals(ids, queue.playlist);
+        assertArrayEquals(order, queue.shuffleOrder);
+    }
+}
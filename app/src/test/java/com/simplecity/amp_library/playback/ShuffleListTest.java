@@ -0,0 +1,88 @@
+package com.simplecity.amp_library.playback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShuffleListTest {
+
+    @Test
+    public void shuffleMatchesCollectionsShuffle() {
+        Random random = new Random(0);
+        for (int size : new int[] { 0, 1, 2, 3, 10, 100, 1000 }) {
+            for (int position : new int[] { -1, 0, size / 2, size - 1, size }) {
+                for (int i = 0; i < 5; i++) {
+                    long seed = random.nextLong();
+                    assertArrayEquals(collectionsShuffle(size, position, seed), ShuffleList.shuffle(size, position, seed));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shuffleMovesCurrentPositionToFront() {
+        int[] order = ShuffleList.shuffle(50, 20, 1234);
+        assertEquals(20, order[0]);
+        assertTrue(ShuffleList.isPermutation(order, 50));
+    }
+
+    @Test
+    public void editsKeepOrderInStepWithPlaylist() {
+        ShuffleList shuffleList = new ShuffleList(null);
+        shuffleList.setOrder(new int[] { 3, 1, 4, 0, 2 });
+
+        shuffleList.move(0, 3);
+        assertOrder(shuffleList, 1, 4, 0, 3, 2);
+
+        shuffleList.insert(2, 5);
+        assertOrder(shuffleList, 1, 4, 5, 0, 3, 2);
+
+        // Remove playlist positions 1 & 4; the rest are renumbered
+        shuffleList.onPlaylistRemoved(new boolean[] { false, true, false, false, true, false });
+        assertOrder(shuffleList, 3, 0, 2, 1);
+    }
+
+    @Test
+    public void isPermutation() {
+        assertTrue(ShuffleList.isPermutation(new int[] { 2, 0, 1 }, 3));
+        assertFalse(ShuffleList.isPermutation(new int[] { 2, 0, 0 }, 3));
+        assertFalse(ShuffleList.isPermutation(new int[] { 2, 0, 3 }, 3));
+        assertFalse(ShuffleList.isPermutation(new int[] { 1, 0 }, 3));
+    }
+
+    /**
+     * The shuffle as it was before {@link ShuffleList}: the current item removed, the rest shuffled with {@link Collections#shuffle(List,
+     * Random)}, and the current item put back at the front.
+     */
+    private static int[] collectionsShuffle(int size, int position, long seed) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            positions.add(i);
+        }
+        Integer current = position >= 0 && position < size ? positions.remove(position) : null;
+        Collections.shuffle(positions, new Random(seed));
+        if (current != null) {
+            positions.add(0, current);
+        }
+
+        int[] order = new int[positions.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = positions.get(i);
+        }
+        return order;
+    }
+
+    private static void assertOrder(ShuffleList shuffleList, int... order) {
+        assertEquals(order.length, shuffleList.size());
+        for (int i = 0; i < order.length; i++) {
+            assertEquals(order[i], shuffleList.getPlaylistPosition(i));
+        }
+    }
+}
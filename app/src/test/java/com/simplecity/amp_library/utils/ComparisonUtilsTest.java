@@ -0,0 +1,52 @@
+package com.simplecity.amp_library.utils;
+
+import java.util.Locale;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ComparisonUtilsTest {
+
+    private final Locale defaultLocale = Locale.getDefault();
+
+    @After
+    public void tearDown() {
+        ComparisonUtils.onLocaleChanged(defaultLocale);
+    }
+
+    @Test
+    public void unchangedLocaleKeepsCollationKeys() {
+        int generation = ComparisonUtils.getCollationGeneration();
+
+        ComparisonUtils.onLocaleChanged(defaultLocale);
+
+        assertEquals(generation, ComparisonUtils.getCollationGeneration());
+    }
+
+    @Test
+    public void changedLocaleInvalidatesCollationKeys() {
+        Locale otherLocale = defaultLocale.equals(Locale.GERMANY) ? Locale.FRANCE : Locale.GERMANY;
+        int generation = ComparisonUtils.getCollationGeneration();
+
+        ComparisonUtils.onLocaleChanged(otherLocale);
+        assertTrue(ComparisonUtils.getCollationGeneration() != generation);
+
+        generation = ComparisonUtils.getCollationGeneration();
+        ComparisonUtils.onLocaleChanged(otherLocale);
+        assertEquals(generation, ComparisonUtils.getCollationGeneration());
+    }
+
+    @Test
+    public void collationKeysCompareLikeTheCollator() {
+        String[] strings = { "apple", "Apple", "banana", "Äpfel", "zebra", "", "éclair" };
+        for (String a : strings) {
+            for (String b : strings) {
+                int expected = Integer.signum(ComparisonUtils.compare(a, b));
+                int actual = ComparisonUtils.compareCollationKeys(ComparisonUtils.getCollationKeyBytes(a), ComparisonUtils.getCollationKeyBytes(b));
+                assertEquals(a + " vs " + b, expected, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.simplecity.amp_library.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EmbeddedArtworkLocatorTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] IMAGE = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4, 5, (byte) 0xFF, (byte) 0xD9 };
+
+    private File file;
+
+    private byte[] contents;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("artwork", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void locatesId3v23Picture() throws IOException {
+        byte[] apic = concat(new byte[] { 0 }, ascii("image/jpeg\0"), new byte[] { 3 }, ascii("Cover\0"), IMAGE);
+        write(id3Tag(3, concat(id3v23Frame("TIT2", 0, ascii("\0Title")), id3v23Frame("APIC", 0, apic)), 16));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesId3v23PictureWithGroupingIdentity() throws IOException {
+        byte[] apic = concat(new byte[] { 0x42 }, new byte[] { 0 }, ascii("image/jpeg\0"), new byte[] { 3 }, ascii("\0"), IMAGE);
+        write(id3Tag(3, id3v23Frame("APIC", 0x20, apic), 0));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesId3v24PictureWithUtf16Description() throws IOException {
+        // "Cv", with a byte order mark. The zero byte after each character would end a single byte description early.
+        byte[] description = { (byte) 0xFF, (byte) 0xFE, 'C', 0, 'v', 0, 0, 0 };
+        byte[] apic = concat(new byte[] { 1 }, ascii("image/png\0"), new byte[] { 3 }, description, IMAGE);
+        write(id3Tag(4, concat(id3v24Frame("TIT2", 0, ascii("\0Title")), id3v24Frame("APIC", 0, apic)), 8));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesId3v24PictureWithGroupingAndDataLength() throws IOException {
+        byte[] apic = concat(new byte[] { 0 }, ascii("image/jpeg\0"), new byte[] { 3 }, ascii("\0"), IMAGE);
+        // Grouping identity, then the (sync safe) data length indicator, precede the frame content
+        byte[] prefix = concat(new byte[] { 0x42 }, syncSafe(apic.length));
+        write(id3Tag(4, id3v24Frame("APIC", 0x41, concat(prefix, apic)), 0));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesId3v22Picture() throws IOException {
+        byte[] pic = concat(new byte[] { 0 }, ascii("JPG"), new byte[] { 3 }, ascii("Cover\0"), IMAGE);
+        write(id3Tag(2, concat(id3v22Frame("TT2", ascii("\0Title")), id3v22Frame("PIC", pic)), 16));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void id3TagWithoutPictureIsNotFound() throws IOException {
+        write(concat(id3Tag(3, id3v23Frame("TIT2", 0, ascii("\0Title")), 32), new byte[64]));
+
+        assertSame(EmbeddedArtworkLocator.NOT_FOUND, EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void compressedId3PictureIsLeftToTheTagReader() throws IOException {
+        byte[] apic = concat(new byte[] { 0 }, ascii("image/jpeg\0"), new byte[] { 3 }, ascii("\0"), IMAGE);
+        write(id3Tag(3, id3v23Frame("APIC", 0x80, apic), 0));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesFlacPicture() throws IOException {
+        write(flac(true));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesFlacPictureAfterId3Tag() throws IOException {
+        write(concat(id3Tag(4, id3v24Frame("TIT2", 0, ascii("\0Title")), 16), flac(true)));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void flacWithoutPictureBlockIsInconclusive() throws IOException {
+        // The picture could be in a Vorbis comment
+        write(flac(false));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesMp4CoverInFullMetaBox() throws IOException {
+        write(mp4(true));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void locatesMp4CoverInPlainMetaBox() throws IOException {
+        write(mp4(false));
+
+        assertImage(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void unknownFormatIsInconclusive() throws IOException {
+        write(ascii("RIFF\0\0\0\0WAVEfmt "));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void shortFileIsInconclusive() throws IOException {
+        write(ascii("ID3"));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void truncatedId3TagIsInconclusive() throws IOException {
+        byte[] apic = concat(new byte[] { 0 }, ascii("image/jpeg\0"), new byte[] { 3 }, ascii("\0"), IMAGE);
+        byte[] tag = id3Tag(3, concat(id3v23Frame("TIT2", 0, ascii("\0Title")), id3v23Frame("APIC", 0, apic)), 0);
+        // Cut the file off part way through the APIC frame header
+        write(Arrays.copyOf(tag, 10 + 16 + 4));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void id3FrameOverrunningTagIsInconclusive() throws IOException {
+        byte[] frame = id3v23Frame("APIC", 0, concat(new byte[] { 0 }, ascii("image/jpeg\0"), new byte[] { 3 }, ascii("\0"), IMAGE));
+        // Claim a frame size larger than the tag
+        frame[7] = (byte) 0x7F;
+        write(concat(id3Tag(3, frame, 0), new byte[256]));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void truncatedFlacPictureIsInconclusive() throws IOException {
+        byte[] flac = flac(true);
+        // Cut the file off part way through the image, before the trailing 16 bytes of audio
+        write(Arrays.copyOf(flac, flac.length - 16 - 4));
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    @Test
+    public void mp4BoxOverrunningParentIsInconclusive() throws IOException {
+        byte[] mp4 = mp4(true);
+        // The moov box follows the 16 byte ftyp box. Claim a size beyond the end of the file.
+        mp4[16] = 0x7F;
+        write(mp4);
+
+        assertNull(EmbeddedArtworkLocator.locate(file));
+    }
+
+    private void assertImage(EmbeddedArtworkLocator.Location location) {
+        assertNotNull(location);
+        assertArrayEquals(IMAGE, Arrays.copyOfRange(contents, (int) location.start, (int) (location.start + location.length)));
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        contents = bytes;
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] id3Tag(int version, byte[] frames, int padding) {
+        byte[] header = concat(ascii("ID3"), new byte[] { (byte) version, 0, 0 }, syncSafe(frames.length + padding));
+        return concat(header, frames, new byte[padding]);
+    }
+
+    private static byte[] id3v22Frame(String id, byte[] content) {
+        int size = content.length;
+        return concat(ascii(id), new byte[] { (byte) (size >> 16), (byte) (size >> 8), (byte) size }, content);
+    }
+
+    private static byte[] id3v23Frame(String id, int formatFlags, byte[] content) {
+        return concat(ascii(id), int32(content.length), new byte[] { 0, (byte) formatFlags }, content);
+    }
+
+    private static byte[] id3v24Frame(String id, int formatFlags, byte[] content) {
+        return concat(ascii(id), syncSafe(content.length), new byte[] { 0, (byte) formatFlags }, content);
+    }
+
+    private static byte[] flac(boolean withPicture) {
+        byte[] streamInfo = flacBlock(0, !withPicture, new byte[34]);
+        if (!withPicture) {
+            return concat(ascii("fLaC"), streamInfo, new byte[16]);
+        }
+        byte[] mimeType = ascii("image/jpeg");
+        byte[] description = ascii("Cover");
+        byte[] picture = concat(
+                int32(3),
+                int32(mimeType.length), mimeType,
+                int32(description.length), description,
+                new byte[16],
+                int32(IMAGE.length), IMAGE
+        );
+        return concat(ascii("fLaC"), streamInfo, flacBlock(6, true, picture), new byte[16]);
+    }
+
+    private static byte[] flacBlock(int type, boolean isLast, byte[] content) {
+        int length = content.length;
+        byte[] header = { (byte) (type | (isLast ? 0x80 : 0)), (byte) (length >> 16), (byte) (length >> 8), (byte) length };
+        return concat(header, content);
+    }
+
+    private static byte[] mp4(boolean fullMetaBox) {
+        byte[] data = box("data", concat(int32(13), int32(0), IMAGE));
+        byte[] ilst = box("ilst", box("covr", data));
+        byte[] hdlr = box("hdlr", new byte[25]);
+        byte[] meta = box("meta", fullMetaBox ? concat(new byte[4], hdlr, ilst) : concat(hdlr, ilst));
+        byte[] moov = box("moov", concat(box("mvhd", new byte[100]), box("udta", meta)));
+        return concat(box("ftyp", ascii("M4A \0\0\0\0")), moov, box("mdat", new byte[32]));
+    }
+
+    private static byte[] box(String type, byte[] content) {
+        return concat(int32(8 + content.length), ascii(type), content);
+    }
+
+    private static byte[] int32(int value) {
+        return new byte[] { (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value };
+    }
+
+    private static byte[] syncSafe(int value) {
+        return new byte[] {
+                (byte) ((value >> 21) & 0x7F), (byte) ((value >> 14) & 0x7F), (byte) ((value >> 7) & 0x7F), (byte) (value & 0x7F)
+        };
+    }
+
+    private static byte[] ascii(String str) {
+        return str.getBytes(ASCII);
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+}
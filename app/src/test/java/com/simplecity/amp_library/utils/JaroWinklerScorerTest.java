@@ -0,0 +1,131 @@
+package com.simplecity.amp_library.utils;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class JaroWinklerScorerTest {
+
+    private static final String ALPHABET = "aabbcdee\u00e9fghiijklmnoopqrstuuvwxyz  \t0";
+
+    @Test
+    public void knownScores() {
+        JaroWinklerScorer scorer = JaroWinklerScorer.get();
+        assertEquals(0.96, scorer.getSimilarity("martha", "marhta"), 0);
+        assertEquals(0.84, scorer.getSimilarity("dwayne", "duane"), 0);
+        assertEquals(0.81, scorer.getSimilarity("dixon", "dicksonx"), 0);
+        assertEquals(1.0, scorer.getSimilarity("abc", "abc"), 0);
+        assertEquals(0.0, scorer.getSimilarity("abc", "xyz"), 0);
+        assertEquals(0.0, scorer.getSimilarity("", "abc"), 0);
+    }
+
+    @Test
+    public void adjustedScoreUsesBestToken() {
+        JaroWinklerScorer scorer = JaroWinklerScorer.get();
+        assertEquals(1.0, scorer.getAdjustedSimilarity("the beatles", "beatles"), 0);
+        assertEquals(scorer.getSimilarity("beatles ", "beatles"), scorer.getAdjustedSimilarity("beatles ", "beatles"), 0);
+        assertEquals(0.0, scorer.getAdjustedSimilarity("", "beatles"), 0);
+        assertEquals(0.0, scorer.getAdjustedSimilarity("beatles", ""), 0);
+    }
+
+    @Test
+    public void matchesPreviousImplementation() {
+        JaroWinklerScorer scorer = JaroWinklerScorer.get();
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            String first = normalize(randomString(random, 20));
+            String second = normalize(randomString(random, 12));
+            assertEquals(first + " / " + second, referenceSimilarity(first, second), scorer.getSimilarity(first, second), 0);
+            assertEquals(first + " / " + second, referenceAdjustedSimilarity(first, second), scorer.getAdjustedSimilarity(first, second), 0);
+        }
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+
+    private static String normalize(String str) {
+        return Normalizer.normalize(str.toLowerCase(), Normalizer.Form.NFD);
+    }
+
+    // The implementation previously in StringUtils, for comparison
+
+    private static double referenceAdjustedSimilarity(String first, String second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return 0;
+        }
+        String[] split = first.split("\\s");
+        if (split.length > 1) {
+            double score = 0;
+            for (String str : split) {
+                score = Math.max(score, referenceSimilarity(str, second));
+            }
+            return Math.max(referenceSimilarity(first, second), score);
+        } else {
+            return referenceSimilarity(first, second);
+        }
+    }
+
+    private static double referenceSimilarity(String first, String second) {
+        CharSequence max = first.length() > second.length() ? first : second;
+        CharSequence min = first.length() > second.length() ? second : first;
+
+        int range = Math.max(max.length() / 2 - 1, 0);
+        int[] matchIndexes = new int[min.length()];
+        Arrays.fill(matchIndexes, -1);
+        boolean[] matchFlags = new boolean[max.length()];
+
+        int matches = 0;
+        for (int mi = 0; mi < min.length(); mi++) {
+            char c1 = min.charAt(mi);
+            for (int xi = Math.max(mi - range, 0), end = Math.min(mi + range + 1, max.length()); xi < end; xi++) {
+                if (!matchFlags[xi] && c1 == max.charAt(xi)) {
+                    matchIndexes[mi] = xi;
+                    matchFlags[xi] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0D;
+        }
+
+        char[] ms1 = new char[matches];
+        for (int i = 0, index = 0; i < matchIndexes.length; i++) {
+            if (matchIndexes[i] != -1) {
+                ms1[index++] = min.charAt(i);
+            }
+        }
+        char[] ms2 = new char[matches];
+        for (int i = 0, index = 0; i < matchFlags.length; i++) {
+            if (matchFlags[i]) {
+                ms2[index++] = max.charAt(i);
+            }
+        }
+        int transpositions = 0;
+        for (int i = 0; i < matches; i++) {
+            if (ms1[i] != ms2[i]) {
+                transpositions++;
+            }
+        }
+        transpositions /= 2;
+
+        int prefix = 0;
+        for (int i = 0, maxPrefix = Math.min(first.length(), second.length()); i < maxPrefix && first.charAt(i) == second.charAt(i); i++) {
+            prefix++;
+        }
+
+        double m = matches;
+        double j = (m / first.length() + m / second.length() + (m - transpositions) / m) / 3;
+        double jw = j < 0.7D ? j : j + Math.min(0.1, 1D / max.length()) * prefix * (1D - j);
+        return Math.round(jw * 100.0D) / 100.0D;
+    }
+}
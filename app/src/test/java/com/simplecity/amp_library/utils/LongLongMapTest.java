@@ -0,0 +1,73 @@
+package com.simplecity.amp_library.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongLongMapTest {
+
+    @Test
+    public void putAndGet() {
+        LongLongMap map = new LongLongMap();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(1, -1));
+
+        map.put(1, 10);
+        map.put(-5, 20);
+        map.put(Long.MAX_VALUE, 30);
+        map.put(0, 40);
+
+        assertEquals(4, map.size());
+        assertEquals(10, map.get(1, -1));
+        assertEquals(20, map.get(-5, -1));
+        assertEquals(30, map.get(Long.MAX_VALUE, -1));
+        assertEquals(40, map.get(0, -1));
+        assertFalse(map.containsKey(2));
+
+        // Replacing doesn't change the size
+        map.put(1, 11);
+        assertEquals(4, map.size());
+        assertEquals(11, map.get(1, -1));
+    }
+
+    @Test
+    public void clear() {
+        LongLongMap map = new LongLongMap();
+        for (long i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(5));
+        map.put(5, 50);
+        assertEquals(50, map.get(5, -1));
+    }
+
+    @Test
+    public void matchesHashMapAcrossResizes() {
+        Random random = new Random(0);
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            // A mix of small sequential ids (like MediaStore's) and arbitrary ones
+            long key = i % 3 == 0 ? random.nextLong() : random.nextInt(50000);
+            long value = random.nextLong();
+            map.put(key, value);
+            expected.put(key, value);
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals((long) entry.getValue(), map.get(entry.getKey(), 0));
+        }
+        for (int i = 0; i < 1000; i++) {
+            long key = 100000 + i;
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.simplecity.amp_library.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathRuleIndexTest {
+
+    @Test
+    public void matchesRulesAnywhereInThePath() {
+        PathRuleIndex index = new PathRuleIndex(Arrays.asList("/Music/Podcasts", "ringtones"));
+
+        assertTrue(index.matches("/storage/emulated/0/music/podcasts/episode.mp3"));
+        assertTrue(index.matches("/sdcard/Ringtones/bell.ogg"));
+        assertFalse(index.matches("/sdcard/Music/Album/track.mp3"));
+        assertFalse(index.matches(null));
+    }
+
+    @Test
+    public void followsFailureLinksAcrossOverlappingRules() {
+        PathRuleIndex index = new PathRuleIndex(Arrays.asList("abcd", "bce"));
+
+        assertTrue(index.matches("xabcex"));
+        assertFalse(index.matches("xabcx"));
+    }
+
+    @Test
+    public void emptyRuleMatchesEverything() {
+        assertTrue(new PathRuleIndex(Collections.singletonList("")).matches("/any/path"));
+        assertFalse(new PathRuleIndex(Collections.emptyList()).matches("/any/path"));
+    }
+
+    @Test
+    public void agreesWithContainsIgnoreCase() {
+        Random random = new Random(42);
+        String alphabet = "abAB/c";
+        for (int iteration = 0; iteration < 5000; iteration++) {
+            List<String> rules = new ArrayList<>();
+            for (int i = random.nextInt(5); i > 0; i--) {
+                rules.add(randomString(random, alphabet, 1 + random.nextInt(4)));
+            }
+            PathRuleIndex index = new PathRuleIndex(rules);
+            for (int i = 0; i < 10; i++) {
+                String path = randomString(random, alphabet, random.nextInt(12));
+                boolean expected = false;
+                for (String rule : rules) {
+                    expected |= path.toLowerCase().contains(rule.toLowerCase());
+                }
+                assertEquals(rules + " / " + path, expected, index.matches(path));
+            }
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.simplecity.amp_library.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RangeInputStreamTest {
+
+    private File file;
+
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        file = File.createTempFile("range", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void readsRangeInBlocks() throws IOException {
+        InputStream in = new RangeInputStream(file, 1000, 2500);
+        try {
+            assertEquals(2500, in.available());
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 3500), readFully(in, 512));
+            assertEquals(0, in.available());
+            assertEquals(-1, in.read(new byte[16], 0, 16));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void readsRangeByByte() throws IOException {
+        InputStream in = new RangeInputStream(file, 9990, 10);
+        try {
+            for (int i = 9990; i < 10000; i++) {
+                assertEquals(data[i] & 0xFF, in.read());
+            }
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void mixesSingleByteAndBlockReads() throws IOException {
+        InputStream in = new RangeInputStream(file, 100, 20);
+        try {
+            assertEquals(data[100] & 0xFF, in.read());
+            byte[] b = new byte[8];
+            assertEquals(8, in.read(b, 0, 8));
+            assertArrayEquals(Arrays.copyOfRange(data, 101, 109), b);
+            assertEquals(data[109] & 0xFF, in.read());
+            assertArrayEquals(Arrays.copyOfRange(data, 110, 120), readFully(in, 64));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void skipIsClampedToRange() throws IOException {
+        InputStream in = new RangeInputStream(file, 0, 100);
+        try {
+            assertEquals(50, in.skip(50));
+            assertEquals(data[50] & 0xFF, in.read());
+            assertEquals(49, in.skip(1000));
+            assertEquals(0, in.skip(10));
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void stopsAtEndOfFile() throws IOException {
+        // The range runs past the end of the file, e.g. because it was truncated after the range was computed
+        InputStream in = new RangeInputStream(file, 9995, 100);
+        try {
+            assertArrayEquals(Arrays.copyOfRange(data, 9995, 10000), readFully(in, 64));
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void concurrentStreamsAreIndependent() throws IOException {
+        InputStream first = new RangeInputStream(file, 0, 10);
+        InputStream second = new RangeInputStream(file, 5000, 10);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(data[i] & 0xFF, first.read());
+                assertEquals(data[5000 + i] & 0xFF, second.read());
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
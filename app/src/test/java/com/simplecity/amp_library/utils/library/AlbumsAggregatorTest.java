@@ -0,0 +1,183 @@
+package com.simplecity.amp_library.utils.library;
+
+import com.simplecity.amp_library.model.Album;
+import com.simplecity.amp_library.model.AlbumArtist;
+import com.simplecity.amp_library.model.Artist;
+import com.simplecity.amp_library.model.Song;
+import com.simplecity.amp_library.utils.Operators;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class AlbumsAggregatorTest {
+
+    private final Random random = new Random(3);
+
+    private long nextSongId = 1;
+
+    @Test
+    public void patchedAlbumsMatchARebuild() {
+        for (int run = 0; run < 50; run++) {
+            AlbumsAggregator albumsAggregator = new AlbumsAggregator();
+            AlbumArtistsAggregator albumArtistsAggregator = new AlbumArtistsAggregator();
+
+            List<Song> songs = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                songs.add(createSong(nextSongId++));
+            }
+
+            for (int step = 0; step < 20; step++) {
+                songs = mutate(songs);
+
+                List<Album> albums = albumsAggregator.apply(songs);
+                List<AlbumArtist> albumArtists = albumArtistsAggregator.apply(albums);
+
+                assertEquals(describeAlbums(Operators.songsToAlbums(songs)), describeAlbums(albums));
+                assertEquals(describeAlbumArtists(Operators.albumsToAlbumArtists(albums)), describeAlbumArtists(albumArtists));
+            }
+        }
+    }
+
+    @Test
+    public void repeatedEmissionsKeepTheirOrder() {
+        AlbumsAggregator albumsAggregator = new AlbumsAggregator();
+        AlbumArtistsAggregator albumArtistsAggregator = new AlbumArtistsAggregator();
+
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            songs.add(createSong(nextSongId++));
+        }
+        List<Album> albums = albumsAggregator.apply(songs);
+        List<AlbumArtist> albumArtists = albumArtistsAggregator.apply(albums);
+
+        // Initially in order of first appearance, as a rebuild lists them
+        assertEquals(albumIds(Operators.songsToAlbums(songs)), albumIds(albums));
+        assertEquals(albumArtistNames(Operators.albumsToAlbumArtists(albums)), albumArtistNames(albumArtists));
+
+        for (int step = 0; step < 20; step++) {
+            // Update a song without moving it to another album, so the same albums and album artists remain
+            int index = random.nextInt(songs.size());
+            Song previous = songs.get(index);
+            Song updated = createSong(previous.id);
+            updated.albumId = previous.albumId;
+            updated.albumName = previous.albumName;
+            updated.albumArtistName = previous.albumArtistName;
+            songs = new ArrayList<>(songs);
+            songs.remove(index);
+            songs.add(random.nextInt(songs.size() + 1), updated);
+
+            List<Album> patchedAlbums = albumsAggregator.apply(songs);
+            List<AlbumArtist> patchedAlbumArtists = albumArtistsAggregator.apply(patchedAlbums);
+
+            assertEquals(albumIds(albums), albumIds(patchedAlbums));
+            assertEquals(albumArtistNames(albumArtists), albumArtistNames(patchedAlbumArtists));
+        }
+
+        // A new album goes at the end
+        Song song = createSong(nextSongId++);
+        song.albumId = 100;
+        songs = new ArrayList<>(songs);
+        songs.add(0, song);
+        List<Long> expectedIds = albumIds(albums);
+        expectedIds.add(100L);
+        assertEquals(expectedIds, albumIds(albumsAggregator.apply(songs)));
+    }
+
+    private static List<Long> albumIds(List<Album> albums) {
+        List<Long> ids = new ArrayList<>();
+        for (Album album : albums) {
+            ids.add(album.id);
+        }
+        return ids;
+    }
+
+    private static List<String> albumArtistNames(List<AlbumArtist> albumArtists) {
+        List<String> names = new ArrayList<>();
+        for (AlbumArtist albumArtist : albumArtists) {
+            names.add(albumArtist.name);
+        }
+        return names;
+    }
+
+    /**
+     * @return a copy of the songs with up to three songs inserted, removed or updated (updated songs may also move)
+     */
+    private List<Song> mutate(List<Song> songs) {
+        List<Song> mutated = new ArrayList<>(songs);
+        for (int i = random.nextInt(3); i >= 0; i--) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    mutated.add(random.nextInt(mutated.size() + 1), createSong(nextSongId++));
+                    break;
+                case 1:
+                    mutated.remove(random.nextInt(mutated.size()));
+                    break;
+                default:
+                    Song updated = createSong(mutated.remove(random.nextInt(mutated.size())).id);
+                    mutated.add(random.nextInt(mutated.size() + 1), updated);
+                    break;
+            }
+        }
+        return mutated;
+    }
+
+    private Song createSong(long id) {
+        Song song = new Song();
+        song.id = id;
+        song.name = "Song " + id;
+        song.albumId = random.nextInt(30);
+        song.albumName = "Album " + song.albumId + (random.nextInt(4) == 0 ? " (Deluxe)" : "");
+        song.albumArtistName = "Album Artist " + random.nextInt(5);
+        song.artistId = random.nextInt(6);
+        song.artistName = "Artist " + song.artistId;
+        song.path = "/music/" + random.nextInt(9) + "/" + id + ".mp3";
+        song.year = 2000 + random.nextInt(5);
+        song.discNumber = random.nextInt(3);
+        return song;
+    }
+
+    private static Map<Long, String> describeAlbums(List<Album> albums) {
+        Map<Long, String> descriptions = new HashMap<>();
+        for (Album album : albums) {
+            descriptions.put(album.id, describe(album));
+        }
+        return descriptions;
+    }
+
+    private static Map<String, List<String>> describeAlbumArtists(List<AlbumArtist> albumArtists) {
+        Map<String, List<String>> descriptions = new HashMap<>();
+        for (AlbumArtist albumArtist : albumArtists) {
+            List<String> albums = new ArrayList<>();
+            for (Album album : albumArtist.albums) {
+                albums.add(describe(album));
+            }
+            descriptions.put(albumArtist.name, albums);
+        }
+        return descriptions;
+    }
+
+    private static String describe(Album album) {
+        StringBuilder builder = new StringBuilder()
+                .append(album.id).append('|')
+                .append(album.name).append('|')
+                .append(album.albumArtistName).append('|')
+                .append(album.year).append('|')
+                .append(album.numSongs).append('|')
+                .append(album.numDiscs).append('|')
+                .append(album.paths).append('|');
+        for (Artist artist : album.artists) {
+            builder.append(artist.id).append(':').append(artist.name).append(',');
+        }
+        return builder.toString();
+    }
+}
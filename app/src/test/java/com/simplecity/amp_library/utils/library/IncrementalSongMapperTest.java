@@ -0,0 +1,92 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.database.MatrixCursor;
+import com.simplecity.amp_library.model.Song;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class IncrementalSongMapperTest {
+
+    @Test
+    public void reusesUnchangedSongs() {
+        IncrementalSongMapper mapper = new IncrementalSongMapper();
+        List<Song> first = mapper.apply(createCursor(new long[] { 1, 2, 3 }, new long[] { 100, 100, 100 }));
+        List<Song> second = mapper.apply(createCursor(new long[] { 1, 2, 3 }, new long[] { 100, 200, 100 }));
+
+        assertSame(first.get(0), second.get(0));
+        assertNotSame(first.get(1), second.get(1));
+        assertSame(first.get(2), second.get(2));
+    }
+
+    @Test
+    public void deduplicatesStringsOfNewSongs() {
+        List<Song> songs = new IncrementalSongMapper().apply(createCursor(new long[] { 1, 2 }, new long[] { 100, 100 }));
+
+        assertSame(songs.get(0).albumName, songs.get(1).albumName);
+        assertSame(songs.get(0).artistName, songs.get(1).artistName);
+        assertSame(songs.get(0).albumArtistName, songs.get(1).albumArtistName);
+        assertSame(songs.get(0).getArtworkKey(), songs.get(1).getArtworkKey());
+    }
+
+    @Test
+    public void newSongsShareStringsOfRetainedSongs() {
+        IncrementalSongMapper mapper = new IncrementalSongMapper();
+        Song retained = mapper.apply(createCursor(new long[] { 2, 3 }, new long[] { 100, 100 })).get(0);
+
+        // The new song comes first in the cursor, before any of the songs it shares an album with
+        List<Song> songs = mapper.apply(createCursor(new long[] { 1, 2, 3 }, new long[] { 100, 100, 100 }));
+        Song added = songs.get(0);
+
+        assertSame(retained, songs.get(1));
+        assertSame(retained.albumName, added.albumName);
+        assertSame(retained.artistName, added.artistName);
+        assertSame(retained.albumArtistName, added.albumArtistName);
+        assertSame(retained.getArtworkKey(), added.getArtworkKey());
+    }
+
+    @Test
+    public void emitsSongTable() {
+        List<Song> songs = new IncrementalSongMapper().apply(createCursor(new long[] { 5, 7 }, new long[] { 100, 100 }));
+
+        SongTable table = SongTable.of(songs);
+        assertSame(songs, table);
+        assertEquals(1, table.rowOf(7));
+    }
+
+    /**
+     * @return a cursor over {@link Song#getProjection()} with a song for each id, all on the same album. Each row has its own copies of
+     * the strings, as a real cursor would.
+     */
+    private static MatrixCursor createCursor(long[] ids, long[] datesModified) {
+        MatrixCursor cursor = new MatrixCursor(Song.getProjection(), ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            cursor.addRow(new Object[] {
+                    ids[i], // _ID
+                    "/storage/emulated/0/Music/Artist/Album/" + ids[i] + ".mp3", // DATA
+                    "Song " + ids[i], // TITLE
+                    1, // ARTIST_ID
+                    new String("Artist"), // ARTIST
+                    10, // ALBUM_ID
+                    new String("Album"), // ALBUM
+                    180000, // DURATION
+                    2000, // YEAR
+                    1000 + i + 1, // TRACK
+                    1500000000, // DATE_ADDED
+                    datesModified[i], // DATE_MODIFIED
+                    0, // IS_PODCAST
+                    0, // BOOKMARK
+                    new String("Album Artist") // album_artist
+            });
+        }
+        return cursor;
+    }
+}
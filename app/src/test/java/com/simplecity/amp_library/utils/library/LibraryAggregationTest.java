@@ -0,0 +1,144 @@
+package com.simplecity.amp_library.utils.library;
+
+import com.simplecity.amp_library.model.Album;
+import com.simplecity.amp_library.model.AlbumArtist;
+import com.simplecity.amp_library.model.Artist;
+import com.simplecity.amp_library.model.Song;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class LibraryAggregationTest {
+
+    @Test
+    public void emptyList() {
+        assertTrue(LibraryAggregation.songsToAlbums(new ArrayList<>()).isEmpty());
+        assertTrue(LibraryAggregation.albumsToAlbumArtists(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void matchesMergingAlbumPerSong() {
+        Random random = new Random(0);
+        // Includes lists large enough to be aggregated in parallel partitions
+        for (int count : new int[] { 1, 50, 5000, 20000 }) {
+            List<Song> songs = createSongs(random, count);
+            assertEquals(describeAlbums(referenceSongsToAlbums(songs)), describeAlbums(LibraryAggregation.songsToAlbums(songs)));
+        }
+    }
+
+    @Test
+    public void sequentialAndParallelAgree() {
+        List<Song> songs = createSongs(new Random(1), 20000);
+        // A LinkedList isn't RandomAccess, so it's always aggregated sequentially
+        assertEquals(describeAlbums(LibraryAggregation.songsToAlbums(new LinkedList<>(songs))), describeAlbums(LibraryAggregation.songsToAlbums(songs)));
+    }
+
+    @Test
+    public void groupsAlbumsByAlbumArtist() {
+        List<Album> albums = LibraryAggregation.songsToAlbums(createSongs(new Random(2), 2000));
+        List<AlbumArtist> albumArtists = LibraryAggregation.albumsToAlbumArtists(albums);
+
+        // In order of first appearance, each holding its albums in order
+        LinkedHashMap<String, List<Album>> expected = new LinkedHashMap<>();
+        for (Album album : albums) {
+            List<Album> artistAlbums = expected.get(album.albumArtistName);
+            if (artistAlbums == null) {
+                artistAlbums = new ArrayList<>();
+                expected.put(album.albumArtistName, artistAlbums);
+            }
+            artistAlbums.add(album);
+        }
+        assertEquals(expected.size(), albumArtists.size());
+        int i = 0;
+        for (String name : expected.keySet()) {
+            assertEquals(name, albumArtists.get(i).name);
+            assertEquals(expected.get(name), albumArtists.get(i).albums);
+            i++;
+        }
+    }
+
+    /**
+     * The previous Operators.songsToAlbums, in order of first appearance rather than HashMap order.
+     */
+    private static List<Album> referenceSongsToAlbums(List<Song> songs) {
+        LinkedHashMap<Long, Album> albums = new LinkedHashMap<>();
+        for (Song song : songs) {
+            Album album = song.getAlbum();
+            Album oldAlbum = albums.get(album.id);
+            if (oldAlbum == null) {
+                albums.put(album.id, album);
+                continue;
+            }
+            oldAlbum.numSongs++;
+            oldAlbum.numDiscs = Math.max(song.discNumber, oldAlbum.numDiscs);
+            oldAlbum.songPlayCount += song.playCount;
+            for (Artist artist : album.artists) {
+                if (!oldAlbum.artists.contains(artist)) {
+                    oldAlbum.artists.add(artist);
+                }
+            }
+            for (String path : album.paths) {
+                if (!oldAlbum.paths.contains(path)) {
+                    oldAlbum.paths.add(path);
+                }
+            }
+        }
+        return new ArrayList<>(albums.values());
+    }
+
+    private static List<Song> createSongs(Random random, int count) {
+        int albumCount = Math.max(1, count / 10);
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Song song = new Song();
+            song.id = i;
+            song.name = "Song " + i;
+            song.albumId = random.nextInt(albumCount);
+            song.albumName = "Album " + song.albumId;
+            song.albumArtistName = "Album Artist " + song.albumId % 50;
+            song.artistId = random.nextInt(5);
+            song.artistName = random.nextInt(20) == 0 ? null : "Artist " + song.artistId;
+            song.path = "/music/" + random.nextInt(count * 2 + 1) + ".mp3";
+            song.discNumber = random.nextInt(3);
+            song.year = 1990 + random.nextInt(30);
+            song.dateAdded = random.nextInt(100);
+            song.lastPlayed = random.nextInt(100);
+            song.playCount = random.nextInt(4);
+            songs.add(song);
+        }
+        return songs;
+    }
+
+    private static List<String> describeAlbums(List<Album> albums) {
+        List<String> descriptions = new ArrayList<>(albums.size());
+        for (Album album : albums) {
+            StringBuilder builder = new StringBuilder()
+                    .append(album.id).append('|')
+                    .append(album.name).append('|')
+                    .append(album.albumArtistName).append('|')
+                    .append(album.year).append('|')
+                    .append(album.numSongs).append('|')
+                    .append(album.numDiscs).append('|')
+                    .append(album.lastPlayed).append('|')
+                    .append(album.dateAdded).append('|')
+                    .append(album.songPlayCount).append('|')
+                    .append(album.paths).append('|');
+            for (Artist artist : album.artists) {
+                builder.append(artist.id).append(':').append(artist.name).append(',');
+            }
+            descriptions.add(builder.toString());
+        }
+        return descriptions;
+    }
+}
@@ -0,0 +1,143 @@
+package com.simplecity.amp_library.utils.library;
+
+import android.database.MatrixCursor;
+import com.simplecity.amp_library.model.Song;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class SongsSnapshotTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("songs", ".snapshot");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void readsNothingWithoutASnapshot() {
+        assertNull(new SongsSnapshot(file).read().blockingGet());
+    }
+
+    @Test
+    public void roundTripsSongs() {
+        List<Song> songs = mapSongs(new IncrementalSongMapper(), createCursor(100, 0));
+        songs.get(0).albumArtistName = null;
+
+        new SongsSnapshot(file).write(songs);
+        List<Song> restored = new SongsSnapshot(file).read().blockingGet();
+
+        assertNotNull(restored);
+        assertEquals(songs.size(), restored.size());
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            Song restoredSong = restored.get(i);
+            assertEquals(song.id, restoredSong.id);
+            assertEquals(song.name, restoredSong.name);
+            assertEquals(song.artistId, restoredSong.artistId);
+            assertEquals(song.artistName, restoredSong.artistName);
+            assertEquals(song.albumId, restoredSong.albumId);
+            assertEquals(song.albumName, restoredSong.albumName);
+            assertEquals(song.albumArtistName, restoredSong.albumArtistName);
+            assertEquals(song.path, restoredSong.path);
+            assertEquals(song.duration, restoredSong.duration);
+            assertEquals(song.year, restoredSong.year);
+            assertEquals(song.track, restoredSong.track);
+            assertEquals(song.discNumber, restoredSong.discNumber);
+            assertEquals(song.dateAdded, restoredSong.dateAdded);
+            assertEquals(song.dateModified, restoredSong.dateModified);
+            assertEquals(song.bookMark, restoredSong.bookMark);
+            assertEquals(song.isPodcast, restoredSong.isPodcast);
+            assertEquals(song.getSortKey(), restoredSong.getSortKey());
+            assertEquals(song.getArtworkKey(), restoredSong.getArtworkKey());
+        }
+    }
+
+    @Test
+    public void bookmarkOnlyChangeIsReconciledAndWritten() {
+        new SongsSnapshot(file).write(mapSongs(new IncrementalSongMapper(), createCursor(10, 1000)));
+
+        // Cold start: restore the snapshot, then reconcile against a MediaStore in which one song's bookmark has moved on
+        SongsSnapshot snapshot = new SongsSnapshot(file);
+        List<Song> restored = snapshot.read().blockingGet();
+        IncrementalSongMapper mapper = new IncrementalSongMapper();
+        mapper.seed(restored);
+
+        List<Song> reconciled = mapSongs(mapper, createCursor(10, 1000, 3, 5000));
+
+        for (int i = 0; i < reconciled.size(); i++) {
+            if (i == 3) {
+                assertNotSame(restored.get(i), reconciled.get(i));
+                assertEquals(5000, reconciled.get(i).bookMark);
+            } else {
+                assertSame(restored.get(i), reconciled.get(i));
+            }
+        }
+
+        snapshot.write(reconciled);
+        assertEquals(5000, new SongsSnapshot(file).read().blockingGet().get(3).bookMark);
+    }
+
+    private static List<Song> mapSongs(IncrementalSongMapper mapper, MatrixCursor cursor) {
+        try {
+            return new ArrayList<>(mapper.apply(cursor));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static MatrixCursor createCursor(int count, long bookmark) {
+        return createCursor(count, bookmark, -1, 0);
+    }
+
+    /**
+     * @return a cursor over {@link Song#getProjection()} with the given number of songs, where the song at {@code changedIndex} has
+     * {@code changedBookmark} as its bookmark
+     */
+    private static MatrixCursor createCursor(int count, long bookmark, int changedIndex, long changedBookmark) {
+        MatrixCursor cursor = new MatrixCursor(Song.getProjection(), count);
+        for (int i = 0; i < count; i++) {
+            long albumId = i / 10;
+            cursor.addRow(new Object[] {
+                    i + 1, // _ID
+                    "/storage/emulated/0/Music/Artist " + (albumId % 50) + "/Album " + albumId + "/" + i + ".mp3", // DATA
+                    "The Song " + i, // TITLE
+                    albumId % 50, // ARTIST_ID
+                    "Artist " + (albumId % 50), // ARTIST
+                    albumId, // ALBUM_ID
+                    "Album " + albumId, // ALBUM
+                    180000 + i, // DURATION
+                    1990 + (int) (albumId % 30), // YEAR
+                    1000 + i % 10 + 1, // TRACK
+                    1500000000 + i, // DATE_ADDED
+                    1500000000 + i, // DATE_MODIFIED
+                    i % 25 == 0 ? 1 : 0, // IS_PODCAST
+                    i == changedIndex ? changedBookmark : bookmark, // BOOKMARK
+                    i % 7 == 0 ? null : "Album Artist " + (albumId % 50) // album_artist
+            });
+        }
+        return cursor;
+    }
+}
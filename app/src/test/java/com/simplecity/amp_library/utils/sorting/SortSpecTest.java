@@ -0,0 +1,117 @@
+package com.simplecity.amp_library.utils.sorting;
+
+import com.simplecity.amp_library.utils.ComparisonUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SortSpecTest {
+
+    private static final String[] NAMES = { "Abbey Road", "abbey road", "\u00c1bbey Road", "Blue", "blue", "Zebra", "Ziggy", "", "10,000 Days" };
+
+    private static final class Item {
+
+        final String name;
+
+        final int year;
+
+        final long id;
+
+        Item(String name, int year, long id) {
+            this.name = name;
+            this.year = year;
+            this.id = id;
+        }
+    }
+
+    private static final SortSpec<Item> spec = new SortSpec.Builder<Item>()
+            .byString(item -> item.name)
+            .byIntDescending(item -> item.year)
+            .byLong(item -> item.id)
+            .build();
+
+    @Test
+    public void matchesChainedStableSorts() {
+        Random random = new Random(0);
+        for (int run = 0; run < 20; run++) {
+            List<Item> items = createItems(random, 500);
+
+            // The previous approach: one stable sort per key, least significant first
+            List<Item> expected = new ArrayList<>(items);
+            Collections.sort(expected, (a, b) -> ComparisonUtils.compareLong(a.id, b.id));
+            Collections.sort(expected, (a, b) -> ComparisonUtils.compareInt(b.year, a.year));
+            Collections.sort(expected, (a, b) -> ComparisonUtils.compare(a.name, b.name));
+
+            assertSameOrder(expected, spec.sorted(items));
+        }
+    }
+
+    @Test
+    public void isStable() {
+        SortSpec<Item> byYear = new SortSpec.Builder<Item>()
+                .byInt(item -> item.year)
+                .build();
+        List<Item> items = createItems(new Random(1), 200);
+
+        List<Item> expected = new ArrayList<>(items);
+        Collections.sort(expected, (a, b) -> ComparisonUtils.compareInt(a.year, b.year));
+
+        assertSameOrder(expected, byYear.sorted(items));
+    }
+
+    @Test
+    public void sortsNullStringsFirst() {
+        Item a = new Item("a", 0, 1);
+        Item nullName = new Item(null, 0, 2);
+        Item b = new Item("b", 0, 3);
+
+        assertSameOrder(Arrays.asList(nullName, a, b), spec.sorted(Arrays.asList(b, nullName, a)));
+    }
+
+    @Test
+    public void sortsInPlace() {
+        List<Item> items = createItems(new Random(2), 100);
+        List<Item> expected = spec.sorted(items);
+
+        spec.sort(items);
+
+        assertSameOrder(expected, items);
+    }
+
+    @Test
+    public void sortsByCollationKey() {
+        SortSpec<Item> byCollationKey = new SortSpec.Builder<Item>()
+                .byCollationKey(item -> ComparisonUtils.getCollationKeyBytes(item.name))
+                .byLong(item -> item.id)
+                .build();
+        SortSpec<Item> byString = new SortSpec.Builder<Item>()
+                .byString(item -> item.name)
+                .byLong(item -> item.id)
+                .build();
+        List<Item> items = createItems(new Random(3), 300);
+
+        assertSameOrder(byString.sorted(items), byCollationKey.sorted(items));
+    }
+
+    private static List<Item> createItems(Random random, int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = random.nextInt(4) == 0 ? "Album " + random.nextInt(count) : NAMES[random.nextInt(NAMES.length)];
+            items.add(new Item(name, 1990 + random.nextInt(5), random.nextInt(count / 2 + 1)));
+        }
+        return items;
+    }
+
+    private static void assertSameOrder(List<Item> expected, List<Item> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+}